@@ -0,0 +1,59 @@
+; Image to ZX Spec - compressed screen depacker
+; Copyright (C) 2014 Silent Software (Benjamin Brown)
+; Licensed under the GNU General Public License version 2 or later
+;
+; Unpacks ZX7 format data (see ScreenPacker) as loaded by compressed.tap:
+;   RANDOMIZE USR 65024 unpacks the screen loaded at 32768 to 16384
+;
+; HL = packed data, DE = destination, A = bit buffer (a marker bit
+; follows the unread bits so the buffer is empty when only it is left)
+
+        org  65024
+
+start:  ld   hl, 32768
+        ld   de, 16384
+        ld   a, 128
+literal: ldi                    ; copy a literal byte
+main:   call getbit
+        jr   nc, literal        ; 0 = literal, 1 = match
+        push de
+        ld   d, 0               ; count the length's leading zeros (+1)
+        ld   bc, 1
+zeros:  inc  d
+        call getbit
+        jr   nc, zeros
+value:  dec  d                  ; read as many bits as zeros into BC
+        jr   z, length
+        call getbit
+        rl   c
+        rl   b
+        jr   nc, value
+        pop  de                 ; 16 zeros overflowed - end marker
+        ret
+length: inc  bc                 ; length = value+1
+        ld   e, (hl)            ; offset-1 low 7 bits, top bit says 4 more bits
+        inc  hl
+        sla  e
+        ld   d, 0
+        jr   nc, offset
+        ld   d, 16              ; marker bit shifts out after 4 bits
+high:   call getbit
+        rl   d
+        jr   nc, high
+        inc  d                  ; +128
+offset: srl  d
+        rr   e                  ; DE = offset-1
+        ex   (sp), hl           ; HL = destination, stack = source
+        push hl
+        scf
+        sbc  hl, de             ; HL = destination-offset
+        pop  de
+        ldir
+        pop  hl
+        jr   main
+getbit: add  a, a               ; next bit into carry
+        ret  nz
+        ld   a, (hl)            ; buffer empty so take the next byte
+        inc  hl
+        rla                     ; marker bit (the carry) in at the bottom
+        ret
@@ -0,0 +1,30 @@
+1 BRIGHT 1: PAPER 0: BORDER 0: INK 7
+5 CLEAR 32767
+10 CLS
+20 LET Y = 7
+30 PAPER 2:PRINT AT Y,1;" "
+40 PAPER 4:PRINT AT Y,2;" "
+50 PAPER 6:PRINT AT Y,3;" "
+60 PAPER 1:PRINT AT Y,4;" "
+70 PAPER 0: INK 7: BRIGHT 1
+80 PRINT AT Y,5;" Image to ZX Spectrum "
+90 PAPER 2:PRINT AT Y,27;" "
+100 PAPER 4:PRINT AT Y,28;" "
+110 PAPER 6:PRINT AT Y,29;" "
+120 PAPER 1:PRINT AT Y,30;" "
+130 LET Y=Y+2
+140 PAPER 0: INK 7: BRIGHT 1
+150 PRINT AT Y,1;"Copyright Silent Software 2014"
+160 LET Y=Y+2
+170 PRINT AT Y,1;"Please enter a number to pause"
+171 LET Y=Y+1
+172 PRINT AT Y,1;"between frames (50 is 1 sec, a"
+173 LET Y=Y+1
+174 PRINT AT Y,1;"setting of 0 waits for a key)."
+175 INPUT, A
+176 POKE 23739,111
+180 LOAD "" CODE
+190 LOAD "" CODE 32768
+192 RANDOMIZE USR 65024
+195 PAUSE A
+200 GO TO 190
\ No newline at end of file
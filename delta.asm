@@ -0,0 +1,33 @@
+; Image to ZX Spec - delta frame player
+; Copyright (C) 2014 Silent Software (Benjamin Brown)
+; Licensed under the GNU General Public License version 2 or later
+;
+; Applies a frame delta (see ScreenDelta) as loaded by delta.tap:
+;   RANDOMIZE USR 65024 applies the delta loaded at 32768 to 16384
+;
+; The delta is pairs of a count of unchanged bytes to skip and a count
+; of changed bytes to copy (which follow), ending with nothing to copy
+; at the end of the screen
+
+        org  65024
+
+start:  ld   hl, 32768
+        ld   de, 16384
+        ld   b, 0               ; counts are single bytes
+next:   ld   a, (hl)            ; skip the unchanged bytes
+        inc  hl
+        add  a, e
+        ld   e, a
+        jr   nc, copy
+        inc  d
+copy:   ld   a, (hl)            ; copy the changed bytes
+        inc  hl
+        or   a
+        jr   z, skipped
+        ld   c, a
+        ldir
+        jr   next
+skipped: ld  a, d               ; nothing copied so stop at the end
+        cp   91                 ; of the screen (23296)
+        jr   c, next
+        ret
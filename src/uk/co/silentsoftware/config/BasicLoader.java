@@ -24,6 +24,35 @@ package uk.co.silentsoftware.config;
  */
 public class BasicLoader {
 
+	/**
+	 * How the loader expects the screens after it on the tape
+	 */
+	public enum ScreenEncoding {
+		
+		/**
+		 * Plain 6912 byte screens loaded straight to the screen
+		 */
+		RAW,
+		
+		/**
+		 * Screens packed by ScreenPacker, loaded at 32768 and
+		 * unpacked to the screen by the loader's depacker
+		 */
+		COMPRESSED,
+		
+		/**
+		 * Only the changes from the previous screen (see ScreenDelta), 
+		 * loaded at 32768 and played onto the screen by the loader
+		 */
+		DELTA,
+		
+		/**
+		 * Plain screens in turbo speed data blocks of a tzx file,
+		 * loaded straight to the screen by the loader
+		 */
+		TURBO
+	}
+	
 	/**
 	 * The name to display
 	 */
@@ -33,10 +62,21 @@ public class BasicLoader {
 	 * The file (or resource name)
 	 */
 	private String path;
+	
+	/**
+	 * The screen encoding (null in preferences saved before
+	 * it existed, which means raw)
+	 */
+	private ScreenEncoding screenEncoding;
 
 	public BasicLoader(String name, String path) {
+		this(name, path, ScreenEncoding.RAW);
+	}
+	
+	public BasicLoader(String name, String path, ScreenEncoding screenEncoding) {
 		this.name = name;
 		this.path = path;
+		this.screenEncoding = screenEncoding;
 	}
 
 	public void setName(String name) {
@@ -51,6 +91,10 @@ public class BasicLoader {
 		this.path = path;
 	}
 	
+	public ScreenEncoding getScreenEncoding() {
+		return screenEncoding == null ? ScreenEncoding.RAW : screenEncoding;
+	}
+	
 	@Override
 	public String toString() {
 		return name;
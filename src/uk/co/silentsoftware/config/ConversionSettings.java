@@ -0,0 +1,194 @@
+/* Image to ZX Spec
+ * Copyright (C) 2014 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package uk.co.silentsoftware.config;
+
+import uk.co.silentsoftware.core.attributestrategy.AttributeStrategy;
+import uk.co.silentsoftware.core.attributestrategy.GigaScreenAttributeStrategy;
+import uk.co.silentsoftware.core.colourstrategy.ColourChoiceStrategy;
+import uk.co.silentsoftware.core.converters.image.DitherStrategy;
+import uk.co.silentsoftware.core.converters.image.errordiffusionstrategy.ErrorDiffusionDitherStrategy;
+import uk.co.silentsoftware.core.converters.image.orderedditherstrategy.OrderedDitherStrategy;
+
+/**
+ * Immutable snapshot of the options that affect how an image is
+ * converted, taken when the work is submitted. The conversion reads 
+ * only from its snapshot so changing the options part way through a
+ * batch (or a video) doesn't change the rest of it, and work with 
+ * different settings can run at the same time.
+ */
+public final class ConversionSettings {
+
+	private final ColourChoiceStrategy colourMode;
+	
+	private final DitherStrategy selectedDitherStrategy;
+	
+	private final ErrorDiffusionDitherStrategy errorDiffusionDitherStrategy;
+	
+	private final OrderedDitherStrategy orderedDitherStrategy;
+	
+	private final int orderedDitherIntensity;
+	
+	private final boolean serpentine;
+	
+	private final boolean constrainedErrorDiffusion;
+	
+	private final boolean preferDetail;
+	
+	/**
+	 * The monochrome ink and paper colours (not indexes)
+	 */
+	private final int monochromeInk;
+	private final int monochromePaper;
+	
+	private final int blackThreshold;
+	
+	private final AttributeStrategy attributeMode;
+	
+	private final GigaScreenAttributeStrategy gigaScreenAttributeStrategy;
+	
+	private final GigaScreenHSBOption gigaScreenHsbOption;
+	
+	private final float contrast;
+	
+	private final float brightness;
+	
+	private final float saturation;
+	
+	private final ScalingObject scaling;
+	
+	/**
+	 * The scaling to use for previews (the selected scaling unless
+	 * that is no scaling, in which case the Spectrum screen size)
+	 */
+	private final ScalingObject previewScaling;
+	
+	private final boolean exportScreen;
+	
+	private final boolean exportTape;
+	
+	/**
+	 * The loader tapes are written for
+	 */
+	private final BasicLoader basicLoader;
+	
+	/**
+	 * The speed of turbo loader data blocks
+	 */
+	private final TurboSpeed turboSpeed;
+	
+	/**
+	 * Takes a snapshot of the given options
+	 * 
+	 * @param oo
+	 */
+	public ConversionSettings(OptionsObject oo) {
+		colourMode = oo.getColourMode();
+		selectedDitherStrategy = oo.getSelectedDitherStrategy();
+		errorDiffusionDitherStrategy = oo.getErrorDiffusionDitherStrategy();
+		orderedDitherStrategy = oo.getOrderedDitherStrategy();
+		orderedDitherIntensity = oo.getOrderedDitherIntensity();
+		serpentine = oo.getSerpentine();
+		constrainedErrorDiffusion = oo.getConstrainedErrorDiffusion();
+		preferDetail = oo.getPreferDetail();
+		monochromeInk = SpectrumDefaults.SPECTRUM_COLOURS_BRIGHT[oo.getMonochromeInkIndex()];
+		monochromePaper = SpectrumDefaults.SPECTRUM_COLOURS_BRIGHT[oo.getMonochromePaperIndex()];
+		blackThreshold = oo.getBlackThreshold();
+		attributeMode = oo.getAttributeMode();
+		gigaScreenAttributeStrategy = oo.getGigaScreenAttributeStrategy();
+		gigaScreenHsbOption = oo.getGigaScreenHsbOption();
+		contrast = oo.getContrast();
+		brightness = oo.getBrightness();
+		saturation = oo.getSaturation();
+		scaling = oo.getScaling();
+		previewScaling = oo.getScaling() != oo.getScalings()[0] ? oo.getScaling() : oo.getZXDefaultScaling();
+		exportScreen = oo.getExportScreen();
+		exportTape = oo.getExportTape();
+		basicLoader = oo.getBasicLoader();
+		turboSpeed = oo.getTurboSpeed();
+	}
+	
+	public ColourChoiceStrategy getColourMode() {
+		return colourMode;
+	}
+	public DitherStrategy getSelectedDitherStrategy() {
+		return selectedDitherStrategy;
+	}
+	public ErrorDiffusionDitherStrategy getErrorDiffusionDitherStrategy() {
+		return errorDiffusionDitherStrategy;
+	}
+	public OrderedDitherStrategy getOrderedDitherStrategy() {
+		return orderedDitherStrategy;
+	}
+	public int getOrderedDitherIntensity() {
+		return orderedDitherIntensity;
+	}
+	public boolean getSerpentine() {
+		return serpentine;
+	}
+	public boolean getConstrainedErrorDiffusion() {
+		return constrainedErrorDiffusion;
+	}
+	public boolean getPreferDetail() {
+		return preferDetail;
+	}
+	public int getMonochromeInk() {
+		return monochromeInk;
+	}
+	public int getMonochromePaper() {
+		return monochromePaper;
+	}
+	public int getBlackThreshold() {
+		return blackThreshold;
+	}
+	public AttributeStrategy getAttributeMode() {
+		return attributeMode;
+	}
+	public GigaScreenAttributeStrategy getGigaScreenAttributeStrategy() {
+		return gigaScreenAttributeStrategy;
+	}
+	public GigaScreenHSBOption getGigaScreenHsbOption() {
+		return gigaScreenHsbOption;
+	}
+	public float getContrast() {
+		return contrast;
+	}
+	public float getBrightness() {
+		return brightness;
+	}
+	public float getSaturation() {
+		return saturation;
+	}
+	public ScalingObject getScaling() {
+		return scaling;
+	}
+	public ScalingObject getPreviewScaling() {
+		return previewScaling;
+	}
+	public boolean getExportScreen() {
+		return exportScreen;
+	}
+	public boolean getExportTape() {
+		return exportTape;
+	}
+	public BasicLoader getBasicLoader() {
+		return basicLoader;
+	}
+	public TurboSpeed getTurboSpeed() {
+		return turboSpeed;
+	}
+}
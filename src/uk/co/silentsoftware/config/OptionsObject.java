@@ -18,9 +18,18 @@
 package uk.co.silentsoftware.config;
 
 import static uk.co.silentsoftware.config.LanguageSupport.getCaption;
+import static uk.co.silentsoftware.config.PersistenceService.KERNELS_FILE;
 import static uk.co.silentsoftware.config.PersistenceService.PREFS_FILE;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
 
 import uk.co.caprica.vlcj.binding.LibVlc;
 import uk.co.caprica.vlcj.runtime.RuntimeUtil;
@@ -43,6 +52,8 @@ import uk.co.silentsoftware.core.converters.image.CharacterDitherStrategy;
 import uk.co.silentsoftware.core.converters.image.DitherStrategy;
 import uk.co.silentsoftware.core.converters.image.errordiffusionstrategy.AtkinsonDitherStrategy;
 import uk.co.silentsoftware.core.converters.image.errordiffusionstrategy.BurkesDitherStrategy;
+import uk.co.silentsoftware.core.converters.image.errordiffusionstrategy.CustomKernelDitherStrategy;
+import uk.co.silentsoftware.core.converters.image.errordiffusionstrategy.ErrorDiffusionKernel;
 import uk.co.silentsoftware.core.converters.image.errordiffusionstrategy.ErrorDiffusionDitherStrategy;
 import uk.co.silentsoftware.core.converters.image.errordiffusionstrategy.FloydSteinbergDitherStrategy;
 import uk.co.silentsoftware.core.converters.image.errordiffusionstrategy.JarvisJudiceNinkeDitherStrategy;
@@ -92,25 +103,27 @@ public class OptionsObject {
 	/**
 	 * Basic loader for slideshows/video (tap output)
 	 */
-	private final BasicLoader[] basicLoaders;
-	{
-		basicLoaders = new BasicLoader[]{
-				new BasicLoader(getCaption("loader_simple"), "simple.tap"),
-				new BasicLoader(getCaption("loader_buffered"), "buffered.tap"),
-				new BasicLoader(getCaption("loader_gigascreen"), "gigascreen.tap"),
-				new BasicLoader(CUSTOM_LOADER_PREFIX, null)		
-		};
-	}
+	private BasicLoader[] basicLoaders = createBasicLoaders();
 	
 	/**
 	 * The chosen basic loader
 	 */
 	private BasicLoader basicLoader = basicLoaders[0]; 
+	
+	/**
+	 * Pulse timings for the turbo loader's data blocks (tzx output)
+	 */
+	private TurboSpeed[] turboSpeeds = createTurboSpeeds();
+	
+	/**
+	 * The chosen turbo speed
+	 */
+	private TurboSpeed turboSpeed = turboSpeeds[1];
 
 	/**
-	 * Dither strategies available
+	 * Dither strategies available (built in followed by any custom kernels)
 	 */
-	private final ErrorDiffusionDitherStrategy[] errorDithers;
+	private ErrorDiffusionDitherStrategy[] errorDithers;
 	{
 		errorDithers = new ErrorDiffusionDitherStrategy[]{
 			new AtkinsonDitherStrategy(),
@@ -359,12 +372,25 @@ public class OptionsObject {
 	private volatile boolean preferDetail = false;
 	
 	/**
-	 * Threads per CPU (technically this may not be "per" CPU
-	 * it's whatever CPU has free resources however it's a good
-	 * human metric).
+	 * Threads per CPU - no longer used as the work engine sizes itself
+	 * to the available processors. Kept so saved preferences still load.
 	 */
+	@Deprecated
 	private int threadsPerCPU = 2;
 	
+	/**
+	 * Number of image files decoded ahead of their conversion
+	 */
+	private volatile int prefetchDepth = DEFAULT_PREFETCH_DEPTH;
+	private static final int DEFAULT_PREFETCH_DEPTH = 8;
+	
+	/**
+	 * Number of frames/images that may be decoded, converting or awaiting
+	 * output at once (bounds memory use however long the video)
+	 */
+	private volatile int framesInFlight = DEFAULT_FRAMES_IN_FLIGHT;
+	private static final int DEFAULT_FRAMES_IN_FLIGHT = 16;
+	
 	private final static OptionsObject instance;
 	
 	static {
@@ -383,9 +409,75 @@ public class OptionsObject {
 		if (tempRef.getVideoImportEngine() instanceof VLCVideoImportEngine) {
 			tempRef.initVideoImportEngine();
 		}
+		tempRef.loadCustomKernels(KERNELS_FILE);
 		instance = tempRef;	
 	}
 	
+	/**
+	 * Fills in options missing from preferences saved before they
+	 * existed (the fields are restored without their initialisers)
+	 * 
+	 * @return
+	 */
+	private Object readResolve() {
+		if (turboSpeeds == null) {
+			turboSpeeds = createTurboSpeeds();
+			turboSpeed = turboSpeeds[1];
+		}
+		if (prefetchDepth <= 0) {
+			prefetchDepth = DEFAULT_PREFETCH_DEPTH;
+		}
+		if (framesInFlight <= 0) {
+			framesInFlight = DEFAULT_FRAMES_IN_FLIGHT;
+		}
+		
+		// Offer loaders added since, keeping the custom loader and the choice
+		BasicLoader[] loaders = createBasicLoaders();
+		if (basicLoaders == null || basicLoaders.length != loaders.length) {
+			BasicLoader custom = loaders[loaders.length-1];
+			BasicLoader chosen = loaders[0];
+			if (basicLoaders != null) {
+				for (BasicLoader old : basicLoaders) {
+					if (old.toString().startsWith(CUSTOM_LOADER_PREFIX)) {
+						custom.setName(old.toString());
+						custom.setPath(old.getPath());
+						if (old == basicLoader) {
+							chosen = custom;
+						}
+					}
+				}
+			}
+			for (BasicLoader loader : loaders) {
+				if (basicLoader != null && loader != custom && loader.getPath().equals(basicLoader.getPath())) {
+					chosen = loader;
+				}
+			}
+			basicLoaders = loaders;
+			basicLoader = chosen;
+		}
+		return this;
+	}
+	
+	private static BasicLoader[] createBasicLoaders() {
+		return new BasicLoader[]{
+			new BasicLoader(getCaption("loader_simple"), "simple.tap"),
+			new BasicLoader(getCaption("loader_buffered"), "buffered.tap"),
+			new BasicLoader(getCaption("loader_gigascreen"), "gigascreen.tap"),
+			new BasicLoader(getCaption("loader_compressed"), "compressed.tap", BasicLoader.ScreenEncoding.COMPRESSED),
+			new BasicLoader(getCaption("loader_delta"), "delta.tap", BasicLoader.ScreenEncoding.DELTA),
+			new BasicLoader(getCaption("loader_turbo"), "turbo.tap", BasicLoader.ScreenEncoding.TURBO),
+			new BasicLoader(CUSTOM_LOADER_PREFIX, null)
+		};
+	}
+	
+	private static TurboSpeed[] createTurboSpeeds() {
+		return new TurboSpeed[]{
+			new TurboSpeed(getCaption("turbo_standard"), 855, 1710, 3223),
+			new TurboSpeed(getCaption("turbo_double"), 427, 855, 1600),
+			new TurboSpeed(getCaption("turbo_triple"), 285, 570, 1600)
+		};
+	}
+	
 	public void initVideoImportEngine() {
 		NativeLibrary.addSearchPath(RuntimeUtil.getLibVlcLibraryName(), pathToVlc);
 		Native.loadLibrary(RuntimeUtil.getLibVlcLibraryName(), LibVlc.class);
@@ -399,11 +491,27 @@ public class OptionsObject {
 		return instance;
 	}
 	
-	public  int getThreadsPerCPU(){
-		return threadsPerCPU;
+	/**
+	 * Takes a snapshot of the current conversion settings
+	 * for a piece of work
+	 * 
+	 * @return
+	 */
+	public ConversionSettings getConversionSettings() {
+		return new ConversionSettings(this);
+	}
+	
+	public int getPrefetchDepth() {
+		return prefetchDepth;
+	}
+	public void setPrefetchDepth(int prefetchDepth) {
+		this.prefetchDepth = prefetchDepth;
+	}
+	public int getFramesInFlight() {
+		return framesInFlight;
 	}
-	public void setThreadsPerCPU(int threadsPerCPU){
-		this.threadsPerCPU = threadsPerCPU;
+	public void setFramesInFlight(int framesInFlight) {
+		this.framesInFlight = framesInFlight;
 	}
 	public  ErrorDiffusionDitherStrategy getErrorDiffusionDitherStrategy() {
 		return errorDiffusionDitherStrategy;
@@ -414,6 +522,78 @@ public class OptionsObject {
 	public ErrorDiffusionDitherStrategy[] getErrorDithers() {
 		return errorDithers;
 	}
+	
+	/**
+	 * Adds an error diffusion dither using the given kernel, replacing
+	 * any custom kernel already registered with the same name
+	 * 
+	 * @param name
+	 * @param kernel
+	 */
+	public void registerKernel(String name, ErrorDiffusionKernel kernel) {
+		List<ErrorDiffusionDitherStrategy> dithers = new ArrayList<>(Arrays.asList(errorDithers));
+		for (Iterator<ErrorDiffusionDitherStrategy> iter = dithers.iterator(); iter.hasNext();) {
+			ErrorDiffusionDitherStrategy dither = iter.next();
+			if (dither instanceof CustomKernelDitherStrategy && ((CustomKernelDitherStrategy)dither).getName().equals(name)) {
+				iter.remove();
+			}
+		}
+		dithers.add(new CustomKernelDitherStrategy(name, kernel));
+		errorDithers = dithers.toArray(new ErrorDiffusionDitherStrategy[dithers.size()]);
+	}
+	
+	/**
+	 * Replaces the custom kernels (e.g. those restored with the preferences) 
+	 * with those in the given file. Each line is "name = kernel" where the 
+	 * kernel is as per ErrorDiffusionKernel.parse, and # starts a comment.
+	 * Lines that can't be parsed are ignored.
+	 * 
+	 * @param filePath
+	 */
+	public void loadCustomKernels(String filePath) {
+		List<ErrorDiffusionDitherStrategy> dithers = new ArrayList<>();
+		for (ErrorDiffusionDitherStrategy dither : errorDithers) {
+			if (!(dither instanceof CustomKernelDitherStrategy)) {
+				dithers.add(dither);
+			}
+		}
+		errorDithers = dithers.toArray(new ErrorDiffusionDitherStrategy[dithers.size()]);
+		File f = new File(filePath);
+		if (f.exists()) {
+			try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(f), "UTF-8"))) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					int separator = line.indexOf('=');
+					if (line.trim().startsWith("#") || separator < 0) {
+						continue;
+					}
+					try {
+						registerKernel(line.substring(0, separator).trim(), ErrorDiffusionKernel.parse(line.substring(separator+1)));
+					} catch (IllegalArgumentException iae) {
+						// Ignore - skip the bad kernel but keep the rest
+					}
+				}
+			} catch (IOException e) {
+				// We don't care about this, the custom kernels are optional
+			}
+		}
+		
+		// Don't leave a kernel that has gone selected
+		if (!Arrays.asList(errorDithers).contains(errorDiffusionDitherStrategy)) {
+			ErrorDiffusionDitherStrategy replacement = errorDithers[0];
+			if (errorDiffusionDitherStrategy instanceof CustomKernelDitherStrategy) {
+				for (ErrorDiffusionDitherStrategy dither : errorDithers) {
+					if (dither.toString().equals(errorDiffusionDitherStrategy.toString())) {
+						replacement = dither;
+					}
+				}
+			}
+			if (selectedDitherStrategy == errorDiffusionDitherStrategy) {
+				selectedDitherStrategy = replacement;
+			}
+			errorDiffusionDitherStrategy = replacement;
+		}
+	}
 	public ScalingObject[] getScalings() {
 		return scalings;
 	}
@@ -564,6 +744,15 @@ public class OptionsObject {
 	public void setBasicLoader(BasicLoader basicLoader) {
 		this.basicLoader = basicLoader;
 	}
+	public TurboSpeed[] getTurboSpeeds() {
+		return turboSpeeds;
+	}
+	public TurboSpeed getTurboSpeed() {
+		return turboSpeed;
+	}
+	public void setTurboSpeed(TurboSpeed turboSpeed) {
+		this.turboSpeed = turboSpeed;
+	}
 	public double getVideoFramesPerSecond() {
 		return videoFramesPerSecond;
 	}
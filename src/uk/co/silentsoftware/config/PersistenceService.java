@@ -32,6 +32,11 @@ public class PersistenceService {
 
 	public final static String PREFS_FILE = System.getProperty("user.home")+"/imagetozxspec.prefs";
 	
+	/**
+	 * Optional file of custom error diffusion kernels
+	 */
+	public final static String KERNELS_FILE = System.getProperty("user.home")+"/imagetozxspec.kernels";
+	
 	public static void save(Object object, String filePath) {
 		XStream xstream = new XStream(new StaxDriver());
 		try {
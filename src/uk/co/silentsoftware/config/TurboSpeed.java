@@ -0,0 +1,74 @@
+/* Image to ZX Spec
+ * Copyright (C) 2014 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package uk.co.silentsoftware.config;
+
+/**
+ * Backing object behind turbo speed options holding the
+ * pulse lengths (in T states) of the turbo data blocks
+ * written to tzx files.
+ */
+public class TurboSpeed {
+
+	/**
+	 * The name of this speed option
+	 */
+	private final String name;
+	
+	/**
+	 * Length of each of the two pulses of a 0 bit
+	 */
+	private final int zeroPulse;
+	
+	/**
+	 * Length of each of the two pulses of a 1 bit
+	 */
+	private final int onePulse;
+	
+	/**
+	 * Number of pilot pulses before each block
+	 */
+	private final int pilotPulses;
+	
+	/**
+	 * Default constructor
+	 * 
+	 * @param name
+	 * @param zeroPulse
+	 * @param onePulse
+	 * @param pilotPulses
+	 */
+	public TurboSpeed(String name, int zeroPulse, int onePulse, int pilotPulses) {
+		this.name = name;
+		this.zeroPulse = zeroPulse;
+		this.onePulse = onePulse;
+		this.pilotPulses = pilotPulses;
+	}
+
+	public int getZeroPulse() {
+		return zeroPulse;
+	}
+	public int getOnePulse() {
+		return onePulse;
+	}
+	public int getPilotPulses() {
+		return pilotPulses;
+	}
+	public String toString() {
+		return name;
+	}
+}
@@ -26,14 +26,15 @@ import uk.co.silentsoftware.core.helpers.ColourHelper;
 public interface AttributeStrategy {
 
 	/**
-	 * Enforce the rule by modifying the rgb component objects
-	 * and changing the attribute colour set they are from *if
-	 * necessary* (i.e. bright or half bright).
+	 * Enforce the rule by changing the attribute colour set the
+	 * two packed rgb colours are from *if necessary* (i.e. bright
+	 * or half bright), returning the corrected pair.
 	 * 
 	 * @param mostPopularColour
 	 * @param secondMostPopularColour
+	 * @param preferDetail whether darker and lighter shades snap to black and white
 	 */
-	public int[] enforceAttributeRule(int[] mostPopularColour, int[] secondMostPopularColour);
+	public int[] enforceAttributeRule(int mostPopularColour, int secondMostPopularColour, boolean preferDetail);
 
 	/**
 	 * Similar to ColorHelper.isBrightSet but uses the strategy
@@ -30,25 +30,23 @@ public class FavourBrightAttributeStrategy implements AttributeStrategy {
 	 * {@inheritDoc}
 	 */
 	@Override
-	public int[] enforceAttributeRule(int[] mostPopularColour,
-			int[] secondMostPopularColour) {	
-		int mostPopRgb = ColourHelper.intToAlphaRgb(mostPopularColour);
-		int secMostPopRgb = ColourHelper.intToAlphaRgb(secondMostPopularColour);
-		boolean popIsBright = ColourHelper.isBrightSet(mostPopRgb);
-		boolean secIsBright = ColourHelper.isBrightSet(secMostPopRgb);
+	public int[] enforceAttributeRule(int mostPopularColour,
+			int secondMostPopularColour, boolean preferDetail) {	
+		boolean popIsBright = ColourHelper.isBrightSet(mostPopularColour);
+		boolean secIsBright = ColourHelper.isBrightSet(secondMostPopularColour);
 		if (popIsBright != secIsBright) {
 			// Not black (identical in both sets - no need to do anything)
 			if (mostPopularColour != secondMostPopularColour) {
 				// Less popular colour is already bright so change to bright set for popular colour
 				if (secIsBright) {
-					mostPopRgb = ColourHelper.getClosestBrightSpectrumColour(mostPopRgb);	
+					mostPopularColour = ColourHelper.getClosestBrightSpectrumColour(mostPopularColour, preferDetail);	
 				// Most popular colour is bright so change to bright set for second most popular colour 
 				} else {
-					secMostPopRgb = ColourHelper.getClosestBrightSpectrumColour(secMostPopRgb);	
+					secondMostPopularColour = ColourHelper.getClosestBrightSpectrumColour(secondMostPopularColour, preferDetail);	
 				}
 			}
 		}
-		return new int[] {mostPopRgb, secMostPopRgb};
+		return new int[] {mostPopularColour, secondMostPopularColour};
 	}
 	
 	/*
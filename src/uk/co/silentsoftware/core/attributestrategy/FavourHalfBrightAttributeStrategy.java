@@ -30,25 +30,23 @@ public class FavourHalfBrightAttributeStrategy implements AttributeStrategy {
 	 * {@inheritDoc}
 	 */
 	@Override
-	public int[] enforceAttributeRule(int[] mostPopularColour,
-			int[] secondMostPopularColour) {
-		int mostPopRgb = ColourHelper.intToAlphaRgb(mostPopularColour);
-		int secMostPopRgb = ColourHelper.intToAlphaRgb(secondMostPopularColour);
-		boolean popIsBright = ColourHelper.isBrightSet(mostPopRgb);
-		boolean secIsBright = ColourHelper.isBrightSet(secMostPopRgb);
+	public int[] enforceAttributeRule(int mostPopularColour,
+			int secondMostPopularColour, boolean preferDetail) {
+		boolean popIsBright = ColourHelper.isBrightSet(mostPopularColour);
+		boolean secIsBright = ColourHelper.isBrightSet(secondMostPopularColour);
 		if (popIsBright != secIsBright) {
 			// Not black (identical in both sets - no need to do anything)
 			if (mostPopularColour != secondMostPopularColour) {
 				// If the less popular colour is bright make it like the popular one (favour half bright)
 				if (secIsBright) {
-					secMostPopRgb = ColourHelper.getClosestHalfBrightSpectrumColour(secMostPopRgb);
+					secondMostPopularColour = ColourHelper.getClosestHalfBrightSpectrumColour(secondMostPopularColour, preferDetail);
 				// Most popular colour is bright, we'll need to darken it (favour half bright)
 				} else {
-					mostPopRgb = ColourHelper.getClosestHalfBrightSpectrumColour(mostPopRgb);	
+					mostPopularColour = ColourHelper.getClosestHalfBrightSpectrumColour(mostPopularColour, preferDetail);	
 				}
 			}
 		}
-		return new int[]{mostPopRgb, secMostPopRgb};
+		return new int[]{mostPopularColour, secondMostPopularColour};
 	}
 	
 	/*
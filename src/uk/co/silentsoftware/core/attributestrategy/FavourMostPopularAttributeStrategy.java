@@ -31,12 +31,10 @@ public class FavourMostPopularAttributeStrategy implements AttributeStrategy {
 	 * {@inheritDoc}
 	 */
 	@Override
-	public int[] enforceAttributeRule(int[] mostPopularColour,
-			int[] secondMostPopularColour) {	
-		int mostPopRgb = ColourHelper.intToAlphaRgb(mostPopularColour);
-		int secMostPopRgb = ColourHelper.intToAlphaRgb(secondMostPopularColour);
-		boolean popIsBright = ColourHelper.isBrightSet(mostPopRgb);
-		boolean secIsBright = ColourHelper.isBrightSet(secMostPopRgb);
+	public int[] enforceAttributeRule(int mostPopularColour,
+			int secondMostPopularColour, boolean preferDetail) {	
+		boolean popIsBright = ColourHelper.isBrightSet(mostPopularColour);
+		boolean secIsBright = ColourHelper.isBrightSet(secondMostPopularColour);
 		
 		// Attributes are different
 		if (popIsBright != secIsBright) {
@@ -44,14 +42,14 @@ public class FavourMostPopularAttributeStrategy implements AttributeStrategy {
 			if (mostPopularColour != secondMostPopularColour) {
 				// Popular colour is bright so force secondary to be in the bright set
 				if (popIsBright) {
-					secMostPopRgb = ColourHelper.getClosestBrightSpectrumColour(secMostPopRgb);
+					secondMostPopularColour = ColourHelper.getClosestBrightSpectrumColour(secondMostPopularColour, preferDetail);
 				// Primary is actually dark (secondary bright), so make the secondary dark
 				} else {
-					secMostPopRgb = ColourHelper.getClosestHalfBrightSpectrumColour(secMostPopRgb);
+					secondMostPopularColour = ColourHelper.getClosestHalfBrightSpectrumColour(secondMostPopularColour, preferDetail);
 				}
 			}
 		}
-		return new int[]{mostPopRgb, secMostPopRgb};
+		return new int[]{mostPopularColour, secondMostPopularColour};
 	}
 	
 	/*
@@ -32,16 +32,10 @@ public class ForceBrightAttributeStrategy implements AttributeStrategy {
 	 * {@inheritDoc}
 	 */
 	@Override
-	public int[] enforceAttributeRule(int[] mostPopularColour,
-			int[] secondMostPopularColour) {
-		int mostPopRgb = ColourHelper.intToAlphaRgb(mostPopularColour);
-		int secMostPopRgb = ColourHelper.intToAlphaRgb(secondMostPopularColour);
-		
+	public int[] enforceAttributeRule(int mostPopularColour,
+			int secondMostPopularColour, boolean preferDetail) {
 		// Get the closest bright colours.
-		mostPopRgb = ColourHelper.getClosestBrightSpectrumColour(mostPopRgb);
-		secMostPopRgb = ColourHelper.getClosestBrightSpectrumColour(secMostPopRgb);
-		
-		return new int[]{mostPopRgb, secMostPopRgb};
+		return new int[]{ColourHelper.getClosestBrightSpectrumColour(mostPopularColour, preferDetail), ColourHelper.getClosestBrightSpectrumColour(secondMostPopularColour, preferDetail)};
 	}
 
 	/*
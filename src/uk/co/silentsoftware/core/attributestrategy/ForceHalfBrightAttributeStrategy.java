@@ -32,16 +32,10 @@ public class ForceHalfBrightAttributeStrategy implements AttributeStrategy {
 	 * {@inheritDoc}
 	 */
 	@Override
-	public int[] enforceAttributeRule(int[] mostPopularColour,
-			int[] secondMostPopularColour) {
-		int mostPopRgb = ColourHelper.intToAlphaRgb(mostPopularColour);
-		int secMostPopRgb = ColourHelper.intToAlphaRgb(secondMostPopularColour);
-		
+	public int[] enforceAttributeRule(int mostPopularColour,
+			int secondMostPopularColour, boolean preferDetail) {
 		// Get the closest half bright colours.
-		mostPopRgb = ColourHelper.getClosestHalfBrightSpectrumColour(mostPopRgb);
-		secMostPopRgb = ColourHelper.getClosestHalfBrightSpectrumColour(secMostPopRgb);
-		
-		return new int[]{mostPopRgb, secMostPopRgb};
+		return new int[]{ColourHelper.getClosestHalfBrightSpectrumColour(mostPopularColour, preferDetail), ColourHelper.getClosestHalfBrightSpectrumColour(secondMostPopularColour, preferDetail)};
 	}
 
 	/*
@@ -32,16 +32,10 @@ public class ForceReducedHalfBrightAttributeStrategy implements AttributeStrateg
 	 * {@inheritDoc}
 	 */
 	@Override
-	public int[] enforceAttributeRule(int[] mostPopularColour,
-			int[] secondMostPopularColour) {
-		int mostPopRgb = ColourHelper.intToAlphaRgb(mostPopularColour);
-		int secMostPopRgb = ColourHelper.intToAlphaRgb(secondMostPopularColour);
-		
+	public int[] enforceAttributeRule(int mostPopularColour,
+			int secondMostPopularColour, boolean preferDetail) {
 		// Get the closest half bright colours.
-		mostPopRgb = ColourHelper.getClosestReducedHalfBrightSpectrumColour(mostPopRgb);
-		secMostPopRgb = ColourHelper.getClosestReducedHalfBrightSpectrumColour(secMostPopRgb);
-		
-		return new int[]{mostPopRgb, secMostPopRgb};
+		return new int[]{ColourHelper.getClosestReducedHalfBrightSpectrumColour(mostPopularColour, preferDetail), ColourHelper.getClosestReducedHalfBrightSpectrumColour(secondMostPopularColour, preferDetail)};
 	}
 
 	/*
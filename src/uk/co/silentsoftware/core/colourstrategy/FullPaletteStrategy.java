@@ -33,25 +33,15 @@ public class FullPaletteStrategy implements ColourChoiceStrategy {
 	
 	@Override
 	public int colour(int originalAlphaRgb, int[] mostPopularRgbColours) {
-		// Break the colours into their RGB components
-		int[] originalRgbComps = ColourHelper.intToRgbComponents(originalAlphaRgb);
-		
 		// Work out whether the original colour is closer to the most popular
 		// or second most popular colour by looking at the difference of total
 		// RGB components
-		int diffs[] = new int[mostPopularRgbColours.length];
-		for (int i=0; i<mostPopularRgbColours.length; ++i) {
-			int[] mostPopRgbComps = ColourHelper.intToRgbComponents(mostPopularRgbColours[i]);
-			diffs[i] = Math.abs(originalRgbComps[0] - mostPopRgbComps[0]) 
-					+ Math.abs(originalRgbComps[1] - mostPopRgbComps[1]) 
-					+ Math.abs(originalRgbComps[2] - mostPopRgbComps[2]);
-		}
-
 		int lowest = Integer.MAX_VALUE;
 		int index = -1;
-		for (int i=0; i<diffs.length; ++i) {
-			if (diffs[i] < lowest) {
-				lowest = diffs[i];
+		for (int i=0; i<mostPopularRgbColours.length; ++i) {
+			int diff = ColourHelper.distance(originalAlphaRgb, mostPopularRgbColours[i]);
+			if (diff < lowest) {
+				lowest = diff;
 				index = i;
 			}
 		}	
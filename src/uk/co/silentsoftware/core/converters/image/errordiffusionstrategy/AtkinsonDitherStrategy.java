@@ -17,32 +17,29 @@
  */
 package uk.co.silentsoftware.core.converters.image.errordiffusionstrategy;
 
-import java.awt.image.BufferedImage;
 import static uk.co.silentsoftware.config.LanguageSupport.getCaption;
 
-import uk.co.silentsoftware.config.OptionsObject;
-
 /**
  * Implementation of the Atkinson error diffusion algorithm
  */
-public class AtkinsonDitherStrategy extends AbstractErrorDiffusionDitherStrategy implements ErrorDiffusionDitherStrategy {
+public class AtkinsonDitherStrategy implements ErrorDiffusionDitherStrategy {
 
-	private static final double EIGHTH = 1d/8d;
+	/**
+	 * Error fractions of 8, as for a left to right row
+	 */
+	private static final ErrorDiffusionKernel KERNEL = new ErrorDiffusionKernel(8,
+			new int[]{1, 0, 1},
+			new int[]{2, 0, 1},
+			new int[]{-1, 1, 1},
+			new int[]{0, 1, 1},
+			new int[]{1, 1, 1},
+			new int[]{0, 2, 1});
 	
 	/*
 	 * {@inheritDoc}
 	 */
-	public void distributeError(BufferedImage output, int oldPixel, int newPixel, int x, int y, Integer boundX, Integer boundY) {
-		int multiplier = 1;
-		if (OptionsObject.getInstance().getSerpentine() && y % 2 == 0) {
-			multiplier = -1;
-		}
-		if (isInBounds(output, x+1*multiplier, y, boundX, boundY)) {output.setRGB(x+1*multiplier, y, calculateAdjustedRGB(oldPixel, newPixel, output.getRGB(x+1*multiplier, y), EIGHTH));}
-		if (isInBounds(output, x+2*multiplier, y, boundX, boundY)) {output.setRGB(x+2*multiplier, y, calculateAdjustedRGB(oldPixel, newPixel, output.getRGB(x+2*multiplier, y), EIGHTH));}
-		if (isInBounds(output, x-1*multiplier, y+1, boundX, boundY)) {output.setRGB(x-1*multiplier, y+1, calculateAdjustedRGB(oldPixel, newPixel, output.getRGB(x-1*multiplier, y+1), EIGHTH));}
-		if (isInBounds(output, x, y+1, boundX, boundY)) {output.setRGB(x, y+1, calculateAdjustedRGB(oldPixel, newPixel, output.getRGB(x, y+1), EIGHTH));}
-		if (isInBounds(output, x+1*multiplier, y+1, boundX, boundY)) {output.setRGB(x+1*multiplier, y+1, calculateAdjustedRGB(oldPixel, newPixel, output.getRGB(x+1*multiplier, y+1), EIGHTH));}
-		if (isInBounds(output, x, y+2, boundX, boundY)) {output.setRGB(x, y+2, calculateAdjustedRGB(oldPixel, newPixel, output.getRGB(x, y+2), EIGHTH));}		
+	public ErrorDiffusionKernel getKernel() {
+		return KERNEL;
 	}
 
 	@Override
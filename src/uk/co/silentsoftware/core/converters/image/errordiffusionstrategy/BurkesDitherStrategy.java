@@ -17,35 +17,30 @@
  */
 package uk.co.silentsoftware.core.converters.image.errordiffusionstrategy;
 
-import java.awt.image.BufferedImage;
 import static uk.co.silentsoftware.config.LanguageSupport.getCaption;
 
-import uk.co.silentsoftware.config.OptionsObject;
-
 /**
  * Implementation of the Burkes error diffusion algorithm
  */
-public class BurkesDitherStrategy extends AbstractErrorDiffusionDitherStrategy implements ErrorDiffusionDitherStrategy {
+public class BurkesDitherStrategy implements ErrorDiffusionDitherStrategy {
 
-	private static final double QUARTER = 1d/4d;
-	private static final double EIGHTH = 1d/8d;
-	private static final double SIXTEENTH = 1d/16d;
+	/**
+	 * Error fractions of 16, as for a left to right row
+	 */
+	private static final ErrorDiffusionKernel KERNEL = new ErrorDiffusionKernel(16,
+			new int[]{1, 0, 4},
+			new int[]{2, 0, 2},
+			new int[]{-2, 1, 1},
+			new int[]{-1, 1, 2},
+			new int[]{0, 1, 4},
+			new int[]{1, 1, 2},
+			new int[]{2, 1, 1});
 	
 	/*
 	 * {@inheritDoc}
 	 */
-	public void distributeError(BufferedImage output, int oldPixel, int newPixel, int x, int y, Integer boundX, Integer boundY) {
-		int multiplier = 1;
-		if (OptionsObject.getInstance().getSerpentine() && y % 2 == 0) {
-			multiplier = -1;
-		}
-		if (isInBounds(output, x+1*multiplier, y, boundX, boundY)) {output.setRGB(x+1*multiplier, y, calculateAdjustedRGB(oldPixel, newPixel, output.getRGB(x+1*multiplier, y), QUARTER));}
-		if (isInBounds(output, x+2*multiplier, y, boundX, boundY)) {output.setRGB(x+2*multiplier, y, calculateAdjustedRGB(oldPixel, newPixel, output.getRGB(x+2*multiplier, y), EIGHTH));}
-		if (isInBounds(output, x-2*multiplier, y+1, boundX, boundY)) {output.setRGB(x-2*multiplier, y+1, calculateAdjustedRGB(oldPixel, newPixel, output.getRGB(x-2*multiplier, y+1), SIXTEENTH));}
-		if (isInBounds(output, x-1*multiplier, y+1, boundX, boundY)) {output.setRGB(x-1*multiplier, y+1, calculateAdjustedRGB(oldPixel, newPixel, output.getRGB(x-1*multiplier, y+1), EIGHTH));}
-		if (isInBounds(output, x, y+1, boundX, boundY)) {output.setRGB(x, y+1, calculateAdjustedRGB(oldPixel, newPixel, output.getRGB(x, y+1), QUARTER));}
-		if (isInBounds(output, x+1*multiplier, y+1, boundX, boundY)) {output.setRGB(x+1*multiplier, y+1, calculateAdjustedRGB(oldPixel, newPixel, output.getRGB(x+1*multiplier, y+1), EIGHTH));}
-		if (isInBounds(output, x+2*multiplier, y+1, boundX, boundY)) {output.setRGB(x+2*multiplier, y+1, calculateAdjustedRGB(oldPixel, newPixel, output.getRGB(x+2*multiplier, y+1), SIXTEENTH));}	
+	public ErrorDiffusionKernel getKernel() {
+		return KERNEL;
 	}
 	
 	@Override
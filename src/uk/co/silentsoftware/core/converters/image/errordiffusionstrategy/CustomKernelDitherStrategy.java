@@ -0,0 +1,52 @@
+/* Image to ZX Spec
+ * Copyright (C) 2014 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package uk.co.silentsoftware.core.converters.image.errordiffusionstrategy;
+
+import static uk.co.silentsoftware.config.LanguageSupport.getCaption;
+
+/**
+ * Error diffusion using a kernel registered by the user
+ * rather than one of the built in algorithms
+ */
+public class CustomKernelDitherStrategy implements ErrorDiffusionDitherStrategy {
+
+	private final String name;
+	
+	private final ErrorDiffusionKernel kernel;
+	
+	public CustomKernelDitherStrategy(String name, ErrorDiffusionKernel kernel) {
+		this.name = name;
+		this.kernel = kernel;
+	}
+	
+	public String getName() {
+		return name;
+	}
+	
+	/*
+	 * {@inheritDoc}
+	 */
+	public ErrorDiffusionKernel getKernel() {
+		return kernel;
+	}
+	
+	@Override
+	public String toString() {
+		return name+" ("+getCaption("error_diffusion")+")";
+	}
+}
@@ -0,0 +1,273 @@
+/* Image to ZX Spec
+ * Copyright (C) 2014 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package uk.co.silentsoftware.core.converters.image.errordiffusionstrategy;
+
+import java.util.Arrays;
+
+import uk.co.silentsoftware.config.SpectrumDefaults;
+
+/**
+ * Holds the error diffused ahead of the pixel being processed as
+ * a ring of fixed point red, green and blue error rows, at least one 
+ * more than the kernel's depth, so the image itself is never written to 
+ * until a pixel is processed.
+ * 
+ * All kernels share the one diffusion loop. Rows are padded by the
+ * kernel's reach so taps off the sides of the image need no checks,
+ * and rows below the image are simply never read. Only when the
+ * diffusion is constrained to the attribute block, and the pixel
+ * is near the block's edge, are taps checked individually. Taps 
+ * are mirrored on rows processed right to left (serpentine).
+ */
+public final class ErrorBuffer {
+
+	/**
+	 * Fractional bits in the fixed point error and weights
+	 */
+	public static final int FRACTION_BITS = 16;
+	
+	/**
+	 * Fixed point 1 (i.e. the whole error)
+	 */
+	public static final int ONE = 1 << FRACTION_BITS;
+	
+	private static final int HALF = ONE >> 1;
+	
+	/**
+	 * Values per pixel in a row (red, green and blue)
+	 */
+	private static final int CHANNELS = 3;
+	
+	/**
+	 * The error rows, one after the other
+	 */
+	private final int[] buffer;
+	
+	private final int rowCount;
+	
+	/**
+	 * Values in each (padded) row
+	 */
+	private final int rowLength;
+	
+	/**
+	 * Pixels of padding either side of each row
+	 */
+	private final int padding;
+	
+	private final boolean constrained;
+	
+	private final int[] offsetsX;
+	private final int[] offsetsY;
+	private final int[] weights;
+	private final int depth;
+	
+	/**
+	 * Offset of each tap in the buffer relative to the current pixel, 
+	 * for the current row and direction
+	 */
+	private final int[] tapOffsets;
+	
+	/**
+	 * Start of the current row in the ring (row y is held at y % rowCount)
+	 */
+	private int row;
+	
+	private int direction;
+	
+	/**
+	 * Rows below the current one that error may reach
+	 */
+	private int rowsLeft;
+	
+	/**
+	 * Creates an error buffer for rows of the given width
+	 * 
+	 * @param width
+	 * @param kernel
+	 * @param constrained whether error is kept within the attribute block
+	 */
+	public ErrorBuffer(int width, ErrorDiffusionKernel kernel, boolean constrained) {
+		this(width, kernel, constrained, kernel.getDepth()+1);
+	}
+	
+	/**
+	 * Creates an error buffer for rows of the given width holding the
+	 * given number of rows, which must be more than the kernel's depth 
+	 * (extra rows allow several rows to be processed at once)
+	 * 
+	 * @param width
+	 * @param kernel
+	 * @param constrained whether error is kept within the attribute block
+	 * @param rowCount
+	 */
+	public ErrorBuffer(int width, ErrorDiffusionKernel kernel, boolean constrained, int rowCount) {
+		if (rowCount <= kernel.getDepth()) {
+			throw new IllegalArgumentException("Error buffer needs more than "+kernel.getDepth()+" rows: "+rowCount);
+		}
+		this.constrained = constrained;
+		this.rowCount = rowCount;
+		padding = kernel.getReach();
+		depth = kernel.getDepth();
+		rowLength = (width+padding*2)*CHANNELS;
+		buffer = new int[rowCount*rowLength];
+		offsetsX = new int[kernel.getTapCount()];
+		offsetsY = new int[kernel.getTapCount()];
+		weights = new int[kernel.getTapCount()];
+		for (int i=0; i<weights.length; ++i) {
+			offsetsX[i] = kernel.getOffsetX(i);
+			offsetsY[i] = kernel.getOffsetY(i);
+			weights[i] = kernel.getWeight(i);
+		}
+		tapOffsets = new int[weights.length];
+		rowsLeft = depth;
+	}
+	
+	/**
+	 * Creates a buffer sharing the other's error rows (but with its 
+	 * own current row) so separate threads can process separate rows
+	 * 
+	 * @param other
+	 */
+	private ErrorBuffer(ErrorBuffer other) {
+		constrained = other.constrained;
+		rowCount = other.rowCount;
+		padding = other.padding;
+		depth = other.depth;
+		rowLength = other.rowLength;
+		buffer = other.buffer;
+		offsetsX = other.offsetsX;
+		offsetsY = other.offsetsY;
+		weights = other.weights;
+		tapOffsets = new int[weights.length];
+		rowsLeft = depth;
+	}
+	
+	/**
+	 * Creates a buffer over the same error rows as this one, for
+	 * another thread to process its own rows with. Threads must
+	 * coordinate so that they never diffuse to the same pixel at
+	 * once, or read a pixel's error before it is complete.
+	 * 
+	 * @return
+	 */
+	public ErrorBuffer share() {
+		return new ErrorBuffer(this);
+	}
+	
+	/**
+	 * Converts a fraction to a fixed point weight
+	 * 
+	 * @param fraction
+	 * @return
+	 */
+	public static int toWeight(double fraction) {
+		return (int)Math.round(fraction*ONE);
+	}
+	
+	/**
+	 * Clears all the error, ready to start again on a new 
+	 * region (e.g. the next attribute block)
+	 */
+	public void reset() {
+		Arrays.fill(buffer, 0);
+	}
+	
+	/**
+	 * Moves on to the given row. The row's error must have been diffused
+	 * by all the rows above it that reach it.
+	 * 
+	 * @param y
+	 * @param direction 1 for left to right, -1 for right to left
+	 */
+	public void startRow(int y, int direction) {
+		final int rowIndex = y % rowCount;
+		row = rowIndex*rowLength;
+		this.direction = direction;
+		for (int i=0; i<tapOffsets.length; ++i) {
+			tapOffsets[i] = ((rowIndex+offsetsY[i]) % rowCount - rowIndex)*rowLength + offsetsX[i]*direction*CHANNELS;
+		}
+		if (constrained) {
+			rowsLeft = SpectrumDefaults.ATTRIBUTE_BLOCK_SIZE-1-y%SpectrumDefaults.ATTRIBUTE_BLOCK_SIZE;
+		}
+	}
+	
+	/**
+	 * Discards the error of the current row (once all its pixels have
+	 * been processed) so its place in the ring can be reused
+	 */
+	public void finishRow() {
+		Arrays.fill(buffer, row, row+rowLength, 0);
+	}
+	
+	/**
+	 * Error diffused so far to the given channel of the given pixel
+	 * on the current row, rounded to a whole value
+	 * 
+	 * @param x
+	 * @param channel 0 red, 1 green, 2 blue
+	 * @return
+	 */
+	public int getError(int x, int channel) {
+		return (buffer[row+(x+padding)*CHANNELS+channel] + HALF) >> FRACTION_BITS;
+	}
+	
+	/**
+	 * Diffuses the error left by the pixel at x on the current 
+	 * row to the pixels still to be processed
+	 * 
+	 * @param x
+	 * @param redError
+	 * @param greenError
+	 * @param blueError
+	 */
+	public void diffuse(int x, int redError, int greenError, int blueError) {
+		final int pixel = row+(x+padding)*CHANNELS;
+		if (constrained) {
+			final int blockX = x%SpectrumDefaults.ATTRIBUTE_BLOCK_SIZE;
+			if (rowsLeft < depth || blockX < padding || blockX >= SpectrumDefaults.ATTRIBUTE_BLOCK_SIZE-padding) {
+				diffuseWithinBlock(x, x-blockX, pixel, redError, greenError, blueError);
+				return;
+			}
+		}
+		for (int i=0; i<tapOffsets.length; ++i) {
+			final int target = pixel+tapOffsets[i];
+			final int weight = weights[i];
+			buffer[target] += redError*weight;
+			buffer[target+1] += greenError*weight;
+			buffer[target+2] += blueError*weight;
+		}
+	}
+	
+	/**
+	 * Diffuses only to those taps in the attribute block starting at blockStart
+	 */
+	private void diffuseWithinBlock(int x, int blockStart, int pixel, int redError, int greenError, int blueError) {
+		for (int i=0; i<tapOffsets.length; ++i) {
+			final int targetX = x+offsetsX[i]*direction;
+			if (offsetsY[i] > rowsLeft || targetX < blockStart || targetX >= blockStart+SpectrumDefaults.ATTRIBUTE_BLOCK_SIZE) {
+				continue;
+			}
+			final int target = pixel+tapOffsets[i];
+			final int weight = weights[i];
+			buffer[target] += redError*weight;
+			buffer[target+1] += greenError*weight;
+			buffer[target+2] += blueError*weight;
+		}
+	}
+}
@@ -17,8 +17,6 @@
  */
 package uk.co.silentsoftware.core.converters.image.errordiffusionstrategy;
 
-import java.awt.image.BufferedImage;
-
 import uk.co.silentsoftware.core.converters.image.DitherStrategy;
 
 /**
@@ -27,15 +25,10 @@ import uk.co.silentsoftware.core.converters.image.DitherStrategy;
 public interface ErrorDiffusionDitherStrategy extends DitherStrategy {
 
 	/**
-	 * Distributes the error on the output image at the 
-	 * given x,y, using the difference between the original
-	 * (old) pixel and the new pixel.
+	 * Retrieves the kernel describing how the error of each
+	 * pixel is distributed to the pixels still to be processed
 	 * 
-	 * @param output
-	 * @param oldPixel
-	 * @param newPixel
-	 * @param x
-	 * @param y
+	 * @return
 	 */
-	public void distributeError(BufferedImage output, int oldPixel, int newPixel, int x, int y, Integer boundX, Integer boundY);	
+	public ErrorDiffusionKernel getKernel();	
 }
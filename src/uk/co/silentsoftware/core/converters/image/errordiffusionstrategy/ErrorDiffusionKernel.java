@@ -0,0 +1,140 @@
+/* Image to ZX Spec
+ * Copyright (C) 2014 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package uk.co.silentsoftware.core.converters.image.errordiffusionstrategy;
+
+/**
+ * Describes how an error diffusion strategy spreads the error of 
+ * a pixel: a list of taps, each an offset from the pixel and the
+ * fraction (numerator over a shared divisor) of the error it gets.
+ * 
+ * Offsets are given as for a row processed left to right, so x
+ * is ahead of the pixel and y is below it. A tap must be ahead of
+ * or below the pixel, i.e. somewhere not yet processed.
+ */
+public final class ErrorDiffusionKernel {
+
+	/**
+	 * Kernel that diffuses no error at all
+	 */
+	public static final ErrorDiffusionKernel NONE = new ErrorDiffusionKernel(1);
+	
+	private final int[] offsetsX;
+	private final int[] offsetsY;
+	
+	/**
+	 * Fixed point (see ErrorBuffer.ONE) fraction of the error for each tap
+	 */
+	private final int[] weights;
+	
+	/**
+	 * Furthest distance left or right of the pixel any tap reaches
+	 */
+	private final int reach;
+	
+	/**
+	 * Furthest distance below the pixel any tap reaches
+	 */
+	private final int depth;
+	
+	/**
+	 * Creates a kernel from taps given as {x offset, y offset, numerator}
+	 * 
+	 * @param divisor
+	 * @param taps
+	 */
+	public ErrorDiffusionKernel(int divisor, int[]... taps) {
+		if (divisor <= 0) {
+			throw new IllegalArgumentException("Divisor must be positive: "+divisor);
+		}
+		offsetsX = new int[taps.length];
+		offsetsY = new int[taps.length];
+		weights = new int[taps.length];
+		int maxReach = 0;
+		int maxDepth = 0;
+		for (int i=0; i<taps.length; ++i) {
+			int[] tap = taps[i];
+			if (tap.length != 3) {
+				throw new IllegalArgumentException("Tap must be x, y and numerator: "+tap.length+" values given");
+			}
+			if (tap[1] < 0 || tap[1] == 0 && tap[0] <= 0) {
+				throw new IllegalArgumentException("Tap "+tap[0]+","+tap[1]+" is not ahead of the pixel");
+			}
+			offsetsX[i] = tap[0];
+			offsetsY[i] = tap[1];
+			weights[i] = ErrorBuffer.toWeight((double)tap[2]/divisor);
+			maxReach = Math.max(maxReach, Math.abs(tap[0]));
+			maxDepth = Math.max(maxDepth, tap[1]);
+		}
+		reach = maxReach;
+		depth = maxDepth;
+	}
+	
+	/**
+	 * Parses a kernel of the form "divisor: x,y,numerator; x,y,numerator; ..."
+	 * e.g. Floyd-Steinberg is "16: 1,0,7; -1,1,3; 0,1,5; 1,1,1"
+	 * 
+	 * @param kernel
+	 * @return
+	 * @throws IllegalArgumentException if the kernel is malformed
+	 */
+	public static ErrorDiffusionKernel parse(String kernel) {
+		int separator = kernel.indexOf(':');
+		if (separator < 0) {
+			throw new IllegalArgumentException("Kernel has no divisor: "+kernel);
+		}
+		try {
+			int divisor = Integer.parseInt(kernel.substring(0, separator).trim());
+			String[] tapStrings = kernel.substring(separator+1).split(";");
+			int[][] taps = new int[tapStrings.length][];
+			for (int i=0; i<tapStrings.length; ++i) {
+				String[] values = tapStrings[i].split(",");
+				taps[i] = new int[values.length];
+				for (int j=0; j<values.length; ++j) {
+					taps[i][j] = Integer.parseInt(values[j].trim());
+				}
+			}
+			return new ErrorDiffusionKernel(divisor, taps);
+		} catch (NumberFormatException nfe) {
+			throw new IllegalArgumentException("Kernel is not numeric: "+kernel, nfe);
+		}
+	}
+	
+	public int getTapCount() {
+		return weights.length;
+	}
+	
+	public int getOffsetX(int tap) {
+		return offsetsX[tap];
+	}
+	
+	public int getOffsetY(int tap) {
+		return offsetsY[tap];
+	}
+	
+	public int getWeight(int tap) {
+		return weights[tap];
+	}
+	
+	public int getReach() {
+		return reach;
+	}
+	
+	public int getDepth() {
+		return depth;
+	}
+}
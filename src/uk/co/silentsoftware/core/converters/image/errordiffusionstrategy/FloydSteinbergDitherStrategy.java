@@ -17,35 +17,27 @@
  */
 package uk.co.silentsoftware.core.converters.image.errordiffusionstrategy;
 
-import java.awt.image.BufferedImage;
 import static uk.co.silentsoftware.config.LanguageSupport.getCaption;
 
-import uk.co.silentsoftware.config.OptionsObject;
-
 /**
  * Implementation of the Floyd-Steinberg error diffusion algorithm
  */
-public class FloydSteinbergDitherStrategy extends AbstractErrorDiffusionDitherStrategy
-		implements ErrorDiffusionDitherStrategy {
-
-	public static final double SIXTEENTH = 1d / 16d;
-	public static final double THREE_SIXTEENTHS = 3d / 16d;
-	public static final double FIVE_SIXTEENTHS = 5d / 16d;
-	public static final double SEVEN_SIXTEENTHS = 7d / 16d;
+public class FloydSteinbergDitherStrategy implements ErrorDiffusionDitherStrategy {
 
+	/**
+	 * Error fractions of 16, as for a left to right row
+	 */
+	private static final ErrorDiffusionKernel KERNEL = new ErrorDiffusionKernel(16,
+			new int[]{1, 0, 7},
+			new int[]{-1, 1, 3},
+			new int[]{0, 1, 5},
+			new int[]{1, 1, 1});
+	
 	/*
 	 * {@inheritDoc}
 	 */
-	public void distributeError(BufferedImage output, int oldPixel, int newPixel, int x, int y, Integer boundX, Integer boundY) {
-
-		int multiplier = 1;
-		if (OptionsObject.getInstance().getSerpentine() && y % 2 == 0) {
-			multiplier = -1;
-		}		
-		if (isInBounds(output, x+multiplier, y, boundX, boundY)) {output.setRGB(x+multiplier, y, calculateAdjustedRGB(oldPixel, newPixel, output.getRGB(x+multiplier, y), SEVEN_SIXTEENTHS));}
-		if (isInBounds(output, x-multiplier, y+1, boundX, boundY)) {output.setRGB(x-multiplier, y+1, calculateAdjustedRGB(oldPixel, newPixel, output.getRGB(x-multiplier, y+1), THREE_SIXTEENTHS));}
-		if (isInBounds(output, x, y+1, boundX, boundY)) {output.setRGB(x, y+1, calculateAdjustedRGB(oldPixel, newPixel, output.getRGB(x, y+1), FIVE_SIXTEENTHS));}
-		if (isInBounds(output, x+multiplier, y+1, boundX, boundY)) {output.setRGB(x+multiplier, y+1, calculateAdjustedRGB(oldPixel, newPixel, output.getRGB(x+multiplier, y+1), SIXTEENTH));}
+	public ErrorDiffusionKernel getKernel() {
+		return KERNEL;
 	}
 
 	@Override
@@ -17,41 +17,35 @@
  */
 package uk.co.silentsoftware.core.converters.image.errordiffusionstrategy;
 
-import java.awt.image.BufferedImage;
 import static uk.co.silentsoftware.config.LanguageSupport.getCaption;
 
-import uk.co.silentsoftware.config.OptionsObject;
-
 /**
  * Implementation of the Jarvis-Judice-Ninke error diffusion algorithm
  */
-public class JarvisJudiceNinkeDitherStrategy extends AbstractErrorDiffusionDitherStrategy implements ErrorDiffusionDitherStrategy {
-	
-	private final static double SIXTEENTH = 1d/16d;
-	private final static double FOURTYEIGHTH = 1d/48d;
-	private final static double FIVE_FOURTY_EIGHTHS = 5d/48d;
-	private final static double SEVEN_FOURTY_EIGHTHS = 7d/48d;
+public class JarvisJudiceNinkeDitherStrategy implements ErrorDiffusionDitherStrategy {
+
+	/**
+	 * Error fractions of 48, as for a left to right row
+	 */
+	private static final ErrorDiffusionKernel KERNEL = new ErrorDiffusionKernel(48,
+			new int[]{1, 0, 7},
+			new int[]{2, 0, 5},
+			new int[]{-2, 1, 3},
+			new int[]{-1, 1, 5},
+			new int[]{0, 1, 7},
+			new int[]{1, 1, 5},
+			new int[]{2, 1, 3},
+			new int[]{-2, 2, 1},
+			new int[]{-1, 2, 3},
+			new int[]{0, 2, 5},
+			new int[]{1, 2, 3},
+			new int[]{2, 2, 1});
 	
 	/*
 	 * {@inheritDoc}
 	 */
-	public void distributeError(BufferedImage output, int oldPixel, int newPixel, int x, int y, Integer boundX, Integer boundY) {
-		int multiplier = 1;
-		if (OptionsObject.getInstance().getSerpentine() && y % 2 == 0) {
-			multiplier = -1;
-		}
-		if (isInBounds(output, x+1*multiplier, y, boundX, boundY)) {output.setRGB(x+1*multiplier, y, calculateAdjustedRGB(oldPixel, newPixel, output.getRGB(x+1*multiplier, y), SEVEN_FOURTY_EIGHTHS));}
-		if (isInBounds(output, x+2*multiplier, y, boundX, boundY)) {output.setRGB(x+2*multiplier, y, calculateAdjustedRGB(oldPixel, newPixel, output.getRGB(x+2*multiplier, y), FIVE_FOURTY_EIGHTHS));}
-		if (isInBounds(output, x-2*multiplier, y+1, boundX, boundY)) {output.setRGB(x-2*multiplier, y+1, calculateAdjustedRGB(oldPixel, newPixel, output.getRGB(x-2*multiplier, y+1), SIXTEENTH));}
-		if (isInBounds(output, x-1*multiplier, y+1, boundX, boundY)) {output.setRGB(x-1*multiplier, y+1, calculateAdjustedRGB(oldPixel, newPixel, output.getRGB(x-1*multiplier, y+1), FIVE_FOURTY_EIGHTHS));}		
-		if (isInBounds(output, x, y+1, boundX, boundY)) {output.setRGB(x, y+1, calculateAdjustedRGB(oldPixel, newPixel, output.getRGB(x, y+1), SEVEN_FOURTY_EIGHTHS));}
-		if (isInBounds(output, x+1*multiplier, y+1, boundX, boundY)) {output.setRGB(x+1*multiplier, y+1, calculateAdjustedRGB(oldPixel, newPixel, output.getRGB(x+1*multiplier, y+1), FIVE_FOURTY_EIGHTHS));}
-		if (isInBounds(output, x+2*multiplier, y+1, boundX, boundY)) {output.setRGB(x+2*multiplier, y+1, calculateAdjustedRGB(oldPixel, newPixel, output.getRGB(x+2*multiplier, y+1), SIXTEENTH));}
-		if (isInBounds(output, x-2*multiplier, y+2, boundX, boundY)) {output.setRGB(x-2*multiplier, y+2, calculateAdjustedRGB(oldPixel, newPixel, output.getRGB(x-2*multiplier, y+2), FOURTYEIGHTH));}
-		if (isInBounds(output, x-1*multiplier, y+2, boundX, boundY)) {output.setRGB(x-1*multiplier, y+2, calculateAdjustedRGB(oldPixel, newPixel, output.getRGB(x-1*multiplier, y+2), SIXTEENTH));}
-		if (isInBounds(output, x, y+2, boundX, boundY)) {output.setRGB(x, y+2, calculateAdjustedRGB(oldPixel, newPixel, output.getRGB(x, y+2), FIVE_FOURTY_EIGHTHS));}
-		if (isInBounds(output, x+1*multiplier, y+2, boundX, boundY)) {output.setRGB(x+1*multiplier, y+2, calculateAdjustedRGB(oldPixel, newPixel, output.getRGB(x+1*multiplier, y+2), SIXTEENTH));}
-		if (isInBounds(output, x+2*multiplier, y+2, boundX, boundY)) {output.setRGB(x+2*multiplier, y+2, calculateAdjustedRGB(oldPixel, newPixel, output.getRGB(x+2*multiplier, y+2), FOURTYEIGHTH));}
+	public ErrorDiffusionKernel getKernel() {
+		return KERNEL;
 	}
 	
 	@Override
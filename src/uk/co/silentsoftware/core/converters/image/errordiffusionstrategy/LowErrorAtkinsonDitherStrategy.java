@@ -17,7 +17,6 @@
  */
 package uk.co.silentsoftware.core.converters.image.errordiffusionstrategy;
 
-import java.awt.image.BufferedImage;
 import static uk.co.silentsoftware.config.LanguageSupport.getCaption;
 
 /**
@@ -33,20 +32,24 @@ import static uk.co.silentsoftware.config.LanguageSupport.getCaption;
  * This strategy's distribution of error was by Bill Atkinson but improved by me, 
  * Benjamin Brown, if anybody feels like documenting/publishing it :)
  */
-public class LowErrorAtkinsonDitherStrategy extends AbstractErrorDiffusionDitherStrategy implements ErrorDiffusionDitherStrategy {
+public class LowErrorAtkinsonDitherStrategy implements ErrorDiffusionDitherStrategy {
 
-	public final static double TWENTY_FOURTH = 1d/24d;//1d/18d;
+	/**
+	 * Error fractions of 24, as for a left to right row
+	 */
+	private static final ErrorDiffusionKernel KERNEL = new ErrorDiffusionKernel(24,
+			new int[]{1, 0, 1},
+			new int[]{2, 0, 1},
+			new int[]{-1, 1, 1},
+			new int[]{0, 1, 1},
+			new int[]{1, 1, 1},
+			new int[]{0, 2, 1});
 	
 	/*
 	 * {@inheritDoc}
 	 */
-	public void distributeError(BufferedImage output, int oldPixel, int newPixel, int x, int y, Integer boundX, Integer boundY) {
-		if (isInBounds(output, x+1, y, boundX, boundY)) {output.setRGB(x+1, y, calculateAdjustedRGB(oldPixel, newPixel, output.getRGB(x+1, y), TWENTY_FOURTH));}
-		if (isInBounds(output, x+2, y, boundX, boundY)) {output.setRGB(x+2, y, calculateAdjustedRGB(oldPixel, newPixel, output.getRGB(x+2, y), TWENTY_FOURTH));}
-		if (isInBounds(output, x-1, y+1, boundX, boundY)) {output.setRGB(x-1, y+1, calculateAdjustedRGB(oldPixel, newPixel, output.getRGB(x-1, y+1), TWENTY_FOURTH));}
-		if (isInBounds(output, x, y+1, boundX, boundY)) {output.setRGB(x, y+1, calculateAdjustedRGB(oldPixel, newPixel, output.getRGB(x, y+1), TWENTY_FOURTH));}
-		if (isInBounds(output, x+1, y+1, boundX, boundY)) {output.setRGB(x+1, y+1, calculateAdjustedRGB(oldPixel, newPixel, output.getRGB(x+1, y+1), TWENTY_FOURTH));}
-		if (isInBounds(output, x, y+2, boundX, boundY)) {output.setRGB(x, y+2, calculateAdjustedRGB(oldPixel, newPixel, output.getRGB(x, y+2), TWENTY_FOURTH));}
+	public ErrorDiffusionKernel getKernel() {
+		return KERNEL;
 	}
 	
 	@Override
@@ -17,18 +17,17 @@
  */
 package uk.co.silentsoftware.core.converters.image.errordiffusionstrategy;
 
-import java.awt.image.BufferedImage;
 import static uk.co.silentsoftware.config.LanguageSupport.getCaption;
 
 /**
  * Direct colour conversion with no error distribution
- * (hence no error is distributed in distributeError()!)
+ * (hence the kernel distributes no error!)
  */
 public class NoDitherStrategy implements ErrorDiffusionDitherStrategy {
 
 	@Override
-	public void distributeError(BufferedImage output, int oldPixel, int newPixel, int x, int y, Integer xBound, Integer yBound) {
-		return;
+	public ErrorDiffusionKernel getKernel() {
+		return ErrorDiffusionKernel.NONE;
 	}
 	
 	@Override
@@ -17,24 +17,26 @@
  */
 package uk.co.silentsoftware.core.converters.image.errordiffusionstrategy;
 
-import java.awt.image.BufferedImage;
 import static uk.co.silentsoftware.config.LanguageSupport.getCaption;
 
 /**
  * Implementation of the Sierra Filter Light error diffusion algorithm
  */
-public class SierraFilterLightStrategy extends AbstractErrorDiffusionDitherStrategy implements ErrorDiffusionDitherStrategy {
+public class SierraFilterLightStrategy implements ErrorDiffusionDitherStrategy {
 
-	public final static double QUARTER = 1d/4d;
-	public final static double HALF = 1d/2d;
+	/**
+	 * Error fractions of 4, as for a left to right row
+	 */
+	private static final ErrorDiffusionKernel KERNEL = new ErrorDiffusionKernel(4,
+			new int[]{1, 0, 2},
+			new int[]{0, 1, 1},
+			new int[]{-1, 1, 1});
 	
 	/*
 	 * {@inheritDoc}
 	 */
-	public void distributeError(BufferedImage output, int oldPixel, int newPixel, int x, int y, Integer boundX, Integer boundY) {
-		if (isInBounds(output, x+1, y, boundX, boundY)) {output.setRGB(x+1, y, calculateAdjustedRGB(oldPixel, newPixel, output.getRGB(x+1, y), HALF));}
-		if (isInBounds(output, x, y+1, boundX, boundY)) {output.setRGB(x, y+1, calculateAdjustedRGB(oldPixel, newPixel, output.getRGB(x, y+1), QUARTER));}
-		if (isInBounds(output, x-1, y+1, boundX, boundY)) {output.setRGB(x-1, y+1, calculateAdjustedRGB(oldPixel, newPixel, output.getRGB(x-1, y+1), QUARTER));}
+	public ErrorDiffusionKernel getKernel() {
+		return KERNEL;
 	}
 	
 	@Override
@@ -17,41 +17,35 @@
  */
 package uk.co.silentsoftware.core.converters.image.errordiffusionstrategy;
 
-import java.awt.image.BufferedImage;
 import static uk.co.silentsoftware.config.LanguageSupport.getCaption;
 
-import uk.co.silentsoftware.config.OptionsObject;
-
 /**
  * Implementation of the Stucki error diffusion algorithm
  */
-public class StuckiDitherStrategy extends AbstractErrorDiffusionDitherStrategy implements ErrorDiffusionDitherStrategy {
+public class StuckiDitherStrategy implements ErrorDiffusionDitherStrategy {
 
-	private static final double TWENTY_ONETH = 1d/21d;
-	private static final double TWO_TWENTY_ONETHS = 1d/21d;
-	private static final double FOUR_TWENTY_ONETHS = 4d/21d;
-	private static final double FOURTY_TWOTH = 4d/21d;
+	/**
+	 * Error fractions of 21, as for a left to right row
+	 */
+	private static final ErrorDiffusionKernel KERNEL = new ErrorDiffusionKernel(21,
+			new int[]{1, 0, 4},
+			new int[]{2, 0, 1},
+			new int[]{-2, 1, 1},
+			new int[]{-1, 1, 1},
+			new int[]{0, 1, 4},
+			new int[]{1, 1, 1},
+			new int[]{2, 1, 1},
+			new int[]{-2, 2, 4},
+			new int[]{-1, 2, 1},
+			new int[]{0, 2, 1},
+			new int[]{1, 2, 1},
+			new int[]{2, 2, 4});
 	
 	/*
 	 * {@inheritDoc}
 	 */
-	public void distributeError(BufferedImage output, int oldPixel, int newPixel, int x, int y, Integer boundX, Integer boundY) {
-		int multiplier = 1;
-		if (OptionsObject.getInstance().getSerpentine() && y % 2 == 0) {
-			multiplier = -1;
-		}
-		if (isInBounds(output, x+1*multiplier, y, boundX, boundY)) {output.setRGB(x+1*multiplier, y, calculateAdjustedRGB(oldPixel, newPixel, output.getRGB(x+1*multiplier, y), FOUR_TWENTY_ONETHS));}
-		if (isInBounds(output, x+2*multiplier, y, boundX, boundY)) {output.setRGB(x+2*multiplier, y, calculateAdjustedRGB(oldPixel, newPixel, output.getRGB(x+2*multiplier, y), TWO_TWENTY_ONETHS));}
-		if (isInBounds(output, x-2*multiplier, y+1, boundX, boundY)) {output.setRGB(x-2*multiplier, y+1, calculateAdjustedRGB(oldPixel, newPixel, output.getRGB(x-2*multiplier, y+1), TWENTY_ONETH));}
-		if (isInBounds(output, x-1*multiplier, y+1, boundX, boundY)) {output.setRGB(x-1*multiplier, y+1, calculateAdjustedRGB(oldPixel, newPixel, output.getRGB(x-1*multiplier, y+1), TWO_TWENTY_ONETHS));}
-		if (isInBounds(output, x, y+1, boundX, boundY)) {output.setRGB(x, y+1, calculateAdjustedRGB(oldPixel, newPixel, output.getRGB(x, y+1), FOUR_TWENTY_ONETHS));}
-		if (isInBounds(output, x+1*multiplier, y+1, boundX, boundY)) {output.setRGB(x+1*multiplier, y+1, calculateAdjustedRGB(oldPixel, newPixel, output.getRGB(x+1*multiplier, y+1), TWO_TWENTY_ONETHS));}
-		if (isInBounds(output, x+2*multiplier, y+1, boundX, boundY)) {output.setRGB(x+2*multiplier, y+1, calculateAdjustedRGB(oldPixel, newPixel, output.getRGB(x+2*multiplier, y+1), TWENTY_ONETH));}
-		if (isInBounds(output, x-2*multiplier, y+2, boundX, boundY)) {output.setRGB(x-2*multiplier, y+2, calculateAdjustedRGB(oldPixel, newPixel, output.getRGB(x-2*multiplier, y+2), FOURTY_TWOTH));}
-		if (isInBounds(output, x-1*multiplier, y+2, boundX, boundY)) {output.setRGB(x-1*multiplier, y+2, calculateAdjustedRGB(oldPixel, newPixel, output.getRGB(x-1*multiplier, y+2), TWENTY_ONETH));}
-		if (isInBounds(output, x, y+2, boundX, boundY)) {output.setRGB(x, y+2, calculateAdjustedRGB(oldPixel, newPixel, output.getRGB(x, y+2), TWO_TWENTY_ONETHS));}
-		if (isInBounds(output, x+1*multiplier, y+2, boundX, boundY)) {output.setRGB(x+1*multiplier, y+2, calculateAdjustedRGB(oldPixel, newPixel, output.getRGB(x+1*multiplier, y+2), TWENTY_ONETH));}
-		if (isInBounds(output, x+2*multiplier, y+2, boundX, boundY)) {output.setRGB(x+2*multiplier, y+2, calculateAdjustedRGB(oldPixel, newPixel, output.getRGB(x+2*multiplier, y+2), FOURTY_TWOTH));}		
+	public ErrorDiffusionKernel getKernel() {
+		return KERNEL;
 	}
 	
 	@Override
@@ -17,12 +17,8 @@
  */
 package uk.co.silentsoftware.core.converters.image.orderedditherstrategy;
 
-import static uk.co.silentsoftware.config.SpectrumDefaults.SPECTRUM_COLOURS_BRIGHT;
-import uk.co.silentsoftware.config.OptionsObject;
-import uk.co.silentsoftware.core.colourstrategy.ColourChoiceStrategy;
-import uk.co.silentsoftware.core.colourstrategy.FullPaletteStrategy;
-import uk.co.silentsoftware.core.colourstrategy.GigaScreenPaletteStrategy;
-import uk.co.silentsoftware.core.helpers.ColourHelper;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Base class for applying an ordered dither strategy
@@ -30,38 +26,39 @@ import uk.co.silentsoftware.core.helpers.ColourHelper;
 public abstract class AbstractOrderedDitherStrategy {
 
 	/**
-	 * Applies the sub class' dither coefficients to
-	 * the given rgb matrix from an image
+	 * The coefficients scaled by each intensity they have been requested for
+	 * (not saved with the preferences, so created when first needed)
+	 */
+	private transient volatile ConcurrentMap<Integer, int[]> thresholds;
+	
+	/**
+	 * Retrieves the coefficients scaled for the given intensity, i.e. the
+	 * amount added to each component of the pixel at the same position in 
+	 * the matrix. Calculated once per intensity and shared so must not be
+	 * modified.
 	 * 
-	 * @param outRgb
+	 * @param intensity
 	 * @return
 	 */
-	public int[] applyDither(int[] outRgb) {
-		OptionsObject oo = OptionsObject.getInstance();
-		int[] coeffs = getCoefficients();
-		
-		// Intensity should really be a fraction of the matrix amount
-		// but addition is a faster operation
-		int intensity = oo.getOrderedDitherIntensity();
-		for(int i=0; i<outRgb.length; i++) {
-			int[] rgb = ColourHelper.intToRgbComponents(outRgb[i]);
-			int adjustedCoeff = Math.round((float)coeffs[i]/(float)intensity);
-			int oldRed = (rgb[0]+adjustedCoeff);
-			int oldGreen = (rgb[1]+adjustedCoeff);
-			int oldBlue = (rgb[2]+adjustedCoeff);
-
-			ColourChoiceStrategy colourMode = oo.getColourMode();
-			if (colourMode instanceof GigaScreenPaletteStrategy) {
-				outRgb[i] = ColourHelper.getClosestGigascreenColour(oldRed, oldGreen, oldBlue);
-			} else if (colourMode instanceof FullPaletteStrategy) {
-				outRgb[i] = ColourHelper.getClosestSpectrumColour(oldRed, oldGreen, oldBlue);
-			} else {
-				outRgb[i] = ColourHelper.getMonochromeColour(oldRed, oldGreen, oldBlue,
-					SPECTRUM_COLOURS_BRIGHT[oo.getMonochromeInkIndex()], 
-					SPECTRUM_COLOURS_BRIGHT[oo.getMonochromePaperIndex()]);
+	public int[] getThresholds(int intensity) {
+		ConcurrentMap<Integer, int[]> thresholds = this.thresholds;
+		if (thresholds == null) {
+			thresholds = new ConcurrentHashMap<>();
+			this.thresholds = thresholds;
+		}
+		int[] plane = thresholds.get(intensity);
+		if (plane == null) {
+			int[] coeffs = getCoefficients();
+			plane = new int[coeffs.length];
+			
+			// Intensity should really be a fraction of the matrix amount
+			// but addition is a faster operation
+			for (int i=0; i<coeffs.length; ++i) {
+				plane[i] = Math.round((float)coeffs[i]/(float)intensity);
 			}
+			thresholds.putIfAbsent(intensity, plane);
 		}
-		return outRgb;
+		return plane;
 	}
 	
 	/**
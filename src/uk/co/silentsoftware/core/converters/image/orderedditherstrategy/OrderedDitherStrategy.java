@@ -38,9 +38,11 @@ public interface OrderedDitherStrategy extends DitherStrategy {
 	public int getMatrixHeight();
 	
 	/**
-	 * Applies the dither to the set of rgb pixels
-	 * @param outRgb
+	 * The matrix coefficients scaled for the given intensity, 
+	 * one per pixel of the matrix (row by row). Must not be modified.
+	 * 
+	 * @param intensity
 	 * @return
 	 */
-	public int[] applyDither(int[] outRgb);
+	public int[] getThresholds(int intensity);
 }
@@ -25,16 +25,15 @@ import java.awt.Font;
 import java.awt.Graphics;
 import java.awt.image.BufferedImage;
 import java.beans.XMLDecoder;
-import java.util.HashMap;
 import java.util.Map;
-import java.util.Set;
 import java.util.zip.GZIPInputStream;
 
+import uk.co.silentsoftware.config.ConversionSettings;
 import uk.co.silentsoftware.core.colourstrategy.MonochromePaletteStrategy;
 import uk.co.silentsoftware.core.converters.image.ResultImage;
 import uk.co.silentsoftware.core.converters.image.ResultImage.ResultImageType;
 import uk.co.silentsoftware.core.converters.image.errordiffusionstrategy.StuckiDitherStrategy;
-import uk.co.silentsoftware.core.helpers.ColourHelper;
+import uk.co.silentsoftware.core.helpers.ParallelHelper;
 
 /**
  * Converts images to the ZX spectrum character set,
@@ -69,11 +68,11 @@ public class CharacterConverterImpl implements ImageProcessor {
 	}
 
 	@Override
-	public ResultImage[] convert(BufferedImage original) {
+	public ResultImage[] convert(BufferedImage original, ConversionSettings settings) {
 		
 		// Dither the image beforehand to improve monochrome conversion
 		ImageProcessor preDither = new ErrorDiffusionConverterImpl(new StuckiDitherStrategy(), false, new MonochromePaletteStrategy());
-		ResultImage[] resultImages = preDither.convert(original);
+		ResultImage[] resultImages = preDither.convert(original, settings);
 		BufferedImage output = null;
 		for (ResultImage ri : resultImages) {
 			if (ResultImageType.FINAL_IMAGE == ri.getResultImageType()) {
@@ -83,13 +82,25 @@ public class CharacterConverterImpl implements ImageProcessor {
 		}
 		//BufferedImage output = ImageHelper.copyImage(preDitheredImage);
 		
-		for (int y = 0; y + ATTRIBUTE_BLOCK_SIZE <= output.getHeight(); y += ATTRIBUTE_BLOCK_SIZE) {
-			for (int x = 0; x + ATTRIBUTE_BLOCK_SIZE <= output.getWidth() && y + ATTRIBUTE_BLOCK_SIZE <= output.getHeight(); x += ATTRIBUTE_BLOCK_SIZE) {
-				int outRgb[] = output.getRGB(x, y, ATTRIBUTE_BLOCK_SIZE, ATTRIBUTE_BLOCK_SIZE, null, 0, ATTRIBUTE_BLOCK_SIZE);
-				outRgb = findBestCharacterMatch(outRgb);
-				output.setRGB(x, y, ATTRIBUTE_BLOCK_SIZE, ATTRIBUTE_BLOCK_SIZE, outRgb, 0, ATTRIBUTE_BLOCK_SIZE);
+		// Each row of attribute blocks is matched independently
+		final BufferedImage image = output;
+		final CharacterMatcher matcher = CharacterMatcher.getInstance();
+		final int ink = settings.getMonochromeInk();
+		final int paper = settings.getMonochromePaper();
+		ParallelHelper.forRange(0, output.getHeight()/ATTRIBUTE_BLOCK_SIZE, 1, new ParallelHelper.Range() {
+			@Override
+			public void compute(int from, int to) {
+				int outRgb[] = new int[ATTRIBUTE_BLOCK_SIZE*ATTRIBUTE_BLOCK_SIZE];
+				for (int y = from*ATTRIBUTE_BLOCK_SIZE; y < to*ATTRIBUTE_BLOCK_SIZE; y += ATTRIBUTE_BLOCK_SIZE) {
+					for (int x = 0; x + ATTRIBUTE_BLOCK_SIZE <= image.getWidth(); x += ATTRIBUTE_BLOCK_SIZE) {
+						image.getRGB(x, y, ATTRIBUTE_BLOCK_SIZE, ATTRIBUTE_BLOCK_SIZE, outRgb, 0, ATTRIBUTE_BLOCK_SIZE);
+						int glyph = matcher.findBestMatch(CharacterMatcher.toBoard(outRgb, paper), CharacterMatcher.toBoard(outRgb, ink));
+						matcher.fillPixels(glyph, ink, paper, outRgb);
+						image.setRGB(x, y, ATTRIBUTE_BLOCK_SIZE, ATTRIBUTE_BLOCK_SIZE, outRgb, 0, ATTRIBUTE_BLOCK_SIZE);
+					}
+				}
 			}
-		}
+		});
 		// Print the name of the preview strategy
 		if (isPreview) {
 			Graphics g = output.getGraphics();
@@ -105,40 +116,4 @@ public class CharacterConverterImpl implements ImageProcessor {
 		
 		return new ResultImage[]{new ResultImage(ResultImageType.FINAL_IMAGE, output)};
 	}
-
-	/**
-	 * Iterates through the character-pixel map to find a character
-	 * that has the most similarly positioned number of pixels which
-	 * it accumulates as a score. Note that the character-pixel map
-	 * is black-white based and we need to map to the monochrome
-	 * colours in use during counting.
-	 * 
-	 * @param sample
-	 * @return
-	 */
-	public int[] findBestCharacterMatch(int[] sample) {
-		Map<String, Integer> stats = new HashMap<String, Integer>();
-		Set<String> keys = charSet.keySet();
-		for (String key : keys) {
-			int score = 0;
-			int[] character = charSet.get(key);
-			for (int i = 0; i < character.length; ++i) {
-				int monochromeMappedColour = ColourHelper.getMonochromeFromBlackAndWhite(character[i]);
-				if (monochromeMappedColour == sample[i]) {
-					score++;
-				}
-			}
-			stats.put(key, score);
-		}
-		int bestScore = Integer.MIN_VALUE;
-		String chosenKey = null;
-		for (String key : keys) {
-			int score = stats.get(key);
-			if (score > bestScore) {
-				bestScore = score;
-				chosenKey = key;
-			}
-		}
-		return ColourHelper.getMonochromeFromBlackAndWhite(charSet.get(chosenKey));
-	}
 }
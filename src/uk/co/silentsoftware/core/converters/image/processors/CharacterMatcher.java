@@ -0,0 +1,171 @@
+/* Image to ZX Spec
+ * Copyright (C) 2014 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package uk.co.silentsoftware.core.converters.image.processors;
+
+import static uk.co.silentsoftware.config.SpectrumDefaults.ATTRIBUTE_BLOCK_SIZE;
+
+import java.awt.Color;
+import java.util.Map;
+
+/**
+ * Matches 8x8 pixel samples against the character set with each
+ * glyph held as a 64 bit board (bit n is pixel n, set for a white
+ * pixel) so a comparison is a couple of ANDs and bit counts.
+ *
+ * Glyphs are kept in the character map's iteration order and the
+ * first best scoring glyph wins, as the map based matching did.
+ */
+public class CharacterMatcher {
+
+	private static final int WHITE = Color.WHITE.getRGB();
+
+	/**
+	 * Number of (power of 2) entries in the match cache
+	 */
+	private static final int CACHE_SIZE = 4096;
+
+	/**
+	 * Matcher for the standard character set
+	 */
+	private static CharacterMatcher instance;
+
+	/**
+	 * The character each glyph represents
+	 */
+	private final String[] characters;
+
+	/**
+	 * The glyph boards, white pixels set
+	 */
+	private final long[] glyphs;
+
+	/**
+	 * Small direct mapped cache of recent sample boards to glyph index. Entries
+	 * are immutable so a racing read only ever sees a whole entry or a miss.
+	 */
+	private final CacheEntry[] cache = new CacheEntry[CACHE_SIZE];
+
+	public CharacterMatcher(Map<String, int[]> charSet) {
+		characters = new String[charSet.size()];
+		glyphs = new long[charSet.size()];
+		int i = 0;
+		for (String key : charSet.keySet()) {
+			characters[i] = key;
+			glyphs[i] = toBoard(charSet.get(key), WHITE);
+			++i;
+		}
+	}
+
+	/**
+	 * Retrieves the matcher for the standard character set
+	 *
+	 * @return
+	 */
+	public static synchronized CharacterMatcher getInstance() {
+		if (instance == null) {
+			instance = new CharacterMatcher(CharacterConverterImpl.charSet);
+		}
+		return instance;
+	}
+
+	/**
+	 * Creates a board with the bits set for each pixel that matches
+	 * the given colour
+	 *
+	 * @param pixels
+	 * @param colour
+	 * @return
+	 */
+	public static long toBoard(int[] pixels, int colour) {
+		long board = 0;
+		for (int i = 0; i < pixels.length; ++i) {
+			if (pixels[i] == colour) {
+				board |= 1L << i;
+			}
+		}
+		return board;
+	}
+
+	/**
+	 * Finds the index of the glyph that best matches a sample, scoring
+	 * a point for each white glyph pixel where the sample is paper and
+	 * each black glyph pixel where the sample is ink.
+	 *
+	 * @param paperBoard sample pixels that are the paper colour
+	 * @param inkBoard sample pixels that are the ink colour
+	 * @return
+	 */
+	public int findBestMatch(long paperBoard, long inkBoard) {
+		long hash = (paperBoard * 0x9E3779B97F4A7C15L) ^ (inkBoard * 0xC2B2AE3D27D4EB4FL);
+		int slot = (int)(hash >>> 52) & (CACHE_SIZE - 1);
+		CacheEntry entry = cache[slot];
+		if (entry != null && entry.paperBoard == paperBoard && entry.inkBoard == inkBoard) {
+			return entry.glyph;
+		}
+		int bestScore = Integer.MIN_VALUE;
+		int chosen = -1;
+		for (int i = 0; i < glyphs.length; ++i) {
+			long glyph = glyphs[i];
+			int score = Long.bitCount(glyph & paperBoard) + Long.bitCount(~glyph & inkBoard);
+			if (score > bestScore) {
+				bestScore = score;
+				chosen = i;
+			}
+		}
+		cache[slot] = new CacheEntry(paperBoard, inkBoard, chosen);
+		return chosen;
+	}
+
+	/**
+	 * The character the glyph at the given index represents
+	 *
+	 * @param glyph
+	 * @return
+	 */
+	public String getCharacter(int glyph) {
+		return characters[glyph];
+	}
+
+	/**
+	 * Fills the 8x8 pixels of the glyph at the given index using the
+	 * given ink and paper colours
+	 *
+	 * @param glyph
+	 * @param ink
+	 * @param paper
+	 * @param pixels
+	 */
+	public void fillPixels(int glyph, int ink, int paper, int[] pixels) {
+		long board = glyphs[glyph];
+		for (int i = 0; i < ATTRIBUTE_BLOCK_SIZE*ATTRIBUTE_BLOCK_SIZE; ++i) {
+			pixels[i] = (board >>> i & 1) != 0 ? paper : ink;
+		}
+	}
+
+	private static class CacheEntry {
+		private final long paperBoard;
+		private final long inkBoard;
+		private final int glyph;
+
+		CacheEntry(long paperBoard, long inkBoard, int glyph) {
+			this.paperBoard = paperBoard;
+			this.inkBoard = inkBoard;
+			this.glyph = glyph;
+		}
+	}
+}
@@ -21,8 +21,14 @@ import java.awt.Color;
 import java.awt.Font;
 import java.awt.Graphics;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
 
-import uk.co.silentsoftware.config.OptionsObject;
+import uk.co.silentsoftware.config.ConversionSettings;
 import uk.co.silentsoftware.config.SpectrumDefaults;
 import uk.co.silentsoftware.core.colourstrategy.ColourChoiceStrategy;
 import uk.co.silentsoftware.core.colourstrategy.FullPaletteStrategy;
@@ -30,15 +36,43 @@ import uk.co.silentsoftware.core.colourstrategy.GigaScreenPaletteStrategy;
 import uk.co.silentsoftware.core.colourstrategy.MonochromePaletteStrategy;
 import uk.co.silentsoftware.core.converters.image.ResultImage;
 import uk.co.silentsoftware.core.converters.image.ResultImage.ResultImageType;
+import uk.co.silentsoftware.core.converters.image.errordiffusionstrategy.ErrorBuffer;
 import uk.co.silentsoftware.core.converters.image.errordiffusionstrategy.ErrorDiffusionDitherStrategy;
+import uk.co.silentsoftware.core.converters.image.errordiffusionstrategy.ErrorDiffusionKernel;
 import uk.co.silentsoftware.core.helpers.ColourHelper;
 import uk.co.silentsoftware.core.helpers.ImageHelper;
+import uk.co.silentsoftware.core.helpers.ParallelHelper;
 
 /**
  * An error diffusion dithering converter
  */
 public class ErrorDiffusionConverterImpl implements ImageProcessor {
 
+	private static final int BLACK = Color.BLACK.getRGB();
+	
+	private static final int WHITE = Color.WHITE.getRGB();
+	
+	/**
+	 * Rows of attribute blocks diffused by each parallel task
+	 */
+	private static final int BLOCK_ROWS_PER_TASK = 1;
+	
+	/**
+	 * Smallest image (in pixels) worth diffusing as a wavefront
+	 */
+	private static final int WAVEFRONT_MINIMUM_PIXELS = 1024*1024;
+	
+	/**
+	 * Wavefront rows publish their progress every (mask+1) pixels
+	 */
+	private static final int PROGRESS_MASK = 15;
+	
+	/**
+	 * Times a wavefront row checks the progress of the row it waits on
+	 * before blocking (most waits are a few pixels long)
+	 */
+	private static final int PROGRESS_SPINS = 256;
+
 	private ErrorDiffusionDitherStrategy previewModeStrategy = null;
 
 	private ColourChoiceStrategy colourChoiceStrategy;
@@ -58,32 +92,28 @@ public class ErrorDiffusionConverterImpl implements ImageProcessor {
 	/*
 	 * {@inheritDoc}
 	 */
-	public ResultImage[] convert(BufferedImage original) {
+	public ResultImage[] convert(BufferedImage original, ConversionSettings settings) {
 		BufferedImage output = ImageHelper.copyImage(original);
-		OptionsObject oo = OptionsObject.getInstance();
-		final ErrorDiffusionDitherStrategy edds = previewModeStrategy != null ? previewModeStrategy : oo.getErrorDiffusionDitherStrategy();
-		final ColourChoiceStrategy colourMode = colourChoiceStrategy != null ? colourChoiceStrategy : oo.getColourMode();
-		Integer xBound = null;
-		Integer yBound = null;
-		for (int y = 0; y < output.getHeight(); ++y) {
-			if (y%SpectrumDefaults.ATTRIBUTE_BLOCK_SIZE == 0) {
-				yBound = y+SpectrumDefaults.ATTRIBUTE_BLOCK_SIZE;
-			}
-			
-			if (oo.getSerpentine() && y % 2 == 0) {		
-				for (int x = output.getWidth() - 1; x >= 0; --x) {
-					if (x%SpectrumDefaults.ATTRIBUTE_BLOCK_SIZE == 0) {
-						xBound = x-SpectrumDefaults.ATTRIBUTE_BLOCK_SIZE;
-					}
-					processPixel(output, colourMode, edds, x, y, xBound, yBound);
-				}
-			} else {
-				for (int x = 0; x < output.getWidth(); ++x) {
-					if (x%SpectrumDefaults.ATTRIBUTE_BLOCK_SIZE == 0) {
-						xBound = x+SpectrumDefaults.ATTRIBUTE_BLOCK_SIZE;
-					}
-					processPixel(output, colourMode, edds, x, y, xBound, yBound);
+		final ErrorDiffusionDitherStrategy edds = previewModeStrategy != null ? previewModeStrategy : settings.getErrorDiffusionDitherStrategy();
+		final ColourChoiceStrategy colourMode = colourChoiceStrategy != null ? colourChoiceStrategy : settings.getColourMode();
+		final int imageWidth = output.getWidth();
+		final int[] pixels = ((DataBufferInt)output.getRaster().getDataBuffer()).getData();
+		if (settings.getConstrainedErrorDiffusion()) {
+			diffuseBlocks(pixels, imageWidth, output.getHeight(), colourMode, settings, edds.getKernel());
+		// Serpentine rows alternate direction so each row would have to wait for 
+		// all of the row above, leaving nothing to run in parallel
+		} else if (!settings.getSerpentine() && imageWidth*output.getHeight() >= WAVEFRONT_MINIMUM_PIXELS 
+				&& ParallelHelper.getPool().getParallelism() > 1) {
+			diffuseWavefront(pixels, imageWidth, output.getHeight(), colourMode, settings, edds.getKernel());
+		} else {
+			final ErrorBuffer errors = new ErrorBuffer(imageWidth, edds.getKernel(), false);
+			for (int y = 0; y < output.getHeight(); ++y) {
+				final int direction = settings.getSerpentine() && y % 2 == 0 ? -1 : 1;
+				errors.startRow(y, direction);
+				for (int i = 0, x = direction > 0 ? 0 : imageWidth - 1; i < imageWidth; ++i, x += direction) {
+					processPixel(pixels, y*imageWidth+x, x, colourMode, settings, errors);
 				}
+				errors.finishRow();
 			}
 		}
 		// Attribute blocks not needed since already 2 colour across entire image (monochrome) when palette processed above,
@@ -91,7 +121,7 @@ public class ErrorDiffusionConverterImpl implements ImageProcessor {
 		if (!(colourMode instanceof MonochromePaletteStrategy) && !(colourMode instanceof GigaScreenPaletteStrategy)) {
 			// Just colour all pixels but use the error diffused image
 			// as a basis for the colour selection
-			output = ColourHelper.colourAttributes(output, original, colourMode);
+			output = ColourHelper.colourAttributes(output, original, colourMode, settings);
 		}
 		// Print the name of the preview strategy
 		if (isPreview && previewModeStrategy != null) {
@@ -108,18 +138,201 @@ public class ErrorDiffusionConverterImpl implements ImageProcessor {
 		return new ResultImage[]{new ResultImage(ResultImageType.FINAL_IMAGE, output)};
 	}
 	
-	public void processPixel(BufferedImage output,  ColourChoiceStrategy colourMode, ErrorDiffusionDitherStrategy edds, int x, int y, Integer boundX, Integer boundY) {
-		int oldPixel = output.getRGB(x, y);
+	/**
+	 * Constrained error diffusion never leaves an attribute block, so each
+	 * row of blocks is independent and the rows of blocks are diffused in
+	 * parallel, each with its own error buffer. Pixels within a block are 
+	 * visited in the same order as a whole image pass, so the result is 
+	 * the same as diffusing serially.
+	 * 
+	 * @param pixels
+	 * @param width
+	 * @param height
+	 * @param colourMode
+	 * @param settings
+	 * @param kernel
+	 */
+	private void diffuseBlocks(final int[] pixels, final int width, final int height, final ColourChoiceStrategy colourMode, final ConversionSettings settings, final ErrorDiffusionKernel kernel) {
+		final int blocksDown = (height+SpectrumDefaults.ATTRIBUTE_BLOCK_SIZE-1)/SpectrumDefaults.ATTRIBUTE_BLOCK_SIZE;
+		ParallelHelper.forRange(0, blocksDown, BLOCK_ROWS_PER_TASK, new ParallelHelper.Range() {
+			@Override
+			public void compute(int from, int to) {
+				final ErrorBuffer errors = new ErrorBuffer(width, kernel, true);
+				for (int blockRow = from; blockRow < to; ++blockRow) {
+					final int startY = blockRow*SpectrumDefaults.ATTRIBUTE_BLOCK_SIZE;
+					final int endY = Math.min(startY+SpectrumDefaults.ATTRIBUTE_BLOCK_SIZE, height);
+					errors.reset();
+					for (int y = startY; y < endY; ++y) {
+						final int direction = settings.getSerpentine() && y % 2 == 0 ? -1 : 1;
+						errors.startRow(y, direction);
+						for (int i = 0, x = direction > 0 ? 0 : width - 1; i < width; ++i, x += direction) {
+							processPixel(pixels, y*width+x, x, colourMode, settings, errors);
+						}
+						errors.finishRow();
+					}
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Diffuses several rows at once as a wavefront. Error only moves down 
+	 * and along, so a row can process a pixel once the row above is more 
+	 * than the kernel's reach either side past it: everything above that 
+	 * diffuses to the pixel is then done, and the two rows can never be 
+	 * diffusing to the same pixel at once (rows further up are further 
+	 * ahead still). Pixels within a row are visited in the same order as
+	 * the serial pass and error is summed exactly, so the result is the same.
+	 * 
+	 * Rows are claimed in order by whichever worker is free, so a row only
+	 * ever waits on rows that are already being processed. A row that has
+	 * to wait parks (as a managed block, so the pool can keep other work 
+	 * such as other frames running) until the row it waits on wakes it.
+	 * 
+	 * Only used without serpentine rows, so every row runs left to right.
+	 * 
+	 * @param pixels
+	 * @param width
+	 * @param height
+	 * @param colourMode
+	 * @param settings
+	 * @param kernel
+	 */
+	private void diffuseWavefront(final int[] pixels, final int width, final int height, final ColourChoiceStrategy colourMode, final ConversionSettings settings, final ErrorDiffusionKernel kernel) {
+		final int workers = Math.min(ParallelHelper.getPool().getParallelism(), height);
+		final int lead = kernel.getReach()*2+1;
+		final int rowCount = kernel.getDepth()+1+workers;
+		final ErrorBuffer sharedErrors = new ErrorBuffer(width, kernel, false, rowCount);
+		final AtomicIntegerArray progress = new AtomicIntegerArray(height);
+		
+		// The thread of each row while it's parked waiting on another row
+		final AtomicReferenceArray<Thread> waiting = new AtomicReferenceArray<Thread>(height);
+		final AtomicInteger nextRow = new AtomicInteger();
+		ParallelHelper.forRange(0, workers, 1, new ParallelHelper.Range() {
+			@Override
+			public void compute(int from, int to) {
+				final ErrorBuffer errors = sharedErrors.share();
+				for (int y = nextRow.getAndIncrement(); y < height; y = nextRow.getAndIncrement()) {
+					
+					// The row previously held where this row diffuses furthest must be done
+					awaitProgress(progress, waiting, y, y+kernel.getDepth()-rowCount, width);
+					int aboveDone = y == 0 ? width : 0;
+					errors.startRow(y, 1);
+					for (int x = 0; x < width; ++x) {
+						if (aboveDone < width) {
+							final int needed = Math.min(width, x+lead);
+							if (needed > aboveDone) {
+								aboveDone = awaitProgress(progress, waiting, y, y-1, needed);
+							}
+						}
+						processPixel(pixels, y*width+x, x, colourMode, settings, errors);
+						if ((x & PROGRESS_MASK) == PROGRESS_MASK && x+1 < width) {
+							progress.set(y, x+1);
+							wake(waiting, y+1);
+						}
+					}
+					
+					// Only a finished row's error can be discarded, and only once 
+					// it's discarded can another row reuse its place in the ring
+					errors.finishRow();
+					progress.set(y, width);
+					wake(waiting, y+1);
+					wake(waiting, y+rowCount-kernel.getDepth());
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Waits until the given wavefront row has processed the given number 
+	 * of pixels (rows before the first count as done). After a short spin
+	 * the waiting row parks until woken by the row it waits on.
+	 * 
+	 * @param progress
+	 * @param waiting
+	 * @param row the waiting row
+	 * @param y
+	 * @param needed
+	 * @return the number of pixels the row has processed
+	 */
+	private static int awaitProgress(final AtomicIntegerArray progress, final AtomicReferenceArray<Thread> waiting, final int row, final int y, final int needed) {
+		if (y < 0) {
+			return needed;
+		}
+		int done = progress.get(y);
+		for (int spin = 0; done < needed && spin < PROGRESS_SPINS; ++spin) {
+			done = progress.get(y);
+		}
+		if (done >= needed) {
+			return done;
+		}
+		try {
+			ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+				@Override
+				public boolean isReleasable() {
+					return progress.get(y) >= needed;
+				}
+				
+				@Override
+				public boolean block() {
+					
+					// Registered before checking so the row can't miss waking it
+					waiting.set(row, Thread.currentThread());
+					while (!isReleasable()) {
+						LockSupport.park(this);
+					}
+					waiting.set(row, null);
+					return true;
+				}
+			});
+		} catch (InterruptedException e) {
+			// Not thrown as block never throws it
+		}
+		return progress.get(y);
+	}
+	
+	/**
+	 * Wakes the given wavefront row if it's parked waiting
+	 * 
+	 * @param waiting
+	 * @param row
+	 */
+	private static void wake(AtomicReferenceArray<Thread> waiting, int row) {
+		if (row < waiting.length()) {
+			Thread thread = waiting.get(row);
+			if (thread != null) {
+				LockSupport.unpark(thread);
+			}
+		}
+	}
+	
+	/**
+	 * Replaces the pixel at the given index with its closest colour
+	 * (after adding the error diffused to it so far) and diffuses
+	 * the resulting error on to the pixels still to be processed
+	 * 
+	 * @param pixels
+	 * @param index
+	 * @param x
+	 * @param colourMode
+	 * @param settings
+	 * @param errors
+	 */
+	private void processPixel(int[] pixels, int index, int x, ColourChoiceStrategy colourMode, ConversionSettings settings, ErrorBuffer errors) {
+		final int oldPixel = pixels[index];
+		final int red = ColourHelper.correctRange(ColourHelper.red(oldPixel)+errors.getError(x, 0));
+		final int green = ColourHelper.correctRange(ColourHelper.green(oldPixel)+errors.getError(x, 1));
+		final int blue = ColourHelper.correctRange(ColourHelper.blue(oldPixel)+errors.getError(x, 2));
 		int newPixel;
 		if (colourMode instanceof GigaScreenPaletteStrategy) {
-			newPixel = ColourHelper.getClosestGigascreenColour(oldPixel);
+			newPixel = ColourHelper.getClosestGigascreenColour(red, green, blue, settings.getPreferDetail());
 		} else if (colourMode instanceof FullPaletteStrategy){
-			newPixel = ColourHelper.getClosestSpectrumColour(oldPixel);
+			newPixel = ColourHelper.getClosestSpectrumColour(red, green, blue, settings.getPreferDetail());
 		// Monochrome
 		} else {
-			newPixel = ColourHelper.getMonochromeColour(oldPixel, Color.BLACK.getRGB(), Color.WHITE.getRGB());
+			newPixel = ColourHelper.getMonochromeColour(red, green, blue, BLACK, WHITE, settings.getBlackThreshold());
 		}
-		output.setRGB(x, y, newPixel);
-		edds.distributeError(output, oldPixel, newPixel, x, y, boundX, boundY);
+		pixels[index] = newPixel;
+		errors.diffuse(x, red-ColourHelper.red(newPixel), green-ColourHelper.green(newPixel), blue-ColourHelper.blue(newPixel));
 	}
 }
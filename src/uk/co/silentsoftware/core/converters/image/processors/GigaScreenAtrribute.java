@@ -32,7 +32,12 @@ import uk.co.silentsoftware.core.helpers.ColourHelper;
  */
 public class GigaScreenAtrribute {
 
-	private GigaScreenColourCombo[] combos = new GigaScreenColourCombo[4];
+	/**
+	 * Number of GigaScreen colour combinations in an attribute
+	 */
+	public static final int COMBO_COUNT = 4;
+	
+	private GigaScreenColourCombo[] combos = new GigaScreenColourCombo[COMBO_COUNT];
 	private int uniqueColourCount;
 	private String uniqueHash;
 	
@@ -81,20 +86,6 @@ public class GigaScreenAtrribute {
 		return new int[]{combos[0].gigascreenColour, combos[1].gigascreenColour, combos[2].gigascreenColour, combos[3].gigascreenColour};
 	}
 	
-	/**
-	 * Calculate how close a match this attribute set of 4 colours
-	 * compares to the provided attribute block. Lower is better.
-	 */
-	public int getScoreForAttributeBlock(int[] attributeBlock) {
-		int totalDistance = 0;
-		for (int pixel : attributeBlock) {
-			int[] components = ColourHelper.intToRgbComponents(pixel);
-			int distance = ColourHelper.getClosestColourDistance(components[0], components[1], components[2], new int[]{combos[0].gigascreenColour, combos[1].gigascreenColour, combos[2].gigascreenColour, combos[3].gigascreenColour});
-			totalDistance+=distance;
-		}
-		return totalDistance;
-	}
-
 	public int getUniqueColourCount() {
 		return uniqueColourCount;
 	}
@@ -118,9 +109,10 @@ public class GigaScreenAtrribute {
 			this.screen1Colour = screen1Colour;
 			this.screen2Colour = screen2Colour;
 
-			int[] rgbS1 = ColourHelper.intToRgbComponents(screen1Colour);
-			int[] rgbS2 = ColourHelper.intToRgbComponents(screen2Colour);
-			gigascreenColour = ColourHelper.intToAlphaRgb((rgbS1[0]+rgbS2[0])/2, (rgbS1[1]+rgbS2[1])/2, (rgbS1[2]+rgbS2[2])/2);		
+			gigascreenColour = ColourHelper.intToAlphaRgb(
+					(ColourHelper.red(screen1Colour)+ColourHelper.red(screen2Colour))/2, 
+					(ColourHelper.green(screen1Colour)+ColourHelper.green(screen2Colour))/2, 
+					(ColourHelper.blue(screen1Colour)+ColourHelper.blue(screen2Colour))/2);		
 		}
 
 
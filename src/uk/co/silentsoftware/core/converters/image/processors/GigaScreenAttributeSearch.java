@@ -0,0 +1,176 @@
+/* Image to ZX Spec
+ * Copyright (C) 2014 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package uk.co.silentsoftware.core.converters.image.processors;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import uk.co.silentsoftware.config.SpectrumDefaults;
+import uk.co.silentsoftware.core.helpers.ColourHelper;
+import uk.co.silentsoftware.core.helpers.PaletteLookupTable;
+
+/**
+ * Finds the best fitting GigaScreen attribute for an attribute block.
+ *
+ * Once dithered a block's pixels are (almost always) GigaScreen palette
+ * colours, so rather than measuring every pixel against every attribute
+ * the block is reduced to a histogram of palette colours and each attribute
+ * is scored from a precomputed (attribute x palette colour) distance table.
+ * Histogram entries are scored most popular first so an attribute can be
+ * abandoned as soon as its partial score can no longer beat the best found.
+ *
+ * The attribute chosen is identical to summing, for every pixel, the distance
+ * to the closest of each attribute's 4 colours and keeping the first lowest.
+ */
+public class GigaScreenAttributeSearch {
+
+	/**
+	 * Searches already built, keyed by the (constant) attribute palette
+	 */
+	private static final Map<GigaScreenAtrribute[], GigaScreenAttributeSearch> SEARCHES = new IdentityHashMap<>();
+
+	/**
+	 * The GigaScreen colours the histogram is built from
+	 */
+	private static final PaletteLookupTable COLOURS = PaletteLookupTable.GIGASCREEN_ALL;
+
+	/**
+	 * The attributes being searched
+	 */
+	private final GigaScreenAtrribute[] attributes;
+
+	/**
+	 * Distance from each palette colour to the closest colour of each
+	 * attribute, indexed by attribute * palette length + palette index
+	 */
+	private final int[] costs;
+
+	/**
+	 * The 4 GigaScreen colours of each attribute, indexed by
+	 * attribute * COMBO_COUNT + combo, for pixels not in the palette
+	 */
+	private final int[] attributeColours;
+
+	private final int paletteLength;
+
+	private GigaScreenAttributeSearch(GigaScreenAtrribute[] attributes) {
+		this.attributes = attributes;
+		int[] palette = COLOURS.getPalette();
+		paletteLength = palette.length;
+		costs = new int[attributes.length*paletteLength];
+		attributeColours = new int[attributes.length*GigaScreenAtrribute.COMBO_COUNT];
+		for (int a=0; a<attributes.length; ++a) {
+			for (int c=0; c<GigaScreenAtrribute.COMBO_COUNT; ++c) {
+				attributeColours[a*GigaScreenAtrribute.COMBO_COUNT+c] = attributes[a].getColourCombo(c).getGigascreenColour();
+			}
+			for (int p=0; p<paletteLength; ++p) {
+				costs[a*paletteLength+p] = getClosestDistance(palette[p], a);
+			}
+		}
+	}
+
+	/**
+	 * Retrieves the (cached) search for the given attribute palette
+	 *
+	 * @param attributes
+	 * @return
+	 */
+	public static GigaScreenAttributeSearch forAttributes(GigaScreenAtrribute[] attributes) {
+		synchronized(SEARCHES) {
+			GigaScreenAttributeSearch search = SEARCHES.get(attributes);
+			if (search == null) {
+				search = new GigaScreenAttributeSearch(attributes);
+				SEARCHES.put(attributes, search);
+			}
+			return search;
+		}
+	}
+
+	/**
+	 * Finds the attribute whose 4 colours best fit the given block of pixels
+	 *
+	 * @param attributeBlock
+	 * @return
+	 */
+	public GigaScreenAtrribute findClosest(int[] attributeBlock) {
+
+		// Histogram of the palette colours in the block, plus any stragglers
+		// that aren't palette colours (e.g. from a preview label)
+		int[] counts = new int[paletteLength];
+		int[] entries = new int[attributeBlock.length];
+		int entryCount = 0;
+		int[] others = new int[attributeBlock.length];
+		int otherCount = 0;
+		for (int pixel : attributeBlock) {
+			int index = COLOURS.getClosestIndex(ColourHelper.red(pixel), ColourHelper.green(pixel), ColourHelper.blue(pixel));
+			if ((SpectrumDefaults.GIGASCREEN_COLOURS_ALL[index] & 0xFFFFFF) != (pixel & 0xFFFFFF)) {
+				others[otherCount++] = pixel;
+			} else if (counts[index]++ == 0) {
+				entries[entryCount++] = index;
+			}
+		}
+
+		// Most popular colours first so the partial score rises quickly
+		for (int i=1; i<entryCount; ++i) {
+			int entry = entries[i];
+			int j = i-1;
+			while (j >= 0 && counts[entries[j]] < counts[entry]) {
+				entries[j+1] = entries[j];
+				--j;
+			}
+			entries[j+1] = entry;
+		}
+
+		long lowest = Long.MAX_VALUE;
+		int chosen = 0;
+		for (int a=0; a<attributes.length; ++a) {
+			final int offset = a*paletteLength;
+			long score = 0;
+			int i=0;
+			for (; i<entryCount && score < lowest; ++i) {
+				int entry = entries[i];
+				score += counts[entry]*costs[offset+entry];
+			}
+			if (i < entryCount) {
+				continue;
+			}
+			for (i=0; i<otherCount && score < lowest; ++i) {
+				score += getClosestDistance(others[i], a);
+			}
+			if (score < lowest) {
+				lowest = score;
+				chosen = a;
+			}
+		}
+		return attributes[chosen];
+	}
+
+	/**
+	 * Distance from the pixel to the closest of the attribute's colours
+	 */
+	private int getClosestDistance(int pixel, int attribute) {
+		int bestMatch = Integer.MAX_VALUE;
+		for (int c=attribute*GigaScreenAtrribute.COMBO_COUNT; c<(attribute+1)*GigaScreenAtrribute.COMBO_COUNT; ++c) {
+			int diff = ColourHelper.distance(pixel, attributeColours[c]);
+			if (diff < bestMatch) {
+				bestMatch = diff;
+			}
+		}
+		return bestMatch;
+	}
+}
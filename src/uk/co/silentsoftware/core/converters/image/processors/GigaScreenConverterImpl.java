@@ -24,8 +24,8 @@ import java.awt.image.BufferedImage;
 import java.util.HashSet;
 import java.util.Set;
 
+import uk.co.silentsoftware.config.ConversionSettings;
 import uk.co.silentsoftware.config.GigaScreenHSBOption;
-import uk.co.silentsoftware.config.OptionsObject;
 import uk.co.silentsoftware.core.attributestrategy.GigaScreenAttributeStrategy;
 import uk.co.silentsoftware.core.converters.image.DitherStrategy;
 import uk.co.silentsoftware.core.converters.image.ResultImage;
@@ -49,8 +49,7 @@ public class GigaScreenConverterImpl implements ImageProcessor {
 	}
 	
 	@Override
-	public ResultImage[] convert(BufferedImage original) {
-		OptionsObject oo = OptionsObject.getInstance();
+	public ResultImage[] convert(BufferedImage original, ConversionSettings settings) {
 		BufferedImage output = ImageHelper.copyImage(original);
 		final BufferedImage output1 = new BufferedImage(output.getWidth(), output.getHeight(), BufferedImage.TYPE_INT_ARGB);
 		final BufferedImage output2 = new BufferedImage(output.getWidth(), output.getHeight(), BufferedImage.TYPE_INT_ARGB);
@@ -59,24 +58,22 @@ public class GigaScreenConverterImpl implements ImageProcessor {
 		ResultImage[] resultImage = null;
 		if (ditherStrategy != null) {
 			if (ditherStrategy instanceof ErrorDiffusionDitherStrategy) {
-				resultImage = new ErrorDiffusionConverterImpl((ErrorDiffusionDitherStrategy)ditherStrategy, true, null).convert(output);
+				resultImage = new ErrorDiffusionConverterImpl((ErrorDiffusionDitherStrategy)ditherStrategy, true, null).convert(output, settings);
 			} else {
-				resultImage = new OrderedDitherConverterImpl((OrderedDitherStrategy)ditherStrategy).convert(output); 
+				resultImage = new OrderedDitherConverterImpl((OrderedDitherStrategy)ditherStrategy).convert(output, settings); 
 			}
 		} else {
-			ditherStrategy = oo.getSelectedDitherStrategy();
-			if (ditherStrategy instanceof ErrorDiffusionDitherStrategy) {
-				resultImage = new ErrorDiffusionConverterImpl().convert(output);
+			if (settings.getSelectedDitherStrategy() instanceof ErrorDiffusionDitherStrategy) {
+				resultImage = new ErrorDiffusionConverterImpl().convert(output, settings);
 			} else {
-				resultImage = new OrderedDitherConverterImpl().convert(output);
+				resultImage = new OrderedDitherConverterImpl().convert(output, settings);
 			}
-		} 
-		ditherStrategy = null;
+		}
 		output = resultImage[0].getImage();
 		
 		// Algorithm replaces each pixel with the colour from the closest matching
 		// 4 colour GigaScreen attribute block.
-		GigaScreenAtrribute[][] quad = getGigaScreenAttribute(output);
+		GigaScreenAtrribute[][] quad = getGigaScreenAttribute(output, settings);
 		GigaScreenAtrribute combo = null;
 		for (int y = 0; y < output.getHeight(); ++y) {		
 			for (int x = 0; x < output.getWidth(); ++x) {
@@ -91,8 +88,8 @@ public class GigaScreenConverterImpl implements ImageProcessor {
 		}
 		
 		// We can only order attributes if each both screens are either bright or half bright, not mixed
-		if (!(oo.getGigaScreenAttributeStrategy() instanceof GigaScreenAttributeStrategy) && (oo.getExportTape() || oo.getExportScreen())) {
-			orderByGigaScreenHsbOption(output1, output2);
+		if (!(settings.getGigaScreenAttributeStrategy() instanceof GigaScreenAttributeStrategy) && (settings.getExportTape() || settings.getExportScreen())) {
+			orderByGigaScreenHsbOption(output1, output2, settings.getGigaScreenHsbOption());
 		}
 	
 		return new ResultImage[]{new ResultImage(ResultImageType.FINAL_IMAGE, output), 
@@ -105,23 +102,14 @@ public class GigaScreenConverterImpl implements ImageProcessor {
 	 * For each attribute block it finds the closest (best fitting) gigascreen
 	 * palette of 4 colours.
 	 */
-	public GigaScreenAtrribute[][] getGigaScreenAttribute(BufferedImage original) {
-		OptionsObject oo = OptionsObject.getInstance();
-		GigaScreenAtrribute[] palette = oo.getGigaScreenAttributeStrategy().getPalette();
+	public GigaScreenAtrribute[][] getGigaScreenAttribute(BufferedImage original, ConversionSettings settings) {
+		GigaScreenAttributeSearch search = GigaScreenAttributeSearch.forAttributes(settings.getGigaScreenAttributeStrategy().getPalette());
 		GigaScreenAtrribute[][] entries = new GigaScreenAtrribute[original.getWidth()/ATTRIBUTE_BLOCK_SIZE][original.getHeight()/ATTRIBUTE_BLOCK_SIZE];
+		int outRgb[] = new int[ATTRIBUTE_BLOCK_SIZE*ATTRIBUTE_BLOCK_SIZE];
 		for (int y = 0; y + ATTRIBUTE_BLOCK_SIZE <= original.getHeight(); y += ATTRIBUTE_BLOCK_SIZE) {			
 			for (int x = 0; x + ATTRIBUTE_BLOCK_SIZE <= original.getWidth() && y + ATTRIBUTE_BLOCK_SIZE <= original.getHeight(); x += ATTRIBUTE_BLOCK_SIZE) {
-				int outRgb[] = original.getRGB(x, y, ATTRIBUTE_BLOCK_SIZE, ATTRIBUTE_BLOCK_SIZE, null, 0, ATTRIBUTE_BLOCK_SIZE);				
-				long lowest = Long.MAX_VALUE;
-				GigaScreenAtrribute chosen = palette[0];
-				for (GigaScreenAtrribute combo : palette) {
-					int score = combo.getScoreForAttributeBlock(outRgb);
-					if (score < lowest) {
-						lowest = score;
-						chosen = combo;
-					}
-				}
-				entries[x/ATTRIBUTE_BLOCK_SIZE][y/ATTRIBUTE_BLOCK_SIZE] = chosen;
+				original.getRGB(x, y, ATTRIBUTE_BLOCK_SIZE, ATTRIBUTE_BLOCK_SIZE, outRgb, 0, ATTRIBUTE_BLOCK_SIZE);				
+				entries[x/ATTRIBUTE_BLOCK_SIZE][y/ATTRIBUTE_BLOCK_SIZE] = search.findClosest(outRgb);
 			}			
 		}
 		return entries;
@@ -131,8 +119,7 @@ public class GigaScreenConverterImpl implements ImageProcessor {
 	 * Reorders the colour between the two screens to minimise the amount of flicker or
 	 * other artifacts in actual ZX Spectrum screen output. 
 	 */
-	private void orderByGigaScreenHsbOption(BufferedImage output1, BufferedImage output2) {
-		GigaScreenHSBOption hsbOption = OptionsObject.getInstance().getGigaScreenHsbOption();
+	private void orderByGigaScreenHsbOption(BufferedImage output1, BufferedImage output2, GigaScreenHSBOption hsbOption) {
 		if (GigaScreenHSBOption.None == hsbOption) {
 			return;
 		} 
@@ -150,8 +137,7 @@ public class GigaScreenConverterImpl implements ImageProcessor {
 					}
 				}
 				for (int rgb : cols) {
-					int[] rgbComps = ColourHelper.intToRgbComponents(rgb);
-					float[] hsb = Color.RGBtoHSB(rgbComps[0], rgbComps[1], rgbComps[2], null);
+					float[] hsb = Color.RGBtoHSB(ColourHelper.red(rgb), ColourHelper.green(rgb), ColourHelper.blue(rgb), null);
 					totalCount1+=getGigaScreenHSBCount(hsb, hsbOption);
 				}	
 				cols = new HashSet<>();
@@ -162,8 +148,7 @@ public class GigaScreenConverterImpl implements ImageProcessor {
 					}
 				}
 				for (int rgb : cols) {
-					int[] rgbComps = ColourHelper.intToRgbComponents(rgb);
-					float[] hsb = Color.RGBtoHSB(rgbComps[0], rgbComps[1], rgbComps[2], null);
+					float[] hsb = Color.RGBtoHSB(ColourHelper.red(rgb), ColourHelper.green(rgb), ColourHelper.blue(rgb), null);
 					totalCount2+=getGigaScreenHSBCount(hsb, hsbOption);
 				}
 				if (totalCount1 < totalCount2) {
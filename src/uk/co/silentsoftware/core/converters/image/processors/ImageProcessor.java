@@ -19,6 +19,7 @@ package uk.co.silentsoftware.core.converters.image.processors;
 
 import java.awt.image.BufferedImage;
 
+import uk.co.silentsoftware.config.ConversionSettings;
 import uk.co.silentsoftware.core.converters.image.ResultImage;
 
 /**
@@ -29,8 +30,10 @@ public interface ImageProcessor {
 	
 	/**
 	 * Convert the original image to the output image
+	 * using the given settings
 	 * @param original
+	 * @param settings
 	 * @return
 	 */
-	public ResultImage[] convert(final BufferedImage original);
+	public ResultImage[] convert(final BufferedImage original, final ConversionSettings settings);
 }
@@ -21,8 +21,10 @@ import java.awt.Color;
 import java.awt.Font;
 import java.awt.Graphics;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 
-import uk.co.silentsoftware.config.OptionsObject;
+import uk.co.silentsoftware.config.ConversionSettings;
+import uk.co.silentsoftware.core.colourstrategy.FullPaletteStrategy;
 import uk.co.silentsoftware.core.colourstrategy.GigaScreenPaletteStrategy;
 import uk.co.silentsoftware.core.colourstrategy.MonochromePaletteStrategy;
 import uk.co.silentsoftware.core.converters.image.ResultImage;
@@ -30,12 +32,19 @@ import uk.co.silentsoftware.core.converters.image.ResultImage.ResultImageType;
 import uk.co.silentsoftware.core.converters.image.orderedditherstrategy.OrderedDitherStrategy;
 import uk.co.silentsoftware.core.helpers.ColourHelper;
 import uk.co.silentsoftware.core.helpers.ImageHelper;
+import uk.co.silentsoftware.core.helpers.PaletteLookupTable;
+import uk.co.silentsoftware.core.helpers.ParallelHelper;
 
 /**
 * An ordered dithering converter
  */
 public class OrderedDitherConverterImpl implements ImageProcessor {
 	
+	/**
+	 * Minimum number of pixel rows dithered by a single parallel task
+	 */
+	private static final int ROWS_PER_TASK = 16;
+	
 	private OrderedDitherStrategy previewModeStrategy = null;
 	
 	public OrderedDitherConverterImpl(OrderedDitherStrategy previewModeStrategy) {
@@ -48,25 +57,33 @@ public class OrderedDitherConverterImpl implements ImageProcessor {
 	 * {@inheritDoc}
 	 */
 	@Override
-	public ResultImage[] convert(final BufferedImage original) {
-		OptionsObject oo = OptionsObject.getInstance();
+	public ResultImage[] convert(final BufferedImage original, final ConversionSettings settings) {
 		BufferedImage output = ImageHelper.copyImage(original);
-		final OrderedDitherStrategy ods = previewModeStrategy !=null?previewModeStrategy:oo.getOrderedDitherStrategy();
-		int xMax = ods.getMatrixWidth();
-		int yMax = ods.getMatrixHeight();
-		for (int y=0; y+yMax<=original.getHeight(); y+=yMax) {
-			for (int x=0; x+xMax<=original.getWidth() && y+yMax<=original.getHeight(); x+=xMax) {
-				int outRgb[] = original.getRGB(x, y, xMax, yMax, null, 0, xMax);
-				outRgb = ods.applyDither(outRgb);
-				output.setRGB(x, y, xMax, yMax, outRgb, 0, xMax);	
+		final OrderedDitherStrategy ods = previewModeStrategy !=null?previewModeStrategy:settings.getOrderedDitherStrategy();
+		final int[] pixels = ((DataBufferInt)output.getRaster().getDataBuffer()).getData();
+		final int imageWidth = output.getWidth();
+		final int matrixWidth = ods.getMatrixWidth();
+		final int matrixHeight = ods.getMatrixHeight();
+		final int[] thresholds = ods.getThresholds(settings.getOrderedDitherIntensity());
+		
+		// Only whole matrix tiles are dithered, any remaining edge pixels are left as they are
+		final int ditheredWidth = imageWidth-imageWidth%matrixWidth;
+		
+		// No pixel depends on another so bands of tile rows can be dithered in parallel
+		ParallelHelper.forRange(0, output.getHeight()/matrixHeight, Math.max(1, ROWS_PER_TASK/matrixHeight), new ParallelHelper.Range() {
+			@Override
+			public void compute(int from, int to) {
+				for (int y=from*matrixHeight; y<to*matrixHeight; ++y) {
+					ditherRow(pixels, y*imageWidth, ditheredWidth, thresholds, (y%matrixHeight)*matrixWidth, matrixWidth, settings);
+				}
 			}
-		}
+		});
 		
 		// Attribute blocks not needed since already 2 colour across entire image (mono) or will be further processed later (giga)
-		if (!(oo.getColourMode() instanceof MonochromePaletteStrategy) && !(oo.getColourMode() instanceof GigaScreenPaletteStrategy)) {
+		if (!(settings.getColourMode() instanceof MonochromePaletteStrategy) && !(settings.getColourMode() instanceof GigaScreenPaletteStrategy)) {
 			// Just colour all pixels but use the original image
 			// as a basis for the colour selection
-			output = ColourHelper.colourAttributes(output, original, oo.getColourMode());
+			output = ColourHelper.colourAttributes(output, original, settings.getColourMode(), settings);
 		}
 		
 		// Print the name of the preview strategy
@@ -82,4 +99,42 @@ public class OrderedDitherConverterImpl implements ImageProcessor {
 		}
 		return new ResultImage[]{new ResultImage(ResultImageType.FINAL_IMAGE, output)};
 	}
+	
+	/**
+	 * Dithers a row of pixels in place using the row of the threshold
+	 * matrix starting at thresholdStart, repeated across the row.
+	 * 
+	 * @param pixels
+	 * @param start the index of the first pixel in the row
+	 * @param length the number of pixels to dither
+	 * @param thresholds
+	 * @param thresholdStart
+	 * @param matrixWidth
+	 * @param settings
+	 */
+	private void ditherRow(int[] pixels, int start, int length, int[] thresholds, int thresholdStart, int matrixWidth, ConversionSettings settings) {
+		final int end = start+length;
+		if (settings.getColourMode() instanceof FullPaletteStrategy || settings.getColourMode() instanceof GigaScreenPaletteStrategy) {
+			final PaletteLookupTable table = settings.getColourMode() instanceof GigaScreenPaletteStrategy ? PaletteLookupTable.GIGASCREEN_ALL : PaletteLookupTable.SPECTRUM_ALL;
+			final boolean preferDetail = settings.getPreferDetail();
+			for (int i=start; i<end; i+=matrixWidth) {
+				for (int j=0; j<matrixWidth; ++j) {
+					int rgb = pixels[i+j];
+					int threshold = thresholds[thresholdStart+j];
+					pixels[i+j] = ColourHelper.getClosestColour((rgb>>16&0xFF)+threshold, (rgb>>8&0xFF)+threshold, (rgb&0xFF)+threshold, table, preferDetail);
+				}
+			}
+		} else {
+			final int ink = settings.getMonochromeInk();
+			final int paper = settings.getMonochromePaper();
+			final int blackThreshold = settings.getBlackThreshold();
+			for (int i=start; i<end; i+=matrixWidth) {
+				for (int j=0; j<matrixWidth; ++j) {
+					int rgb = pixels[i+j];
+					int threshold = thresholds[thresholdStart+j];
+					pixels[i+j] = ColourHelper.getMonochromeColour((rgb>>16&0xFF)+threshold, (rgb>>8&0xFF)+threshold, (rgb&0xFF)+threshold, ink, paper, blackThreshold);
+				}
+			}
+		}
+	}
 }
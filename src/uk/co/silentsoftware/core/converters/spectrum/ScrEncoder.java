@@ -0,0 +1,190 @@
+/* Image to ZX Spec
+ * Copyright (C) 2014 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package uk.co.silentsoftware.core.converters.spectrum;
+
+import static uk.co.silentsoftware.config.SpectrumDefaults.ATTRIBUTE_BLOCK_SIZE;
+import static uk.co.silentsoftware.config.SpectrumDefaults.COLUMNS;
+import static uk.co.silentsoftware.config.SpectrumDefaults.ROWS;
+import static uk.co.silentsoftware.config.SpectrumDefaults.SCREEN_HEIGHT;
+import static uk.co.silentsoftware.config.SpectrumDefaults.SCREEN_WIDTH;
+
+import uk.co.silentsoftware.config.SpectrumDefaults;
+
+/**
+ * Writes SCR data directly from a buffer of Spectrum colour indexes,
+ * one byte per pixel in normal raster order.
+ * 
+ * A colour index is the 3 bit Spectrum colour (as used in the attribute 
+ * ink and paper) plus BRIGHT_FLAG for the bright set, so each of the 
+ * 15 Spectrum colours has exactly one index. NOT_A_SPECTRUM_COLOUR is
+ * used for anything else.
+ */
+public final class ScrEncoder {
+
+	/**
+	 * Size in bytes of the pixel (display file) part of an SCR
+	 */
+	public static final int PIXEL_DATA_SIZE = SCREEN_WIDTH*SCREEN_HEIGHT/8;
+	
+	/**
+	 * Size in bytes of the attribute part of an SCR
+	 */
+	public static final int ATTRIBUTE_DATA_SIZE = ROWS*COLUMNS;
+	
+	/**
+	 * Added to a colour index for colours in the bright set
+	 */
+	public static final int BRIGHT_FLAG = 8;
+	
+	/**
+	 * Index for pixels that aren't Spectrum colours
+	 */
+	public static final byte NOT_A_SPECTRUM_COLOUR = -1;
+	
+	private static final int BRIGHT_ATTRIBUTE = 0x40;
+	
+	/**
+	 * Private constructor since we want static use only
+	 */
+	private ScrEncoder(){}
+	
+	/**
+	 * Offset into the display file of the given pixel line. The
+	 * screen is split into thirds, and each third is stored as the 
+	 * first line of all 8 character rows, then the second and so on. 
+	 * 
+	 * @param y
+	 * @return
+	 */
+	public static int getLineOffset(int y) {
+		return (y & 0xC0) << 5 | (y & 0x07) << 8 | (y & 0x38) << 2;
+	}
+	
+	/**
+	 * Retrieves the colour index of the given RGB colour
+	 * 
+	 * @param rgb
+	 * @return the index or NOT_A_SPECTRUM_COLOUR
+	 */
+	public static byte toIndex(int rgb) {
+		int red = rgb >> 16 & 0xFF;
+		int green = rgb >> 8 & 0xFF;
+		int blue = rgb & 0xFF;
+		int colour = (blue != 0 ? 1 : 0) | (red != 0 ? 2 : 0) | (green != 0 ? 4 : 0);
+		int index = colour;
+		if (red == 0xFF || green == 0xFF || blue == 0xFF) {
+			index |= BRIGHT_FLAG;
+		}
+		if (colour == 0 || toRgb(index) != rgb) {
+			return rgb == SpectrumDefaults.SPECTRUM_COLOURS_BRIGHT[0] ? 0 : NOT_A_SPECTRUM_COLOUR;
+		}
+		return (byte)index;
+	}
+	
+	/**
+	 * Retrieves the RGB colour of the given colour index
+	 * 
+	 * @param index
+	 * @return
+	 */
+	public static int toRgb(int index) {
+		if ((index & BRIGHT_FLAG) != 0) {
+			return SpectrumDefaults.SPECTRUM_COLOURS_BRIGHT[index & 0x07];
+		}
+		return SpectrumDefaults.SPECTRUM_COLOURS_HALF_BRIGHT[index & 0x07];
+	}
+	
+	/**
+	 * Builds the attribute byte for the given ink and paper colour indexes
+	 * 
+	 * @param ink
+	 * @param paper
+	 * @param bright
+	 * @return
+	 */
+	public static byte toAttribute(int ink, int paper, boolean bright) {
+		return (byte)((ink & 0x07) | (paper & 0x07) << 3 | (bright ? BRIGHT_ATTRIBUTE : 0));
+	}
+	
+	/**
+	 * Encodes a 256x192 buffer of colour indexes as an SCR. A pixel is set 
+	 * where its index is the ink index of its attribute block; everything 
+	 * else is paper. The attributes (one per block, row by row) are copied 
+	 * in as given.
+	 * 
+	 * @param indexes the colour index of each pixel
+	 * @param inks the ink colour index of each attribute block
+	 * @param attributes the attribute byte of each attribute block
+	 * @return
+	 */
+	public static byte[] encode(byte[] indexes, byte[] inks, byte[] attributes) {
+		byte[] scr = new byte[ScrConverter.SCR_SIZE];
+		for (int y=0; y<SCREEN_HEIGHT; ++y) {
+			final int lineOffset = getLineOffset(y);
+			final int blockRow = (y/ATTRIBUTE_BLOCK_SIZE)*COLUMNS;
+			int pixel = y*SCREEN_WIDTH;
+			for (int column=0; column<COLUMNS; ++column) {
+				final byte ink = inks[blockRow+column];
+				int bits = 0;
+				for (int mask=0x80; mask != 0; mask >>= 1) {
+					if (indexes[pixel++] == ink) {
+						bits |= mask;
+					}
+				}
+				scr[lineOffset+column] = (byte)bits;
+			}
+		}
+		System.arraycopy(attributes, 0, scr, PIXEL_DATA_SIZE, ATTRIBUTE_DATA_SIZE);
+		return scr;
+	}
+	
+	/**
+	 * Decodes an SCR starting at the given offset back to a 256x192 
+	 * buffer of colour indexes (the reverse of encode).
+	 * 
+	 * @param scr
+	 * @param offset
+	 * @return
+	 */
+	public static byte[] decode(byte[] scr, int offset) {
+		byte[] indexes = new byte[SCREEN_WIDTH*SCREEN_HEIGHT];
+		for (int y=0; y<SCREEN_HEIGHT; ++y) {
+			final int lineOffset = offset+getLineOffset(y);
+			final int blockRow = offset+PIXEL_DATA_SIZE+(y/ATTRIBUTE_BLOCK_SIZE)*COLUMNS;
+			int pixel = y*SCREEN_WIDTH;
+			for (int column=0; column<COLUMNS; ++column) {
+				final int attribute = scr[blockRow+column];
+				final int bright = (attribute & BRIGHT_ATTRIBUTE) != 0 ? BRIGHT_FLAG : 0;
+				final byte ink = toDecodedIndex(attribute & 0x07, bright);
+				final byte paper = toDecodedIndex(attribute >> 3 & 0x07, bright);
+				final int bits = scr[lineOffset+column];
+				for (int mask=0x80; mask != 0; mask >>= 1) {
+					indexes[pixel++] = (bits & mask) != 0 ? ink : paper;
+				}
+			}
+		}
+		return indexes;
+	}
+	
+	/**
+	 * Black has only the one index, whatever the bright attribute
+	 */
+	private static byte toDecodedIndex(int colour, int bright) {
+		return (byte)(colour == 0 ? 0 : colour | bright);
+	}
+}
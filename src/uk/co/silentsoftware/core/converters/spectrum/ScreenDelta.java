@@ -0,0 +1,140 @@
+/* Image to ZX Spec
+ * Copyright (C) 2014 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package uk.co.silentsoftware.core.converters.spectrum;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Encodes a screen (e.g. a video frame's SCR) as only the display file
+ * and attribute bytes that differ from the previous screen, to be played
+ * straight into screen memory by the delta loader's player (see delta.asm).
+ *
+ * The delta is pairs of bytes - a count of unchanged bytes to skip and a
+ * count of changed bytes to copy, followed by those bytes. It ends with a
+ * pair that copies nothing and reaches the end of the screen (long skips
+ * are also pairs that copy nothing).
+ */
+public final class ScreenDelta {
+
+	/**
+	 * Longest skip or copy in a pair
+	 */
+	private static final int MAX_RUN = 255;
+
+	/**
+	 * Unchanged bytes between changed ones are copied along with them
+	 * when there are no more than this many (a new pair is no smaller
+	 * and is slower to play)
+	 */
+	private static final int MERGE_GAP = 2;
+
+	/**
+	 * Private constructor since we want static use only
+	 */
+	private ScreenDelta(){}
+
+	/**
+	 * Encodes the changes from the previous screen to the current one
+	 *
+	 * @param previous the previous screen or null to copy every byte
+	 * (e.g. for the first frame)
+	 * @param current
+	 * @return
+	 */
+	public static byte[] encode(byte[] previous, byte[] current) {
+		final int n = current.length;
+		if (previous != null && previous.length != n) {
+			throw new IllegalArgumentException("Screens are not the same size");
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream(n/4);
+		int position = 0;
+		while (true) {
+			int start = position;
+			while (start < n && !isChanged(previous, current, start)) {
+				++start;
+			}
+			int skip = start-position;
+			while (skip > MAX_RUN) {
+				out.write(MAX_RUN);
+				out.write(0);
+				skip -= MAX_RUN;
+			}
+			if (start == n) {
+				out.write(skip);
+				out.write(0);
+				return out.toByteArray();
+			}
+
+			// Extend the run over changed bytes and short gaps between them
+			int end = start+1;
+			while (end < n) {
+				int next = end;
+				while (next < n && next-end <= MERGE_GAP && !isChanged(previous, current, next)) {
+					++next;
+				}
+				if (next == n || next-end > MERGE_GAP) {
+					break;
+				}
+				end = next+1;
+			}
+			for (int from=start; from<end; from+=MAX_RUN) {
+				int count = Math.min(MAX_RUN, end-from);
+				out.write(skip);
+				out.write(count);
+				out.write(current, from, count);
+				skip = 0;
+			}
+			position = end;
+		}
+	}
+
+	/**
+	 * Plays the delta onto the screen in place exactly as the Z80
+	 * player does
+	 *
+	 * @param screen
+	 * @param delta
+	 */
+	public static void apply(byte[] screen, byte[] delta) {
+		int position = 0;
+		int index = 0;
+		while (true) {
+			if (index+2 > delta.length) {
+				throw new IllegalArgumentException("Delta ends unexpectedly");
+			}
+			position += delta[index++] & 0xff;
+			int count = delta[index++] & 0xff;
+			if (count == 0) {
+				if (position >= screen.length) {
+					return;
+				}
+				continue;
+			}
+			if (index+count > delta.length || position+count > screen.length) {
+				throw new IllegalArgumentException("Delta copies past the end of the data");
+			}
+			System.arraycopy(delta, index, screen, position, count);
+			index += count;
+			position += count;
+		}
+	}
+
+	private static boolean isChanged(byte[] previous, byte[] current, int index) {
+		return previous == null || previous[index] != current[index];
+	}
+}
@@ -0,0 +1,333 @@
+/* Image to ZX Spec
+ * Copyright (C) 2014 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package uk.co.silentsoftware.core.converters.spectrum;
+
+import java.util.Arrays;
+
+/**
+ * Packs data (e.g. SCR screens) in the ZX7 format by Einar Saukas - an
+ * LZ77 scheme with Elias gamma coded lengths designed to be unpacked
+ * quickly by a very small Z80 routine (see compressed.asm, used by the 
+ * compressed screen loader).
+ * 
+ * The stream is the first byte as is, followed by literals (a 0 bit and
+ * a byte) and matches (a 1 bit, the gamma coded length-1 and the offset-1 
+ * as a byte, plus 4 more bits when over 127) ending with a match with 
+ * a length of 16 zero bits. Bits are read most significant first from a
+ * byte that is taken from the stream when the previous one runs out.
+ * 
+ * The packing is optimal (the fewest bits for the format) over matches
+ * found by a hash chain of byte pairs.
+ */
+public final class ScreenPacker {
+
+	/**
+	 * Furthest back a match can copy from
+	 */
+	public static final int MAX_OFFSET = 2176;
+	
+	/**
+	 * Largest offset-1 that fits in the single byte offset form
+	 */
+	private static final int SHORT_OFFSET_LIMIT = 128;
+	
+	/**
+	 * Shortest match
+	 */
+	private static final int MIN_MATCH = 2;
+	
+	/**
+	 * Longest match (the largest 16 bit gamma coded length-1 + 1)
+	 */
+	private static final int MAX_MATCH = 65536;
+	
+	/**
+	 * Most earlier positions with the same byte pair tried for each position
+	 */
+	private static final int MAX_CANDIDATES = 128;
+	
+	/**
+	 * Matches at least this long are taken without searching for matches
+	 * from the positions they cover (long runs are otherwise very slow
+	 * to parse for next to no gain)
+	 */
+	private static final int NICE_MATCH = 128;
+	
+	/**
+	 * Bits for a literal (flag and byte)
+	 */
+	private static final int LITERAL_BITS = 9;
+	
+	/**
+	 * Private constructor since we want static use only
+	 */
+	private ScreenPacker(){}
+	
+	/**
+	 * Packs the data
+	 * 
+	 * @param data the data (at least one byte)
+	 * @return
+	 */
+	public static byte[] pack(byte[] data) {
+		final int n = data.length;
+		if (n == 0) {
+			throw new IllegalArgumentException("Cannot pack empty data");
+		}
+		
+		// Cheapest bit count to reach each position and the step that reached it
+		int[] cost = new int[n+1];
+		int[] stepLength = new int[n+1];
+		int[] stepOffset = new int[n+1];
+		Arrays.fill(cost, Integer.MAX_VALUE);
+		cost[1] = 8;
+		stepLength[1] = 1;
+		
+		int[] head = new int[1 << 16];
+		int[] previous = new int[n];
+		Arrays.fill(head, -1);
+		int skipUntil = 0;
+		for (int i=0; i<n; ++i) {
+			if (i > 0 && cost[i]+LITERAL_BITS < cost[i+1]) {
+				cost[i+1] = cost[i]+LITERAL_BITS;
+				stepLength[i+1] = 1;
+			}
+			if (i > 0 && i+1 < n && i >= skipUntil) {
+				
+				// Matches are tried nearest first so once a length has been reached
+				// with a cheaper (or equal) offset it needn't be tried again 
+				int bestShort = 1;
+				int bestLong = 1;
+				int key = (data[i] & 0xff) << 8 | (data[i+1] & 0xff);
+				int maxLength = Math.min(MAX_MATCH, n-i);
+				int candidates = 0;
+				for (int p=head[key]; p != -1 && i-p <= MAX_OFFSET && candidates < MAX_CANDIDATES; p=previous[p], ++candidates) {
+					int length = MIN_MATCH;
+					while (length < maxLength && data[p+length] == data[i+length]) {
+						++length;
+					}
+					int offset = i-p;
+					int offsetBits = offset-1 < SHORT_OFFSET_LIMIT ? 8 : 12;
+					int from = Math.max(bestShort, offsetBits == 8 ? 1 : bestLong);
+					for (int l=from+1; l<=length; ++l) {
+						int c = cost[i]+1+gammaBits(l-1)+offsetBits;
+						if (c < cost[i+l]) {
+							cost[i+l] = c;
+							stepLength[i+l] = l;
+							stepOffset[i+l] = offset;
+						}
+					}
+					if (offsetBits == 8) {
+						bestShort = Math.max(bestShort, length);
+					} else {
+						bestLong = Math.max(bestLong, length);
+					}
+					if (length >= NICE_MATCH) {
+						skipUntil = i+length;
+						break;
+					}
+				}
+			}
+			if (i+1 < n) {
+				int key = (data[i] & 0xff) << 8 | (data[i+1] & 0xff);
+				previous[i] = head[key];
+				head[key] = i;
+			}
+		}
+		
+		// Walk back from the end to find the steps taken
+		int steps = 0;
+		for (int i=n; i>1; i-=stepLength[i]) {
+			++steps;
+		}
+		int[] positions = new int[steps];
+		for (int i=n, s=steps; i>1; i-=stepLength[i]) {
+			positions[--s] = i;
+		}
+		
+		BitWriter out = new BitWriter(cost[n]/8+8);
+		out.writeByte(data[0]);
+		for (int end : positions) {
+			int length = stepLength[end];
+			if (length == 1) {
+				out.writeBit(0);
+				out.writeByte(data[end-1]);
+			} else {
+				out.writeBit(1);
+				out.writeGamma(length-1);
+				int offset = stepOffset[end]-1;
+				if (offset < SHORT_OFFSET_LIMIT) {
+					out.writeByte(offset);
+				} else {
+					offset -= SHORT_OFFSET_LIMIT;
+					out.writeByte(offset & 0x7f | 0x80);
+					for (int bit=3; bit>=0; --bit) {
+						out.writeBit(offset >> 7+bit & 1);
+					}
+				}
+			}
+		}
+		
+		// End marker
+		out.writeBit(1);
+		for (int i=0; i<16; ++i) {
+			out.writeBit(0);
+		}
+		out.writeBit(1);
+		return out.toByteArray();
+	}
+	
+	/**
+	 * Unpacks data packed by pack
+	 * 
+	 * @param packed
+	 * @return
+	 */
+	public static byte[] unpack(byte[] packed) {
+		BitReader in = new BitReader(packed);
+		byte[] out = new byte[packed.length*4];
+		int size = 0;
+		out[size++] = (byte)in.readByte();
+		while (true) {
+			if (size+MAX_MATCH > out.length) {
+				out = Arrays.copyOf(out, out.length+MAX_MATCH*2);
+			}
+			if (in.readBit() == 0) {
+				out[size++] = (byte)in.readByte();
+				continue;
+			}
+			int zeros = 0;
+			while (in.readBit() == 0) {
+				++zeros;
+			}
+			if (zeros > 15) {
+				return Arrays.copyOf(out, size);
+			}
+			int length = 1;
+			while (zeros-- > 0) {
+				length = length << 1 | in.readBit();
+			}
+			++length;
+			int offset = in.readByte();
+			if (offset >= SHORT_OFFSET_LIMIT) {
+				int high = 0;
+				for (int i=0; i<4; ++i) {
+					high = high << 1 | in.readBit();
+				}
+				offset = (offset & 0x7f | high << 7)+SHORT_OFFSET_LIMIT;
+			}
+			int from = size-offset-1;
+			if (from < 0) {
+				throw new IllegalArgumentException("Match offset before start of data");
+			}
+			
+			// Byte by byte as matches may overlap what they produce
+			for (int i=0; i<length; ++i) {
+				out[size++] = out[from+i];
+			}
+		}
+	}
+	
+	/**
+	 * Bits for the Elias gamma code of the value
+	 * 
+	 * @param value
+	 * @return
+	 */
+	private static int gammaBits(int value) {
+		return 2*(31-Integer.numberOfLeadingZeros(value))+1;
+	}
+	
+	/**
+	 * Writes bytes with bits packed into bytes placed in the stream
+	 * where the first of their bits is written
+	 */
+	private static class BitWriter {
+		private byte[] bytes;
+		private int size;
+		private int bitIndex;
+		private int bitMask;
+		
+		BitWriter(int capacity) {
+			bytes = new byte[Math.max(16, capacity)];
+		}
+		
+		void writeByte(int value) {
+			if (size == bytes.length) {
+				bytes = Arrays.copyOf(bytes, size*2);
+			}
+			bytes[size++] = (byte)value;
+		}
+		
+		void writeBit(int value) {
+			if (bitMask == 0) {
+				bitMask = 0x80;
+				bitIndex = size;
+				writeByte(0);
+			}
+			if (value != 0) {
+				bytes[bitIndex] |= bitMask;
+			}
+			bitMask >>= 1;
+		}
+		
+		void writeGamma(int value) {
+			int bits = 31-Integer.numberOfLeadingZeros(value);
+			for (int i=0; i<bits; ++i) {
+				writeBit(0);
+			}
+			for (int i=bits; i>=0; --i) {
+				writeBit(value >> i & 1);
+			}
+		}
+		
+		byte[] toByteArray() {
+			return Arrays.copyOf(bytes, size);
+		}
+	}
+	
+	/**
+	 * Reads a stream written by BitWriter
+	 */
+	private static class BitReader {
+		private final byte[] bytes;
+		private int index;
+		private int bitMask;
+		private int bitValue;
+		
+		BitReader(byte[] bytes) {
+			this.bytes = bytes;
+		}
+		
+		int readByte() {
+			if (index >= bytes.length) {
+				throw new IllegalArgumentException("Packed data ends unexpectedly");
+			}
+			return bytes[index++] & 0xff;
+		}
+		
+		int readBit() {
+			bitMask >>= 1;
+			if (bitMask == 0) {
+				bitMask = 0x80;
+				bitValue = readByte();
+			}
+			return (bitValue & bitMask) != 0 ? 1 : 0;
+		}
+	}
+}
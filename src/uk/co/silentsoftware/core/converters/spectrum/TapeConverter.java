@@ -22,48 +22,91 @@ import static uk.co.silentsoftware.core.helpers.ByteHelper.getChecksum;
 import static uk.co.silentsoftware.core.helpers.ByteHelper.put;
 
 import java.io.BufferedInputStream;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.util.List;
 
-import uk.co.silentsoftware.config.OptionsObject;
-import uk.co.silentsoftware.core.helpers.ByteHelper;
+import uk.co.silentsoftware.config.BasicLoader;
+import uk.co.silentsoftware.config.BasicLoader.ScreenEncoding;
+import uk.co.silentsoftware.config.ConversionSettings;
 
 /**
- * Converter to output a Tape image format file (.tap)
+ * Converter to output a Tape image format file (.tap or,
+ * for the turbo loader, .tzx)
  */
 public class TapeConverter {
 	
+	/**
+	 * The TZX block converter for the turbo loader
+	 */
+	private final TzxConverter tzxConverter = new TzxConverter();
+	
+	/**
+	 * Address the screen is loaded at
+	 */
+	private static final int SCREEN_ADDRESS = 16384;
+	
+	/**
+	 * Address packed screens and deltas are loaded at (for the loader
+	 * to unpack or play)
+	 */
+	private static final int PACKED_ADDRESS = 32768;
+	
 	/**
 	 * Outputs an SCR format image into a tap file part
-	 * (i.e. a standard data block). 
+	 * (i.e. a standard data block) as expected by the 
+	 * settings' basic loader - packed for the compressed
+	 * loader, only the changes from the previous screen
+	 * for the delta loader, in a turbo speed TZX block
+	 * for the turbo loader and as is for all others.
 	 * 
 	 * See the following URL for the specification:
 	 * http://www.zxmodules.de/fileformats/tapformat.html
 	 * 
+	 * @param image
+	 * @param previous the screen before on the tape or null if none
+	 * @param settings
+	 * @return
+	 */
+	public byte[] createTapPart(byte[] image, byte[] previous, ConversionSettings settings) {
+		switch (settings.getBasicLoader().getScreenEncoding()) {
+			case COMPRESSED:
+				return createCodePart(ScreenPacker.pack(image), PACKED_ADDRESS);
+			case DELTA:
+				return createCodePart(ScreenDelta.encode(previous, image), PACKED_ADDRESS);
+			case TURBO:
+				return tzxConverter.createTurboBlock(image, settings.getTurboSpeed());
+			default:
+				return createCodePart(image, SCREEN_ADDRESS);
+		}
+	}
+	
+	/**
+	 * Creates a "Loading..." CODE header and data block pair
+	 * 
 	 * TODO: Should probably clean up and remove magic numbers
 	 * 
-	 * @param image
+	 * @param data
+	 * @param address
 	 * @return
 	 */
-	public byte[] createTapPart(byte[] image) {
-		
-		ByteBuffer imageData = ByteBuffer.allocate(2+image.length);
+	private byte[] createCodePart(byte[] data, int address) {
+		ByteBuffer imageData = ByteBuffer.allocate(2+data.length);
 		imageData.order(ByteOrder.LITTLE_ENDIAN);
 		imageData.put(0, (byte)255);
-		put(imageData, image, 1);
-		imageData.put(6913, getChecksum(imageData.array()));
+		put(imageData, data, 1);
+		imageData.put(data.length+1, getChecksum(imageData.array()));
 		
 		ByteBuffer imageHeader = ByteBuffer.allocate(19);
 		imageHeader.order(ByteOrder.LITTLE_ENDIAN);
 		imageHeader.put(0, (byte)0);
 		imageHeader.put(1, (byte)3);
 		put(imageHeader, "Loading...".getBytes(), 2);
-		imageHeader.putShort(12, (short)6912);
-		imageHeader.putShort(14, (short)16384);
+		imageHeader.putShort(12, (short)data.length);
+		imageHeader.putShort(14, (short)address);
 		imageHeader.putShort(16, (short)32768);
 		imageHeader.put(18, getChecksum(imageHeader.array()));
 		
@@ -83,37 +126,41 @@ public class TapeConverter {
 	}
 	
 	/**
-	 * Returns a the new tap file bytes containing
-	 * a basic SCR loader followed by the SCR images
-	 * that have been already converted to TAP parts
+	 * The tape file extension for the settings' basic loader
 	 * 
-	 * @param parts the TAP parts (data blocks) contain SCR images
+	 * @param settings
 	 * @return
 	 */
-	public byte[] createTap(List<byte[]> parts) {
-		byte[] loader = createLoader();
-		int size = loader.length;
-		for (byte[] b: parts) {
-			size+=b.length;
-		}
-		byte[] result = new byte[size];
-		ByteHelper.copyBytes(loader, result, 0);
-		int index = loader.length;
-		for (byte[] b: parts) {
-			ByteHelper.copyBytes(b, result, index);
-			index += b.length;
+	public String getExtension(ConversionSettings settings) {
+		return settings.getBasicLoader().getScreenEncoding() == ScreenEncoding.TURBO ? ".tzx" : ".tap";
+	}
+	
+	/**
+	 * Starts a new tap file containing the settings' basic SCR 
+	 * loader, to which the SCR images converted to TAP parts are  
+	 * then added as they are converted (for the turbo loader the 
+	 * file is a tzx file of standard and turbo speed blocks) 
+	 * 
+	 * @param output the tap file
+	 * @param settings
+	 * @return
+	 * @throws IOException
+	 */
+	public TapeWriter createTapeWriter(File output, ConversionSettings settings) throws IOException {
+		byte[] loader = createLoader(settings.getBasicLoader());
+		if (settings.getBasicLoader().getScreenEncoding() == ScreenEncoding.TURBO) {
+			loader = tzxConverter.createLoader(loader, settings.getTurboSpeed());
 		}
-		return result;
+		return new TapeWriter(output, loader);
 	}
 	
-	private byte[] createLoader() {
-		OptionsObject oo = OptionsObject.getInstance();
+	private byte[] createLoader(BasicLoader loader) {
 		ByteBuffer b = null;
 		BufferedInputStream bis = null;
 		try {
-			InputStream fis = (this.getClass().getClassLoader().getResourceAsStream(oo.getBasicLoader().getPath()));
+			InputStream fis = (this.getClass().getClassLoader().getResourceAsStream(loader.getPath()));
 			if (fis == null) {
-				fis = new FileInputStream(oo.getBasicLoader().getPath());
+				fis = new FileInputStream(loader.getPath());
 			}
 			bis = new BufferedInputStream(fis);
 			b = ByteBuffer.allocate(4096);
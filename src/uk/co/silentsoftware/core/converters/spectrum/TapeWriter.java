@@ -0,0 +1,125 @@
+/* Image to ZX Spec
+ * Copyright (C) 2014 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package uk.co.silentsoftware.core.converters.spectrum;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes a tap (or tzx) file a block at a time as frames are converted
+ * so the tape is never held in memory. The blocks are written to a ".part"
+ * file alongside the tap which only replaces it once complete, so a
+ * crash part way through leaves any existing tap untouched (and the 
+ * blocks written so far in the part file).
+ * 
+ * This class is NOT thread safe!
+ */
+public class TapeWriter {
+
+	/**
+	 * Suffix of the file written to until the tap is complete
+	 */
+	public static final String PART_SUFFIX = ".part";
+	
+	private final Path target;
+	
+	private final Path part;
+	
+	private FileChannel channel;
+	
+	/**
+	 * Creates the part file and writes the loader to it
+	 * 
+	 * @param output the tap file to write
+	 * @param loader the loader tap blocks
+	 * @throws IOException
+	 */
+	TapeWriter(File output, byte[] loader) throws IOException {
+		target = output.toPath();
+		part = new File(output.getPath()+PART_SUFFIX).toPath();
+		channel = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+		try {
+			write(loader);
+		} catch (IOException e) {
+			abort();
+			throw e;
+		}
+	}
+	
+	/**
+	 * Appends tap blocks (e.g. from TapeConverter.createTapPart) 
+	 * 
+	 * @param tapPart
+	 * @throws IOException
+	 */
+	public void addPart(byte[] tapPart) throws IOException {
+		write(tapPart);
+	}
+	
+	/**
+	 * Flushes the part file to disk and moves it over the tap file
+	 * 
+	 * @throws IOException
+	 */
+	public void commit() throws IOException {
+		if (channel == null) {
+			return;
+		}
+		try {
+			channel.force(true);
+		} finally {
+			channel.close();
+			channel = null;
+		}
+		try {
+			Files.move(part, target, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(part, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+	
+	/**
+	 * Closes and deletes the part file if the tap was not committed
+	 */
+	public void abort() {
+		if (channel == null) {
+			return;
+		}
+		try {
+			channel.close();
+			Files.deleteIfExists(part);
+		} catch (IOException e) {
+			// Nothing more can be done with it
+		}
+		channel = null;
+	}
+	
+	private void write(byte[] bytes) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+}
@@ -20,13 +20,10 @@ package uk.co.silentsoftware.core.converters.spectrum;
 import static uk.co.silentsoftware.config.SpectrumDefaults.ATTRIBUTE_BLOCK_SIZE;
 
 import java.awt.image.BufferedImage;
-import java.nio.charset.Charset;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Set;
 
-import uk.co.silentsoftware.core.converters.image.processors.CharacterConverterImpl;
-import uk.co.silentsoftware.core.helpers.ColourHelper;
+import uk.co.silentsoftware.config.ConversionSettings;
+import uk.co.silentsoftware.core.converters.image.processors.CharacterMatcher;
+import uk.co.silentsoftware.core.helpers.ParallelHelper;
 
 
 /**
@@ -35,61 +32,56 @@ import uk.co.silentsoftware.core.helpers.ColourHelper;
  */
 public class TextConverter {
 
-	/**
-	 * The UTF-8 character to 8x8 pixel map, map.
-	 */
-	private static Map<String, int[]> charSet = CharacterConverterImpl.charSet;
-	
 	/**
 	 * Iterates over the image in 8x8 blocks and finds the matching character
 	 * to replace in a text file
 	 * 
 	 * @param original
-	 * @param imagePro
+	 * @param settings the settings the image was converted with
 	 * @return
 	 */
-	public String convert(final BufferedImage original) {
-		String text = new String("".getBytes(), Charset.forName("UTF-8"));
-		for (int y = 0; y + ATTRIBUTE_BLOCK_SIZE <= original.getHeight(); y += ATTRIBUTE_BLOCK_SIZE) {
-			for (int x = 0; x + ATTRIBUTE_BLOCK_SIZE <= original.getWidth() && y + ATTRIBUTE_BLOCK_SIZE <= original.getHeight(); x += ATTRIBUTE_BLOCK_SIZE) {
-				int outRgb[] = original.getRGB(x, y, ATTRIBUTE_BLOCK_SIZE, ATTRIBUTE_BLOCK_SIZE, null, 0, ATTRIBUTE_BLOCK_SIZE);
-				text += findBestCharacterMatch(outRgb);				
+	public String convert(final BufferedImage original, ConversionSettings settings) {
+		final int rows = original.getHeight()/ATTRIBUTE_BLOCK_SIZE;
+		final int columns = original.getWidth()/ATTRIBUTE_BLOCK_SIZE;
+		final int[] glyphs = new int[rows*columns];
+		final CharacterMatcher matcher = CharacterMatcher.getInstance();
+		final int paper = settings.getMonochromePaper();
+		
+		// Match each row of blocks in parallel, then stitch the text together 
+		ParallelHelper.forRange(0, rows, 1, new ParallelHelper.Range() {
+			@Override
+			public void compute(int from, int to) {
+				int outRgb[] = new int[ATTRIBUTE_BLOCK_SIZE*ATTRIBUTE_BLOCK_SIZE];
+				for (int row = from; row < to; ++row) {
+					for (int column = 0; column < columns; ++column) {
+						original.getRGB(column*ATTRIBUTE_BLOCK_SIZE, row*ATTRIBUTE_BLOCK_SIZE, ATTRIBUTE_BLOCK_SIZE, ATTRIBUTE_BLOCK_SIZE, outRgb, 0, ATTRIBUTE_BLOCK_SIZE);
+						glyphs[row*columns+column] = findBestCharacterMatch(matcher, outRgb, paper);
+					}
+				}
 			}
-			text+="\n";
+		});
+		StringBuilder text = new StringBuilder();
+		for (int row = 0; row < rows; ++row) {
+			for (int column = 0; column < columns; ++column) {
+				text.append(matcher.getCharacter(glyphs[row*columns+column]));
+			}
+			text.append("\n");
 		}	
-		return text;
+		return text.toString();
 	}	
 	
 	/**
-	 * Finds the character string best matching the pixels in the 8x8
-	 * pixel sample map
+	 * Finds the index of the character best matching the pixels in the 8x8
+	 * pixel sample map. Paper pixels are treated as white and everything
+	 * else as black.
 	 * 
+	 * @param matcher
 	 * @param sample
+	 * @param paper
 	 * @return
 	 */
-	private String findBestCharacterMatch(int[] sample) {
-		sample = ColourHelper.getBlackAndWhiteFromMonochrome(sample);
-		Map<String, Integer> stats = new HashMap<String, Integer>();
-		Set<String> keys = charSet.keySet();
-		for (String key : keys) {
-			int score = 0;
-			int[] character = charSet.get(key);
-			for (int i = 0; i < character.length; ++i) {
-				if (character[i] == sample[i]) {
-					score++;
-				}
-			}
-			stats.put(key, score);
-		}
-		int bestScore = Integer.MIN_VALUE;
-		String chosenKey = null;
-		for (String key : keys) {
-			int score = stats.get(key);
-			if (score > bestScore) {
-				bestScore = score;
-				chosenKey = key;
-			}
-		}
-		return chosenKey;
+	private int findBestCharacterMatch(CharacterMatcher matcher, int[] sample, int paper) {
+		long whiteBoard = CharacterMatcher.toBoard(sample, paper);
+		return matcher.findBestMatch(whiteBoard, ~whiteBoard);
 	}
 }
@@ -0,0 +1,219 @@
+/* Image to ZX Spec
+ * Copyright (C) 2014 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package uk.co.silentsoftware.core.converters.spectrum;
+
+import static uk.co.silentsoftware.core.helpers.ByteHelper.getChecksum;
+import static uk.co.silentsoftware.core.helpers.ByteHelper.put;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import uk.co.silentsoftware.config.TurboSpeed;
+
+/**
+ * Converter to output the blocks of a TZX format tape file (.tzx) -
+ * standard speed blocks for the loader and turbo speed data blocks
+ * for the screens, read by the turbo loader (see turbo.asm).
+ * 
+ * See the following URL for the specification:
+ * http://www.worldofspectrum.org/TZXformat.html
+ */
+public class TzxConverter {
+
+	/**
+	 * File signature followed by the version (1.20)
+	 */
+	static final byte[] SIGNATURE = {'Z','X','T','a','p','e','!',0x1A,1,20};
+	
+	/**
+	 * Block ids
+	 */
+	static final int STANDARD_BLOCK = 0x10;
+	static final int TURBO_BLOCK = 0x11;
+	
+	/**
+	 * The ROM's pulse lengths (T states) and pilot lengths (pulses), 
+	 * those of standard speed blocks. The turbo loader expects the
+	 * ROM's pilot and sync pulses.
+	 */
+	static final int PILOT_PULSE = 2168;
+	static final int SYNC1_PULSE = 667;
+	static final int SYNC2_PULSE = 735;
+	static final int ZERO_PULSE = 855;
+	static final int ONE_PULSE = 1710;
+	static final int HEADER_PILOT_PULSES = 8063;
+	static final int DATA_PILOT_PULSES = 3223;
+	
+	/**
+	 * Silence after each block
+	 */
+	private static final int PAUSE_MILLIS = 1000;
+	
+	/**
+	 * Offsets in the turbo loader's code of its data edge delay loop 
+	 * count and the bit count limit above which a bit is a 1
+	 */
+	private static final int LOADER_DELAY_OFFSET = 2;
+	private static final int LOADER_LIMIT_OFFSET = 3;
+	
+	/**
+	 * The turbo loader's timings (T states) - each edge sample, each
+	 * edge delay loop and the time from seeing an edge to the first 
+	 * sample for the next (less the delay) within a bit, between bits
+	 * and the extra between bytes
+	 */
+	private static final int LOADER_SAMPLE = 59;
+	private static final int LOADER_DELAY_LOOP = 16;
+	private static final int LOADER_EDGE_OVERHEAD = 116;
+	private static final int LOADER_BIT_OVERHEAD = 194;
+	private static final int LOADER_BYTE_OVERHEAD = 99;
+	
+	/**
+	 * The turbo loader's starting count for a bit and the highest
+	 * count allowed for (it times out at 256)
+	 */
+	private static final int LOADER_COUNT_START = 176;
+	private static final int LOADER_COUNT_MAX = 253;
+	
+	/**
+	 * Fewest samples the loader must see between the counts of a
+	 * 0 and a 1 bit to tell them apart on a real tape
+	 */
+	private static final int LOADER_MIN_SEPARATION = 4;
+	
+	/**
+	 * Fewest pilot pulses the loader can find a block by 
+	 */
+	private static final int LOADER_MIN_PILOT_PULSES = 1024;
+	
+	/**
+	 * Converts the tap file blocks of a loader to a TZX file start
+	 * (the signature and a standard speed block for each block). The
+	 * last block must be the turbo loader's code, which is changed to
+	 * read the given speed.
+	 * 
+	 * @param tap
+	 * @param speed
+	 * @return
+	 */
+	public byte[] createLoader(byte[] tap, TurboSpeed speed) {
+		int[] timings = getLoaderTimings(speed);
+		ByteArrayOutputStream out = new ByteArrayOutputStream(tap.length*2);
+		out.write(SIGNATURE, 0, SIGNATURE.length);
+		int index = 0;
+		while (index+2 <= tap.length) {
+			int length = (tap[index] & 0xff) | (tap[index+1] & 0xff) << 8;
+			byte[] data = Arrays.copyOfRange(tap, index+2, index+2+length);
+			index += 2+length;
+			if (index >= tap.length) {
+				
+				// The turbo loader (after its flag byte)
+				data[1+LOADER_DELAY_OFFSET] = (byte)timings[0];
+				data[1+LOADER_LIMIT_OFFSET] = (byte)timings[1];
+				data[data.length-1] = 0;
+				data[data.length-1] = getChecksum(data);
+			}
+			byte[] block = createStandardBlock(data);
+			out.write(block, 0, block.length);
+		}
+		return out.toByteArray();
+	}
+	
+	/**
+	 * Creates a standard speed data block holding the given tap
+	 * block data (flag, data and checksum)
+	 * 
+	 * @param data
+	 * @return
+	 */
+	public byte[] createStandardBlock(byte[] data) {
+		ByteBuffer block = ByteBuffer.allocate(5+data.length);
+		block.order(ByteOrder.LITTLE_ENDIAN);
+		block.put((byte)STANDARD_BLOCK);
+		block.putShort((short)PAUSE_MILLIS);
+		block.putShort((short)data.length);
+		put(block, data, 5);
+		return block.array();
+	}
+	
+	/**
+	 * Creates a turbo speed data block for the data with a 
+	 * flag of 255 and checksum as a tap block would have
+	 * 
+	 * @param data
+	 * @param speed
+	 * @return
+	 */
+	public byte[] createTurboBlock(byte[] data, TurboSpeed speed) {
+		ByteBuffer tapData = ByteBuffer.allocate(2+data.length);
+		tapData.put(0, (byte)255);
+		put(tapData, data, 1);
+		tapData.put(data.length+1, getChecksum(tapData.array()));
+		
+		ByteBuffer block = ByteBuffer.allocate(19+tapData.capacity());
+		block.order(ByteOrder.LITTLE_ENDIAN);
+		block.put((byte)TURBO_BLOCK);
+		block.putShort((short)PILOT_PULSE);
+		block.putShort((short)SYNC1_PULSE);
+		block.putShort((short)SYNC2_PULSE);
+		block.putShort((short)speed.getZeroPulse());
+		block.putShort((short)speed.getOnePulse());
+		block.putShort((short)speed.getPilotPulses());
+		block.put((byte)8);
+		block.putShort((short)PAUSE_MILLIS);
+		block.putShort((short)tapData.capacity());
+		block.put((byte)(tapData.capacity() >> 16));
+		put(block, tapData.array(), 19);
+		return block.array();
+	}
+	
+	/**
+	 * Works out the turbo loader's data edge delay loop count and
+	 * the count above which a bit is a 1 for the speed. The delay 
+	 * is just over half a 0 pulse (as the ROM's is) and the limit
+	 * half way between the counts of a 0 and a 1 bit.
+	 * 
+	 * @param speed
+	 * @return the delay loop count and limit
+	 * @throws IllegalArgumentException if the loader can't read the speed
+	 */
+	static int[] getLoaderTimings(TurboSpeed speed) {
+		int zero = speed.getZeroPulse();
+		int one = speed.getOnePulse();
+		int delay = Math.round((zero*0.55f-LOADER_EDGE_OVERHEAD)/LOADER_DELAY_LOOP);
+		delay = Math.max(1, Math.min(22, delay));
+		
+		// Samples in timing a bit's two edges after the overheads
+		int overheads = LOADER_EDGE_OVERHEAD+LOADER_BIT_OVERHEAD+2*LOADER_DELAY_LOOP*delay;
+		int limit = LOADER_COUNT_START+(int)Math.floor((zero+one-overheads)/(double)LOADER_SAMPLE+1);
+		int oneCount = LOADER_COUNT_START+2+(2*one-overheads)/LOADER_SAMPLE+1;
+		
+		// The first sample of a byte must come before its first bit's
+		// second edge (with a sample to spare) or an edge is missed
+		int byteStart = LOADER_BIT_OVERHEAD+LOADER_BYTE_OVERHEAD+LOADER_DELAY_LOOP*delay+LOADER_SAMPLE;
+		if (byteStart > 2*zero 
+				|| 2*(one-zero)/LOADER_SAMPLE < LOADER_MIN_SEPARATION 
+				|| oneCount > LOADER_COUNT_MAX
+				|| speed.getPilotPulses() < LOADER_MIN_PILOT_PULSES) {
+			throw new IllegalArgumentException("Turbo loader cannot read pulses of "+zero+" and "+one+" T states with "+speed.getPilotPulses()+" pilot pulses");
+		}
+		return new int[]{delay, limit};
+	}
+}
@@ -0,0 +1,250 @@
+/* Image to ZX Spec
+ * Copyright (C) 2014 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package uk.co.silentsoftware.core.converters.spectrum;
+
+import static uk.co.silentsoftware.core.converters.spectrum.TzxConverter.DATA_PILOT_PULSES;
+import static uk.co.silentsoftware.core.converters.spectrum.TzxConverter.HEADER_PILOT_PULSES;
+import static uk.co.silentsoftware.core.converters.spectrum.TzxConverter.ONE_PULSE;
+import static uk.co.silentsoftware.core.converters.spectrum.TzxConverter.PILOT_PULSE;
+import static uk.co.silentsoftware.core.converters.spectrum.TzxConverter.SIGNATURE;
+import static uk.co.silentsoftware.core.converters.spectrum.TzxConverter.STANDARD_BLOCK;
+import static uk.co.silentsoftware.core.converters.spectrum.TzxConverter.SYNC1_PULSE;
+import static uk.co.silentsoftware.core.converters.spectrum.TzxConverter.SYNC2_PULSE;
+import static uk.co.silentsoftware.core.converters.spectrum.TzxConverter.TURBO_BLOCK;
+import static uk.co.silentsoftware.core.converters.spectrum.TzxConverter.ZERO_PULSE;
+import static uk.co.silentsoftware.core.helpers.ByteHelper.getChecksum;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads and validates TZX format tape files (such as those written for 
+ * the turbo loader) so they can be checked without a Spectrum. Data 
+ * blocks must be complete with a matching checksum and sensible pulse 
+ * lengths. Other blocks are skipped if known and rejected if not.
+ */
+public class TzxParser {
+	
+	/**
+	 * Block ids of the other (non standard or turbo data) blocks known
+	 */
+	private static final int PURE_TONE_BLOCK = 0x12;
+	private static final int PULSES_BLOCK = 0x13;
+	private static final int PURE_DATA_BLOCK = 0x14;
+	private static final int PAUSE_BLOCK = 0x20;
+	private static final int GROUP_START_BLOCK = 0x21;
+	private static final int GROUP_END_BLOCK = 0x22;
+	private static final int TEXT_BLOCK = 0x30;
+	private static final int ARCHIVE_INFO_BLOCK = 0x32;
+	
+	/**
+	 * A block read from a tzx file - pulse lengths and data are
+	 * only set for data blocks (for standard speed blocks they're
+	 * the ROM's)
+	 */
+	public static class Block {
+		private final int id;
+		private int pilotPulse;
+		private int sync1Pulse;
+		private int sync2Pulse;
+		private int zeroPulse;
+		private int onePulse;
+		private int pilotPulses;
+		private int usedBits;
+		private int pauseMillis;
+		private byte[] data;
+		
+		Block(int id) {
+			this.id = id;
+		}
+		
+		public int getId() {
+			return id;
+		}
+		public int getPilotPulse() {
+			return pilotPulse;
+		}
+		public int getSync1Pulse() {
+			return sync1Pulse;
+		}
+		public int getSync2Pulse() {
+			return sync2Pulse;
+		}
+		public int getZeroPulse() {
+			return zeroPulse;
+		}
+		public int getOnePulse() {
+			return onePulse;
+		}
+		public int getPilotPulses() {
+			return pilotPulses;
+		}
+		public int getUsedBits() {
+			return usedBits;
+		}
+		public int getPauseMillis() {
+			return pauseMillis;
+		}
+		
+		/**
+		 * The data (flag, data and checksum) or null if not a data block
+		 * 
+		 * @return
+		 */
+		public byte[] getData() {
+			return data;
+		}
+		
+		@Override
+		public String toString() {
+			if (data == null) {
+				return String.format("Block 0x%02X", id);
+			}
+			return String.format("Block 0x%02X flag %d, %d bytes, pilot %d x %d, sync %d/%d, bits %d/%d, pause %dms", 
+					id, data[0] & 0xff, data.length, pilotPulses, pilotPulse, sync1Pulse, sync2Pulse, zeroPulse, onePulse, pauseMillis);
+		}
+	}
+	
+	/**
+	 * Parses the tzx file content checking it as above
+	 * 
+	 * @param tzx
+	 * @return the blocks
+	 * @throws IllegalArgumentException if the content isn't valid
+	 */
+	public List<Block> parse(byte[] tzx) {
+		if (tzx.length < SIGNATURE.length || !Arrays.equals(Arrays.copyOf(tzx, SIGNATURE.length-2), Arrays.copyOf(SIGNATURE, SIGNATURE.length-2))) {
+			throw new IllegalArgumentException("Not a tzx file");
+		}
+		if (tzx[SIGNATURE.length-2] != SIGNATURE[SIGNATURE.length-2]) {
+			throw new IllegalArgumentException("Unsupported tzx version "+tzx[SIGNATURE.length-2]+"."+tzx[SIGNATURE.length-1]);
+		}
+		ByteBuffer b = ByteBuffer.wrap(tzx);
+		b.order(ByteOrder.LITTLE_ENDIAN);
+		b.position(SIGNATURE.length);
+		List<Block> blocks = new ArrayList<Block>();
+		while (b.hasRemaining()) {
+			int offset = b.position();
+			Block block = new Block(b.get() & 0xff);
+			try {
+				switch (block.id) {
+					case STANDARD_BLOCK:
+						block.pauseMillis = getShort(b);
+						block.data = getBytes(b, getShort(b));
+						block.pilotPulse = PILOT_PULSE;
+						block.sync1Pulse = SYNC1_PULSE;
+						block.sync2Pulse = SYNC2_PULSE;
+						block.zeroPulse = ZERO_PULSE;
+						block.onePulse = ONE_PULSE;
+						block.pilotPulses = block.data.length > 0 && block.data[0] >= 0 ? HEADER_PILOT_PULSES : DATA_PILOT_PULSES;
+						block.usedBits = 8;
+						break;
+					case TURBO_BLOCK:
+						block.pilotPulse = getShort(b);
+						block.sync1Pulse = getShort(b);
+						block.sync2Pulse = getShort(b);
+						block.zeroPulse = getShort(b);
+						block.onePulse = getShort(b);
+						block.pilotPulses = getShort(b);
+						block.usedBits = b.get() & 0xff;
+						block.pauseMillis = getShort(b);
+						block.data = getBytes(b, getShort(b) | (b.get() & 0xff) << 16);
+						break;
+					case PURE_TONE_BLOCK:
+						skip(b, 4);
+						break;
+					case PULSES_BLOCK:
+						skip(b, 2*(b.get() & 0xff));
+						break;
+					case PURE_DATA_BLOCK:
+						skip(b, 7);
+						skip(b, getShort(b) | (b.get() & 0xff) << 16);
+						break;
+					case PAUSE_BLOCK:
+						skip(b, 2);
+						break;
+					case GROUP_START_BLOCK:
+					case TEXT_BLOCK:
+						skip(b, b.get() & 0xff);
+						break;
+					case GROUP_END_BLOCK:
+						break;
+					case ARCHIVE_INFO_BLOCK:
+						skip(b, getShort(b));
+						break;
+					default:
+						throw new IllegalArgumentException("unsupported block");
+				}
+			} catch (BufferUnderflowException e) {
+				throw new IllegalArgumentException(String.format("Block 0x%02X at %d ends past the end of the file", block.id, offset));
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException(String.format("Block 0x%02X at %d: %s", block.id, offset, e.getMessage()));
+			}
+			if (block.data != null) {
+				validate(block, offset);
+			}
+			blocks.add(block);
+		}
+		return blocks;
+	}
+	
+	/**
+	 * Checks a data block's data is complete and could be loaded
+	 * 
+	 * @param block
+	 * @param offset
+	 */
+	private void validate(Block block, int offset) {
+		String error = null;
+		if (block.data.length < 2) {
+			error = "too short for a flag and checksum";
+		} else if (block.usedBits < 1 || block.usedBits > 8) {
+			error = "used bits in the last byte of "+block.usedBits;
+		} else if (block.pilotPulse == 0 || block.sync1Pulse == 0 || block.sync2Pulse == 0 || block.zeroPulse == 0 || block.onePulse == 0) {
+			error = "zero length pulses";
+		} else if (block.zeroPulse >= block.onePulse) {
+			error = "0 bit pulses are not shorter than 1 bit pulses";
+		} else if (block.usedBits == 8 && getChecksum(block.data) != 0) {
+			error = "checksum does not match";
+		}
+		if (error != null) {
+			throw new IllegalArgumentException(String.format("Block 0x%02X at %d: %s", block.id, offset, error));
+		}
+	}
+	
+	private static int getShort(ByteBuffer b) {
+		return b.getShort() & 0xffff;
+	}
+	
+	private static byte[] getBytes(ByteBuffer b, int length) {
+		byte[] bytes = new byte[length];
+		b.get(bytes);
+		return bytes;
+	}
+	
+	private static void skip(ByteBuffer b, int length) {
+		if (length > b.remaining()) {
+			throw new BufferUnderflowException();
+		}
+		b.position(b.position()+length);
+	}
+}
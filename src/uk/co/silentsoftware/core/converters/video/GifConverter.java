@@ -18,123 +18,526 @@
 package uk.co.silentsoftware.core.converters.video;
 
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
-import java.util.LinkedList;
-import java.util.List;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 
-import javax.imageio.IIOException;
-import javax.imageio.IIOImage;
-import javax.imageio.ImageIO;
-import javax.imageio.ImageTypeSpecifier;
-import javax.imageio.ImageWriteParam;
-import javax.imageio.ImageWriter;
-import javax.imageio.metadata.IIOInvalidTreeException;
-import javax.imageio.metadata.IIOMetadata;
-import javax.imageio.metadata.IIOMetadataNode;
-import javax.imageio.stream.ImageOutputStream;
-
-import org.w3c.dom.Node;
-
-import uk.co.silentsoftware.config.OptionsObject;
+import uk.co.silentsoftware.config.ConversionSettings;
+import uk.co.silentsoftware.config.SpectrumDefaults;
+import uk.co.silentsoftware.core.colourstrategy.GigaScreenPaletteStrategy;
+import uk.co.silentsoftware.core.helpers.PaletteLookupTable;
 
 /**
- * Simple ImageIO based GIF converter.
+ * Streaming animated GIF converter.
+ * 
+ * Frames are encoded and written to the output file as they are added
+ * so only the previous frame is held in memory however long the 
+ * sequence. The GIF has a global colour table of the Spectrum colours
+ * (or GigaScreen colours) so frames need no local palette, and after
+ * the first frame only the rectangle that changed is written, with
+ * unchanged pixels in it left transparent.
  * 
  * Note this converter holds a state and thus must be
- * initialised via createSequence and reset with 
- * createGif (which is intended to be the final call). 
+ * initialised via createSequence and finished with 
+ * endSequence (or abortSequence to discard the file).
  * This class is NOT thread safe!
  */
 public class GifConverter {
 
 	/**
-	 * The anim gif's frames
+	 * Largest LZW code (GIF codes are at most 12 bits)
+	 */
+	private static final int MAX_CODES = 4096;
+	
+	/**
+	 * Size of the buffer the encoded GIF is written to the file through
+	 */
+	private static final int OUTPUT_BUFFER_SIZE = 64*1024;
+	
+	/**
+	 * Most colours cached for the pixel to palette index lookup before the cache is reset
+	 */
+	private static final int MAX_CACHED_COLOURS = 512;
+	
+	/**
+	 * The file being written
+	 */
+	private File file;
+	
+	/**
+	 * The channel to the file being written
+	 */
+	private FileChannel channel;
+	
+	private final ByteBuffer out = ByteBuffer.allocate(OUTPUT_BUFFER_SIZE);
+	
+	/**
+	 * Frame display time in hundredths of a second
 	 */
-	private List<BufferedImage> frames;
+	private int delay;
 	
 	/**
-	 * Byte array required to save the created gif
+	 * The global colour table's colours and the lookup for colours not in it
 	 */
-	private ByteArrayOutputStream baos;
+	private int[] palette;
+	private PaletteLookupTable paletteLookup;
 	
 	/**
-	 * Create the gif and clear down afterwards.
+	 * Index of the transparent entry in the global colour table
+	 */
+	private int transparentIndex;
+	
+	/**
+	 * Bits per global colour table index
+	 */
+	private int colourBits;
+	
+	/**
+	 * The size of the GIF (the first frame's size)
+	 */
+	private int width;
+	private int height;
+	
+	/**
+	 * Number of frames written
+	 */
+	private int frames;
+	
+	/**
+	 * The palette indexes of the GIF as currently displayed
+	 */
+	private byte[] previous;
+	
+	/**
+	 * The frame being written as palette indexes and the pixel row 
+	 * used to read it
+	 */
+	private byte[] current;
+	private int[] row;
+	
+	/**
+	 * Cache of colour to palette index (colours are stored with the alpha
+	 * set so zero is empty)
+	 */
+	private final int[] cachedColours = new int[MAX_CACHED_COLOURS*2];
+	private final byte[] cachedIndexes = new byte[MAX_CACHED_COLOURS*2];
+	private int cachedCount;
+	
+	/**
+	 * Create a new gif sequence, replacing the file if it exists. The
+	 * gif is not playable until endSequence is called.
 	 * 
-	 * @return
-	 * @throws Exception 
+	 * @param output
+	 * @param gifDisplayTimeMills
+	 * @throws IOException
 	 */
-	public byte[] createGif() throws Exception {
+	public void createSequence(File output, int gifDisplayTimeMills) throws IOException {
+		abortSequence();
+		file = output;
+		channel = FileChannel.open(output.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+		delay = gifDisplayTimeMills/10;
+		frames = 0;
+		out.clear();
+	}
+	
+	/**
+	 * Encodes a frame and appends it to the gif. The first frame sets the 
+	 * gif's size and its palette from the settings' colour mode - later 
+	 * frames are expected to be the same and are clipped to that size.
+	 * Colours not in the palette are written as the closest palette colour.
+	 * 
+	 * @param source
+	 * @param settings the settings the frame was converted with
+	 * @throws IOException
+	 */
+	public void addFrame(BufferedImage source, ConversionSettings settings) throws IOException {
+		if (frames == 0) {
+			writeHeader(source.getWidth(), source.getHeight(), settings.getColourMode() instanceof GigaScreenPaletteStrategy ? SpectrumDefaults.GIGASCREEN_COLOURS_ALL : SpectrumDefaults.SPECTRUM_COLOURS_ALL);
+		}
+		Arrays.fill(current, (byte)0);
+		int frameWidth = Math.min(width, source.getWidth());
+		int frameHeight = Math.min(height, source.getHeight());
+		for (int y=0; y<frameHeight; ++y) {
+			source.getRGB(0, y, frameWidth, 1, row, 0, frameWidth);
+			for (int x=0, i=y*width; x<frameWidth; ++x, ++i) {
+				current[i] = toIndex(row[x]);
+			}
+		}
+		if (frames == 0) {
+			writeFrame(0, 0, width, height, false);
+		} else {
+			writeChanges();
+		}
+		byte[] temp = previous;
+		previous = current;
+		current = temp;
+		++frames;
+	}
+	
+	/**
+	 * Finishes the gif and closes the file (deleting it if no frames
+	 * were added)
+	 * 
+	 * @throws IOException
+	 */
+	public void endSequence() throws IOException {
+		if (channel == null) {
+			return;
+		}
+		if (frames == 0) {
+			abortSequence();
+			return;
+		}
 		try {
-			ImageWriter iw = ImageIO.getImageWritersByFormatName("gif").next();
-			ImageOutputStream ios = ImageIO.createImageOutputStream(baos);
-			iw.setOutput(ios);
-			iw.prepareWriteSequence(null);
-			int p = 0;
-			for (BufferedImage frame : frames) {
-				ImageWriteParam iwp = iw.getDefaultWriteParam();
-				IIOMetadata metadata = iw.getDefaultImageMetadata(new ImageTypeSpecifier(frame), iwp);
-				configureMetaData(metadata, String.valueOf(OptionsObject.getInstance().getGifDisplayTimeMillis() / 10L), p++, 0);
-				IIOImage ii = new IIOImage(frame, null, metadata);
-				iw.writeToSequence(ii, null);
-			}
-			iw.endWriteSequence();
-			ios.close();
-			return baos.toByteArray();
+			writeByte(0x3b);
+			flush();
 		} finally {
-			baos = null;
-			frames = null;
+			close();
 		}
 	}
 	
 	/**
-	 * Adds a single buffered image to the gif being created.
-	 * @param source
+	 * Closes and deletes the gif being written if there is one
+	 */
+	public void abortSequence() {
+		if (channel != null) {
+			close();
+			file.delete();
+		}
+	}
+	
+	/**
+	 * Writes the GIF header, logical screen descriptor, global colour
+	 * table and looping extension
+	 * 
+	 * @param width
+	 * @param height
+	 * @param colours
 	 * @throws IOException
 	 */
-	public void addFrame(BufferedImage source) throws IOException {
-		frames.add(source);	   
+	private void writeHeader(int width, int height, int[] colours) throws IOException {
+		this.width = width;
+		this.height = height;
+		palette = colours;
+		paletteLookup = PaletteLookupTable.forPalette(colours);
+		transparentIndex = colours.length;
+		colourBits = 1;
+		while (1 << colourBits <= transparentIndex) {
+			++colourBits;
+		}
+		Arrays.fill(cachedColours, 0);
+		cachedCount = 0;
+		previous = new byte[width*height];
+		current = new byte[width*height];
+		row = new int[width];
+		
+		writeBytes("GIF89a".getBytes("US-ASCII"));
+		writeShort(width);
+		writeShort(height);
+		writeByte(0x80 | (colourBits-1) << 4 | (colourBits-1));
+		writeByte(0);
+		writeByte(0);
+		for (int i=0; i<1<<colourBits; ++i) {
+			int colour = i < colours.length ? colours[i] : 0;
+			writeByte(colour >> 16);
+			writeByte(colour >> 8);
+			writeByte(colour);
+		}
+		
+		// NETSCAPE2.0 application extension - loop forever
+		writeByte(0x21);
+		writeByte(0xff);
+		writeByte(11);
+		writeBytes("NETSCAPE2.0".getBytes("US-ASCII"));
+		writeByte(3);
+		writeByte(1);
+		writeShort(0);
+		writeByte(0);
 	}
-
+	
 	/**
-	 * Create a new gif sequence
+	 * Writes the smallest rectangle containing the pixels that differ from
+	 * the previous frame, with the unchanged pixels in it transparent. A
+	 * single transparent pixel is written when nothing changed so the 
+	 * frame still takes its display time.
 	 * 
-	 * @param gifDisplayTimeMills
-	 * @param loop
-	 * @throws IIOException
 	 * @throws IOException
 	 */
-	public void createSequence(int gifDisplayTimeMills) throws IIOException, IOException {
-		baos = new ByteArrayOutputStream();
+	private void writeChanges() throws IOException {
+		int left = width, right = -1, top = height, bottom = -1;
+		for (int y=0; y<height; ++y) {
+			int start = y*width;
+			int x = 0;
+			while (x < width && current[start+x] == previous[start+x]) {
+				++x;
+			}
+			if (x == width) {
+				continue;
+			}
+			int end = width-1;
+			while (current[start+end] == previous[start+end]) {
+				--end;
+			}
+			left = Math.min(left, x);
+			right = Math.max(right, end);
+			top = Math.min(top, y);
+			bottom = y;
+		}
+		if (bottom == -1) {
+			writeFrame(0, 0, 1, 1, true);
+			return;
+		}
+		writeFrame(left, top, right-left+1, bottom-top+1, true);
+	}
+	
+	/**
+	 * Writes the graphic control extension, image descriptor and LZW 
+	 * compressed indexes of the given rectangle of the current frame
+	 * 
+	 * @param left
+	 * @param top
+	 * @param frameWidth
+	 * @param frameHeight
+	 * @param transparent whether pixels the same as the previous frame are transparent
+	 * @throws IOException
+	 */
+	private void writeFrame(int left, int top, int frameWidth, int frameHeight, boolean transparent) throws IOException {
+		// Graphic control extension - leave the frame in place for the next to draw over
+		writeByte(0x21);
+		writeByte(0xf9);
+		writeByte(4);
+		writeByte(1 << 2 | (transparent ? 1 : 0));
+		writeShort(delay);
+		writeByte(transparent ? transparentIndex : 0);
+		writeByte(0);
+		
+		// Image descriptor - no local colour table, not interlaced
+		writeByte(0x2c);
+		writeShort(left);
+		writeShort(top);
+		writeShort(frameWidth);
+		writeShort(frameHeight);
+		writeByte(0);
 		
-		// LinkedList used for performance reasons.
-		frames = new LinkedList<>();
+		LzwEncoder lzw = new LzwEncoder(Math.max(2, colourBits));
+		for (int y=top; y<top+frameHeight; ++y) {
+			for (int i=y*width+left; i<y*width+left+frameWidth; ++i) {
+				if (transparent && current[i] == previous[i]) {
+					lzw.encode(transparentIndex);
+				} else {
+					lzw.encode(current[i] & 0xff);
+				}
+			}
+		}
+		lzw.finish();
 	}
 	
-	private void configureMetaData(IIOMetadata meta, String delayTime, int imageIndex, int loopCount) throws IIOInvalidTreeException {
-		String metaFormat = meta.getNativeMetadataFormatName();
-		Node root = meta.getAsTree(metaFormat);
-		Node child = root.getFirstChild();
-		while (child != null) {
-			if ("GraphicControlExtension".equals(child.getNodeName()))
-				break;
-			child = child.getNextSibling();
-		}
-		IIOMetadataNode gce = (IIOMetadataNode) child;
-		gce.setAttribute("userDelay", "FALSE");
-		gce.setAttribute("delayTime", delayTime);
-		gce.setAttribute("disposalMethod", "none");
-
-		if (imageIndex == 0) {
-			IIOMetadataNode aes = new IIOMetadataNode("ApplicationExtensions");
-			IIOMetadataNode ae = new IIOMetadataNode("ApplicationExtension");
-			ae.setAttribute("applicationID", "NETSCAPE");
-	        ae.setAttribute("authenticationCode", "2.0");
-			byte[] uo = new byte[] { 0x1, (byte) (loopCount & 0xFF), (byte) ((loopCount >> 8) & 0xFF) };
-			ae.setUserObject(uo);
-			aes.appendChild(ae);
-			root.appendChild(aes);
-		}
-		meta.setFromTree(metaFormat, root);		
+	/**
+	 * Retrieves the global colour table index for the given colour
+	 * 
+	 * @param rgb
+	 * @return
+	 */
+	private byte toIndex(int rgb) {
+		rgb |= 0xff000000;
+		int mask = cachedColours.length-1;
+		int slot = (rgb ^ rgb >>> 12) * 0x9e3779b1 >>> 20 & mask;
+		while (cachedColours[slot] != 0) {
+			if (cachedColours[slot] == rgb) {
+				return cachedIndexes[slot];
+			}
+			slot = slot+1 & mask;
+		}
+		int index = -1;
+		for (int i=0; i<palette.length && index == -1; ++i) {
+			if ((palette[i] | 0xff000000) == rgb) {
+				index = i;
+			}
+		}
+		if (index == -1) {
+			index = paletteLookup.getClosestIndex(rgb >> 16 & 0xff, rgb >> 8 & 0xff, rgb & 0xff);
+		}
+		if (cachedCount == MAX_CACHED_COLOURS) {
+			Arrays.fill(cachedColours, 0);
+			cachedCount = 0;
+			slot = (rgb ^ rgb >>> 12) * 0x9e3779b1 >>> 20 & mask;
+		}
+		cachedColours[slot] = rgb;
+		cachedIndexes[slot] = (byte)index;
+		++cachedCount;
+		return (byte)index;
+	}
+	
+	private void writeByte(int value) throws IOException {
+		if (!out.hasRemaining()) {
+			flush();
+		}
+		out.put((byte)value);
+	}
+	
+	private void writeShort(int value) throws IOException {
+		writeByte(value);
+		writeByte(value >> 8);
+	}
+	
+	private void writeBytes(byte[] bytes) throws IOException {
+		for (byte b : bytes) {
+			writeByte(b);
+		}
+	}
+	
+	private void flush() throws IOException {
+		out.flip();
+		while (out.hasRemaining()) {
+			channel.write(out);
+		}
+		out.clear();
+	}
+	
+	private void close() {
+		try {
+			channel.close();
+		} catch (IOException e) {
+			// Nothing more can be done with it
+		}
+		channel = null;
+		previous = null;
+		current = null;
+	}
+	
+	/**
+	 * GIF variant of LZW compression, writing the codes packed least 
+	 * significant bit first into data sub-blocks
+	 */
+	private class LzwEncoder {
+		
+		private static final int HASH_SIZE = 8192;
+		
+		private final int initialCodeSize;
+		private final int clearCode;
+		
+		/**
+		 * String table of prefix code and index keys to their codes
+		 */
+		private final int[] keys = new int[HASH_SIZE];
+		private final int[] codes = new int[HASH_SIZE];
+		
+		private int codeSize;
+		private int nextCode;
+		private int prefix = -1;
+		private boolean resetCodeSize;
+		
+		private int bits;
+		private int bitCount;
+		private final byte[] block = new byte[255];
+		private int blockLength;
+		
+		/**
+		 * Writes the minimum code size and starts the data with a clear code
+		 * 
+		 * @param minimumCodeSize
+		 * @throws IOException
+		 */
+		LzwEncoder(int minimumCodeSize) throws IOException {
+			initialCodeSize = minimumCodeSize+1;
+			clearCode = 1 << minimumCodeSize;
+			writeByte(minimumCodeSize);
+			clearTable();
+			codeSize = initialCodeSize;
+			writeCode(clearCode);
+		}
+		
+		void encode(int index) throws IOException {
+			if (prefix == -1) {
+				prefix = index;
+				return;
+			}
+			int key = prefix << 8 | index;
+			int slot = (key * 0x9e3779b1) >>> 19;
+			while (keys[slot] != -1) {
+				if (keys[slot] == key) {
+					prefix = codes[slot];
+					return;
+				}
+				slot = slot+1 & HASH_SIZE-1;
+			}
+			writeCode(prefix);
+			prefix = index;
+			if (nextCode < MAX_CODES) {
+				keys[slot] = key;
+				codes[slot] = nextCode++;
+			} else {
+				clearTable();
+				resetCodeSize = true;
+				writeCode(clearCode);
+			}
+		}
+		
+		/**
+		 * Writes the last code, the end of information code and the 
+		 * block terminator
+		 * 
+		 * @throws IOException
+		 */
+		void finish() throws IOException {
+			if (prefix != -1) {
+				writeCode(prefix);
+			}
+			writeCode(clearCode+1);
+			if (bitCount > 0) {
+				addToBlock(bits);
+			}
+			if (blockLength > 0) {
+				writeBlock();
+			}
+			writeByte(0);
+		}
+		
+		private void clearTable() {
+			Arrays.fill(keys, -1);
+			nextCode = clearCode+2;
+		}
+		
+		/**
+		 * Writes a code at the current code size, then widens the codes 
+		 * when the table has outgrown them (the decoder does the same
+		 * as it reads the code)
+		 * 
+		 * @param code
+		 * @throws IOException
+		 */
+		private void writeCode(int code) throws IOException {
+			bits |= code << bitCount;
+			bitCount += codeSize;
+			while (bitCount >= 8) {
+				addToBlock(bits);
+				bits >>>= 8;
+				bitCount -= 8;
+			}
+			if (resetCodeSize) {
+				codeSize = initialCodeSize;
+				resetCodeSize = false;
+			} else if (nextCode > (1 << codeSize)-1 && codeSize < 12) {
+				++codeSize;
+			}
+		}
+		
+		private void addToBlock(int value) throws IOException {
+			block[blockLength++] = (byte)value;
+			if (blockLength == block.length) {
+				writeBlock();
+			}
+		}
+		
+		private void writeBlock() throws IOException {
+			writeByte(blockLength);
+			for (int i=0; i<blockLength; ++i) {
+				writeByte(block[i]);
+			}
+			blockLength = 0;
+		}
 	}
 }
@@ -24,13 +24,14 @@ import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintStream;
-import java.util.Queue;
 import java.util.Random;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.media.Buffer;
 import javax.media.Codec;
@@ -65,6 +66,12 @@ public class JMFVideoImportEngine implements VideoImportEngine {
 	 */
 	private static final int SEEK_TIMEOUT = 10;
 	
+	/**
+	 * Time to wait for space in the shared queue before checking 
+	 * for cancellation or stopping in milliseconds
+	 */
+	private static final int QUEUE_WAIT = 100;
+	
 	/**
 	 * Amount of time as a minimum before we can take a single image from the
 	 * video in seconds
@@ -102,13 +109,14 @@ public class JMFVideoImportEngine implements VideoImportEngine {
 	 * @param f
 	 * @param singleImage
 	 * @param sharedQueue
+	 * @param stopped
 	 * @throws IOException
 	 * @throws NoPlayerException
 	 * @throws InstantiationException
 	 * @throws IllegalAccessException
 	 * @throws ClassNotFoundException
 	 */
-	public void convertVideoToImages(File f, boolean singleImage, final Queue<Image> sharedQueue) throws IOException, NoPlayerException,
+	public void convertVideoToImages(File f, boolean singleImage, final BlockingQueue<Image> sharedQueue, final AtomicBoolean stopped) throws IOException, NoPlayerException,
 			InstantiationException, IllegalAccessException, ClassNotFoundException {
 
 		try {
@@ -117,6 +125,7 @@ public class JMFVideoImportEngine implements VideoImportEngine {
 			final Player player = Manager.createPlayer(f.toURI().toURL());
 			vcl.player = player;
 			vcl.images = sharedQueue;
+			vcl.stopped = stopped;
 			vcl.singleImage = singleImage;
 			player.addControllerListener(vcl);
 			player.prefetch();
@@ -154,7 +163,8 @@ public class JMFVideoImportEngine implements VideoImportEngine {
 	private static class VideoControllerListener implements ControllerListener {
 
 		Player player;
-		Queue<Image> images;
+		BlockingQueue<Image> images;
+		AtomicBoolean stopped;
 
 		VideoControllerListener() {
 		}
@@ -201,7 +211,7 @@ public class JMFVideoImportEngine implements VideoImportEngine {
 							// image or when the time exceeds the point we want a
 							// single image from
 							if (singleImageSelectionTime == -1 || player.getMediaTime().getSeconds() >= singleImageSelectionTime) {
-								images.add(bufImage);
+								offer(bufImage);
 	
 								// We only want one image if single image selection
 								// is turned on
@@ -209,7 +219,7 @@ public class JMFVideoImportEngine implements VideoImportEngine {
 									break;
 								}
 							}
-							if (ImageToZxSpec.isCancelled()) {
+							if (isStopped()) {
 								break;
 							}
 						} catch (Throwable t) {	
@@ -236,6 +246,25 @@ public class JMFVideoImportEngine implements VideoImportEngine {
 			}
 		}
 		
+		private boolean isStopped() {
+			return stopped.get() || ImageToZxSpec.isCancelled();
+		}
+		
+		/**
+		 * Waits for space in the shared queue for the given image, giving
+		 * up if the conversion is stopped or cancelled in the meantime
+		 * 
+		 * @param image
+		 * @throws InterruptedException
+		 */
+		private void offer(Image image) throws InterruptedException {
+			while (!isStopped()) {
+				if (images.offer(image, QUEUE_WAIT, TimeUnit.MILLISECONDS)) {
+					return;
+				}
+			}
+		}
+		
 		/**
 		 * Seeking in a non native decoder can be really slow so this 
 		 * is in it's own thread so we can do different things
@@ -23,9 +23,10 @@ import java.awt.Image;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
-import java.util.Queue;
 import java.util.Random;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.imageio.ImageIO;
 import javax.media.NoPlayerException;
@@ -46,6 +47,12 @@ public class VLCVideoImportEngine implements VideoImportEngine {
 	 * video in seconds
 	 */
 	private static final int MINIMUM_INTRO_WAIT = (int)TimeUnit.SECONDS.toMillis(2);
+	
+	/**
+	 * Time to wait for space in the shared queue before checking 
+	 * for cancellation or stopping in milliseconds
+	 */
+	private static final int QUEUE_WAIT = 100;
 
 	/**
 	 * Amount of (up to) random time we add to MINIMUM_INTRO_WAIT before we can
@@ -60,6 +67,7 @@ public class VLCVideoImportEngine implements VideoImportEngine {
 	 * @param f
 	 * @param singleImage
 	 * @param sharedQueue
+	 * @param stopped
 	 * @throws IOException
 	 * @throws InterruptedException
 	 * @throws NoPlayerException
@@ -67,7 +75,7 @@ public class VLCVideoImportEngine implements VideoImportEngine {
 	 * @throws IllegalAccessException
 	 * @throws ClassNotFoundException
 	 */
-	public void convertVideoToImages(File f, boolean singleImage, final Queue<Image> sharedQueue) throws IOException, InterruptedException {
+	public void convertVideoToImages(File f, boolean singleImage, final BlockingQueue<Image> sharedQueue, final AtomicBoolean stopped) throws IOException, InterruptedException {
 		//final float mediaTimeIncrement = (float) (1000 / OptionsObject.getVideoFramesPerSecond());
 		EmbeddedMediaPlayerComponent mediaPlayerComponent = new EmbeddedMediaPlayerComponent();
 		//ImageToZxSpec.p.add(mediaPlayerComponent);
@@ -85,7 +93,7 @@ public class VLCVideoImportEngine implements VideoImportEngine {
 					File f = new File(filePath);
 					f.deleteOnExit();
 					BufferedImage img = ImageIO.read(f);
-					sharedQueue.add(img);
+					offer(sharedQueue, img, stopped);
 				} catch (Throwable t) {}
 			}
 
@@ -116,7 +124,7 @@ public class VLCVideoImportEngine implements VideoImportEngine {
 					break;
 				}
 			}
-			if (ImageToZxSpec.isCancelled()) {
+			if (isStopped(stopped)) {
 				break;
 			}
 		}
@@ -125,6 +133,27 @@ public class VLCVideoImportEngine implements VideoImportEngine {
 		mediaPlayerComponent.release();
 	}
 	
+	private static boolean isStopped(AtomicBoolean stopped) {
+		return stopped.get() || ImageToZxSpec.isCancelled();
+	}
+	
+	/**
+	 * Waits for space in the shared queue for the given image, giving
+	 * up if the conversion is stopped or cancelled in the meantime
+	 * 
+	 * @param queue
+	 * @param image
+	 * @param stopped
+	 * @throws InterruptedException
+	 */
+	private static void offer(BlockingQueue<Image> queue, Image image, AtomicBoolean stopped) throws InterruptedException {
+		while (!isStopped(stopped)) {
+			if (queue.offer(image, QUEUE_WAIT, TimeUnit.MILLISECONDS)) {
+				return;
+			}
+		}
+	}
+	
 	@Override 
 	public String toString() {
 		return getCaption("VLC");
@@ -19,11 +19,25 @@ package uk.co.silentsoftware.core.converters.video;
 
 import java.awt.Image;
 import java.io.File;
-import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Interface wrapper for the various Java video libraries
  */
 public interface VideoImportEngine {
-	void convertVideoToImages(File f, boolean singleImage, final Queue<Image> sharedQueue) throws Exception;
+	
+	/**
+	 * Converts the video to images, adding them to the shared queue in
+	 * order. When the queue is full the conversion waits for space (so 
+	 * a bounded queue limits how far decoding runs ahead) unless the 
+	 * conversion is cancelled or stopped.
+	 * 
+	 * @param f
+	 * @param singleImage
+	 * @param sharedQueue
+	 * @param stopped set by the caller once it takes no more images
+	 * @throws Exception
+	 */
+	void convertVideoToImages(File f, boolean singleImage, final BlockingQueue<Image> sharedQueue, final AtomicBoolean stopped) throws Exception;
 }
\ No newline at end of file
@@ -35,53 +35,6 @@ public final class ByteHelper {
 	 */
 	private ByteHelper(){}
 	
-	/**
-	 * Noddy method to reverse a BitSet. 
-	 * Basically this is just to fix the endianness of
-	 * the image bytes.
-	 * 
-	 * @param bs
-	 * @return
-	 */
-	public static BitSet reverseBitSet(BitSet bs) {
-		final BitSet copy = new BitSet(8);
-		int counter = 0;
-		int size = bs.length();
-		for (int i = 0; i < size; ++i) {
-			if (i % 8 == 0 && i != 0) {
-				for (int j=8; j>=1; j--) {
-					bs.clear(i-j);
-					if (copy.get(j-1)){
-						bs.set(i-j);
-					}
-				}
-				copy.clear();
-				counter = 0;
-			}
-			if (bs.get(i)) {
-				copy.set(counter);
-			}
-			++counter;		
-		}
-		return bs;
-	}
-
-	/**
-	 * Copy a BitSet to a byte array
-	 * @param bs
-	 * @return
-	 */
-	public static byte[] bitSetToBytes(BitSet bs) {
-		byte[] bytes = new byte[bs.size()/8];
-		for (int i = 0; i<bytes.length; ++i) {
-			for (int j = 0; j<8; ++j) {
-				if (bs.get(i*8+j))
-					bytes[i] |= 1 << j;
-			}
-		}
-		return bytes;
-	}
-	
 	/**
 	 * Copy bits completely from a source BitSet to 
 	 * a destination BitSet starting at the destination
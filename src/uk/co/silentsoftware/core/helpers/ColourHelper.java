@@ -21,13 +21,11 @@ import static uk.co.silentsoftware.config.SpectrumDefaults.ATTRIBUTE_BLOCK_SIZE;
 
 import java.awt.Color;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.awt.image.RescaleOp;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Set;
 
-import uk.co.silentsoftware.config.OptionsObject;
+import uk.co.silentsoftware.config.ConversionSettings;
 import uk.co.silentsoftware.config.SpectrumDefaults;
 import uk.co.silentsoftware.core.colourstrategy.ColourChoiceStrategy;
 import uk.co.silentsoftware.core.converters.image.processors.GigaScreenAtrribute;
@@ -39,9 +37,9 @@ public final class ColourHelper {
 
 	private static final int MAXIMUM_COMPONENT_VALUE = 255;
 	
-	private static final int[] WHITE = ColourHelper.intToRgbComponents(Color.WHITE.getRGB());
+	private static final int WHITE = Color.WHITE.getRGB();
 	
-	private static final int[] BLACK = ColourHelper.intToRgbComponents(Color.BLACK.getRGB());
+	private static final int BLACK = Color.BLACK.getRGB();
 
 // TODO: Make configurable	
 //	private static final int PREFER_DETAIL_COMPONENT_LOWER_LIMIT = 127;//102; //40% 
@@ -50,14 +48,47 @@ public final class ColourHelper {
 	
 	private static final int PREFER_DETAIL_COMPONENT_BOUNDARY = 127;
 	
+	/**
+	 * 16.16 fixed point used for saturation
+	 */
+	private static final int FIXED_SHIFT = 16;
+	private static final int FIXED_ONE = 1 << FIXED_SHIFT;
+	private static final int FIXED_HALF = FIXED_ONE >> 1;
+	
+	/**
+	 * Minimum number of rows adjusted by a single parallel task
+	 */
+	private static final int ADJUSTMENT_ROWS_PER_TASK = 32;
+	
+	/**
+	 * The last contrast and brightness tables built
+	 */
+	private static volatile AdjustmentTables adjustmentTables;
+	
+	/**
+	 * Tie break rank of each Spectrum colour (by palette index) when two 
+	 * colours are equally popular in an attribute block, the higher rank 
+	 * wins. Within a rank the colour seen later in the block wins. This is
+	 * the order the colours were tallied in when they were counted in a 
+	 * HashMap keyed on rgb (i.e. its bucket) so attribute choices are the same.
+	 */
+	private static final int[] POPULARITY_RANKS = new int[SpectrumDefaults.SPECTRUM_COLOURS_ALL.length];
+	static {
+		for (int i=0; i<POPULARITY_RANKS.length; ++i) {
+			int rgb = SpectrumDefaults.SPECTRUM_COLOURS_ALL[i];
+			POPULARITY_RANKS[i] = (rgb ^ (rgb >>> 16)) & 127;
+		}
+	}
+	
 	/**
 	 * Retrieves the spectrum colour most like the provided rgb colour
 	 * 
 	 * @param rgb
+	 * @param preferDetail
 	 * @return
 	 */
-	public static int getClosestSpectrumColour(int rgb) {
-		return getClosestColour(rgb, SpectrumDefaults.SPECTRUM_COLOURS_ALL);
+	public static int getClosestSpectrumColour(int rgb, boolean preferDetail) {
+		return getClosestColour(rgb, SpectrumDefaults.SPECTRUM_COLOURS_ALL, preferDetail);
 	}
 
 	/**
@@ -66,20 +97,22 @@ public final class ColourHelper {
 	 * @param red
 	 * @param green
 	 * @param blue
+	 * @param preferDetail
 	 * @return
 	 */
-	public static int getClosestSpectrumColour(int red, int green, int blue) {
-		return getClosestColour(red, green, blue, SpectrumDefaults.SPECTRUM_COLOURS_ALL, OptionsObject.getInstance().getPreferDetail());
+	public static int getClosestSpectrumColour(int red, int green, int blue, boolean preferDetail) {
+		return getClosestColour(red, green, blue, SpectrumDefaults.SPECTRUM_COLOURS_ALL, preferDetail);
 	}
 
 	/**
 	 * Retrieves the spectrum bright colour most like the provided rgb colour
 	 * 
 	 * @param rgb
+	 * @param preferDetail
 	 * @return
 	 */
-	public static int getClosestBrightSpectrumColour(int rgb) {
-		return getClosestColour(rgb, SpectrumDefaults.SPECTRUM_COLOURS_BRIGHT);
+	public static int getClosestBrightSpectrumColour(int rgb, boolean preferDetail) {
+		return getClosestColour(rgb, SpectrumDefaults.SPECTRUM_COLOURS_BRIGHT, preferDetail);
 	}
 
 	/**
@@ -98,10 +131,11 @@ public final class ColourHelper {
 	 * colour
 	 * 
 	 * @param rgb
+	 * @param preferDetail
 	 * @return
 	 */
-	public static int getClosestHalfBrightSpectrumColour(int rgb) {
-		return getClosestColour(rgb, SpectrumDefaults.SPECTRUM_COLOURS_HALF_BRIGHT);
+	public static int getClosestHalfBrightSpectrumColour(int rgb, boolean preferDetail) {
+		return getClosestColour(rgb, SpectrumDefaults.SPECTRUM_COLOURS_HALF_BRIGHT, preferDetail);
 	}
 
 	/**
@@ -120,10 +154,11 @@ public final class ColourHelper {
 	 * provided rgb colour
 	 * 
 	 * @param rgb
+	 * @param preferDetail
 	 * @return
 	 */
-	public static int getClosestReducedHalfBrightSpectrumColour(int rgb) {
-		return getClosestColour(rgb, SpectrumDefaults.SPECTRUM_COLOURS_REDUCED_HALF_BRIGHT);
+	public static int getClosestReducedHalfBrightSpectrumColour(int rgb, boolean preferDetail) {
+		return getClosestColour(rgb, SpectrumDefaults.SPECTRUM_COLOURS_REDUCED_HALF_BRIGHT, preferDetail);
 	}
 
 	/**
@@ -132,20 +167,22 @@ public final class ColourHelper {
 	 * @param red
 	 * @param green
 	 * @param blue
+	 * @param preferDetail
 	 * @return
 	 */
-	public static int getClosestGigascreenColour(int red, int green, int blue) {
-		return getClosestColour(red, green, blue, SpectrumDefaults.GIGASCREEN_COLOURS_ALL, OptionsObject.getInstance().getPreferDetail());
+	public static int getClosestGigascreenColour(int red, int green, int blue, boolean preferDetail) {
+		return getClosestColour(red, green, blue, SpectrumDefaults.GIGASCREEN_COLOURS_ALL, preferDetail);
 	}
 	
 	/**
 	 * Retrieves the Gigascreen colour most like the provided rgb colour
 	 * 
 	 * @param rgb
+	 * @param preferDetail
 	 * @return
 	 */
-	public static int getClosestGigascreenColour(int rgb) {
-		return getClosestColour(rgb, SpectrumDefaults.GIGASCREEN_COLOURS_ALL);
+	public static int getClosestGigascreenColour(int rgb, boolean preferDetail) {
+		return getClosestColour(rgb, SpectrumDefaults.GIGASCREEN_COLOURS_ALL, preferDetail);
 	}
 
 	/**
@@ -159,47 +196,105 @@ public final class ColourHelper {
 	 */
 	public static int getClosestColour(int red, int green, int blue, int[] colourSet, boolean preferDetail) {
 
-		int bestMatch = Integer.MAX_VALUE;
-		Integer closest = null;
-		for (int colour : colourSet) {
-			final int[] colourSetComps = intToRgbComponents(colour);
-			int diff = Math.abs(red - colourSetComps[0]) + Math.abs(green - colourSetComps[1]) + Math.abs(blue - colourSetComps[2]);
-			if (diff <= bestMatch) {
-				closest = colour;
-				bestMatch = diff;
+		// Use the precomputed table for the standard palettes
+		final PaletteLookupTable table = PaletteLookupTable.forPalette(colourSet);
+		if (table != null) {
+			return getClosestColour(red, green, blue, table, preferDetail);
+		}
+
+		/**
+		 * If we prefer detail then make more of the darker shades black.
+		 */
+		if (preferDetail) {
+			if (red < PREFER_DETAIL_COMPONENT_BOUNDARY 
+				&& green < PREFER_DETAIL_COMPONENT_BOUNDARY 
+				&& blue < PREFER_DETAIL_COMPONENT_BOUNDARY) {
+				return getClosestColourLinear(red(BLACK), green(BLACK), blue(BLACK), colourSet);
+			}
+			if (red > PREFER_DETAIL_COMPONENT_BOUNDARY 
+				&& green > PREFER_DETAIL_COMPONENT_BOUNDARY 
+				&& blue > PREFER_DETAIL_COMPONENT_BOUNDARY) {
+				return getClosestColourLinear(red(WHITE), green(WHITE), blue(WHITE), colourSet);
 			}
 		}
-//System.out.println("closest: "+Integer.toHexString(SpectrumDefaults.GIGASCREEN_ARGB.get(closest)[0])+" "+Integer.toHexString(SpectrumDefaults.GIGASCREEN_ARGB.get(closest)[1]));
+		return getClosestColourLinear(red, green, blue, colourSet);
+	}
+	
+	/**
+	 * Retrieves the colour from the table's palette most like the provided 
+	 * rgb colour. For callers that already know the palette and want to
+	 * skip finding its table on every pixel.
+	 * 
+	 * @param red
+	 * @param green
+	 * @param blue
+	 * @param table
+	 * @param preferDetail
+	 * @return
+	 */
+	public static int getClosestColour(int red, int green, int blue, PaletteLookupTable table, boolean preferDetail) {
+		return table.getPalette()[getClosestIndex(red, green, blue, table, preferDetail)];
+	}
+	
+	/**
+	 * Retrieves the index in the table's palette of the colour most like 
+	 * the provided rgb colour
+	 * 
+	 * @param red
+	 * @param green
+	 * @param blue
+	 * @param table
+	 * @param preferDetail
+	 * @return
+	 */
+	public static int getClosestIndex(int red, int green, int blue, PaletteLookupTable table, boolean preferDetail) {
+		
 		/**
 		 * If we prefer detail then make more of the darker shades black.
 		 */
-
 		if (preferDetail) {
-			int white = ColourHelper.getClosestColour(WHITE[0], WHITE[1], WHITE[2], colourSet, false);
-			int black = ColourHelper.getClosestColour(BLACK[0], BLACK[1], BLACK[2], colourSet, false);
 			if (red < PREFER_DETAIL_COMPONENT_BOUNDARY 
 				&& green < PREFER_DETAIL_COMPONENT_BOUNDARY 
 				&& blue < PREFER_DETAIL_COMPONENT_BOUNDARY) {
-				return black;
+				return table.getClosestToBlackIndex();
 			}
 			if (red > PREFER_DETAIL_COMPONENT_BOUNDARY 
 				&& green > PREFER_DETAIL_COMPONENT_BOUNDARY 
 				&& blue > PREFER_DETAIL_COMPONENT_BOUNDARY) {
-				return white;
+				return table.getClosestToWhiteIndex();
+			}
+		}
+		return table.getClosestIndex(red, green, blue);
+	}
+
+	/**
+	 * Linear search of the colourSet for the colour most like the provided
+	 * rgb colour. Where colours are equally close the last one wins.
+	 * 
+	 * @param red
+	 * @param green
+	 * @param blue
+	 * @param colourSet
+	 * @return
+	 */
+	private static int getClosestColourLinear(int red, int green, int blue, int[] colourSet) {
+		int bestMatch = Integer.MAX_VALUE;
+		Integer closest = null;
+		for (int colour : colourSet) {
+			int diff = distance(red, green, blue, colour);
+			if (diff <= bestMatch) {
+				closest = colour;
+				bestMatch = diff;
 			}
 		}
 		return closest;
 	}
 
 	public static GigaScreenAtrribute.GigaScreenColourCombo getClosestGigaScreenCombo(int rgb, GigaScreenAtrribute colourSet) {
-		final int[] comps = ColourHelper.intToRgbComponents(rgb);
 		int bestMatch = Integer.MAX_VALUE;
 		Integer closestMatchPaletteIndex = null;
-		int[] palette = colourSet.getPalette();
-		for (int paletteIndex=0; paletteIndex<palette.length; ++paletteIndex) {
-			int colour = palette[paletteIndex];
-			final int[] colourSetComps = ColourHelper.intToRgbComponents(colour);
-			int diff = Math.abs(comps[0] - colourSetComps[0]) + Math.abs(comps[1] - colourSetComps[1]) + Math.abs(comps[2] - colourSetComps[2]);
+		for (int paletteIndex=0; paletteIndex<GigaScreenAtrribute.COMBO_COUNT; ++paletteIndex) {
+			int diff = distance(rgb, colourSet.getColourCombo(paletteIndex).getGigascreenColour());
 			if (diff < bestMatch) {
 				closestMatchPaletteIndex = paletteIndex;
 				bestMatch = diff;
@@ -208,18 +303,19 @@ public final class ColourHelper {
 		return colourSet.getColourCombo(closestMatchPaletteIndex);	
 	}
 	
-	public static int getClosestColour(int rgb, int[] colourSet) {
-		final int[] comps = intToRgbComponents(rgb);
-		return getClosestColour(comps[0], comps[1], comps[2], colourSet, OptionsObject.getInstance().getPreferDetail());
+	public static int getClosestColour(int rgb, int[] colourSet, boolean preferDetail) {
+		return getClosestColour(red(rgb), green(rgb), blue(rgb), colourSet, preferDetail);
 	}
 
 	
 	public static int getClosestColourDistance(int red, int green, int blue, int[] colourSet) {
-
+		final PaletteLookupTable table = PaletteLookupTable.forPalette(colourSet);
+		if (table != null) {
+			return table.getClosestDistance(red, green, blue);
+		}
 		int bestMatch = Integer.MAX_VALUE;
 		for (int colour : colourSet) {
-			final int[] colourSetComps = ColourHelper.intToRgbComponents(colour);
-			int diff = Math.abs(red - colourSetComps[0]) + Math.abs(green - colourSetComps[1]) + Math.abs(blue - colourSetComps[2]);
+			int diff = distance(red, green, blue, colour);
 			if (diff < bestMatch) {
 				bestMatch = diff;
 			}
@@ -236,17 +332,13 @@ public final class ColourHelper {
 	 */
 	private static int getClosestColourWithExclusion(int rgb, int excludedRgb, int[] colourSet) {
 
-		int original[] = intToRgbComponents(rgb);
-
 		int bestMatch = Integer.MAX_VALUE;
 		int closest = colourSet[0];
 		for (int colour : colourSet) {
 			if (colour == excludedRgb) {
 				continue;
 			}
-			int[] colourSetRgb = intToRgbComponents(colour);
-
-			int diff = Math.abs(original[0] - colourSetRgb[0]) + Math.abs(original[1] - colourSetRgb[1]) + Math.abs(original[2] - colourSetRgb[2]);
+			int diff = distance(rgb, colour);
 			if (diff < bestMatch) {
 				closest = colour;
 				bestMatch = diff;
@@ -255,15 +347,14 @@ public final class ColourHelper {
 		return closest;
 	}
 
-	public static BufferedImage colourMonochromeAttributes(BufferedImage output, final BufferedImage original) {
-		OptionsObject oo = OptionsObject.getInstance();
+	public static BufferedImage colourMonochromeAttributes(BufferedImage output, final BufferedImage original, ConversionSettings settings) {
 		for (int y = 0; y < output.getHeight(); ++y) {
 			for (int x = 0; x < output.getWidth(); ++x) {
 				int outRGB = output.getRGB(x, y);
 				if (outRGB == SpectrumDefaults.BLACK) {
-					outRGB = SpectrumDefaults.SPECTRUM_COLOURS_BRIGHT[oo.getMonochromeInkIndex()];
+					outRGB = settings.getMonochromeInk();
 				} else {
-					outRGB = SpectrumDefaults.SPECTRUM_COLOURS_BRIGHT[oo.getMonochromePaperIndex()];
+					outRGB = settings.getMonochromePaper();
 				}
 				output.setRGB(x, y, outRGB);
 			}
@@ -277,72 +368,103 @@ public final class ColourHelper {
 	 * selecting xMax by yMax parts of the output image (i.e. usually 8x8
 	 * pixels), chooses the most popular two colours. The colour choice strategy
 	 * then decides how to colour individual pixels based on these two colours.
+	 * Rows of attribute blocks are coloured in parallel.
 	 * 
 	 * Note it is expected that this method will be called AFTER the pixels have
 	 * been changed to Spectrum colours.
 	 * 
 	 * @param output
 	 * @param colourChoiceStrategy
+	 * @param settings
 	 * @return
 	 */
-	public static BufferedImage colourAttributes(BufferedImage output, final BufferedImage original, ColourChoiceStrategy colourChoiceStrategy) {
-
-		final int maxElements = 102;
-		Map<Integer, Integer> map = new HashMap<Integer, Integer>(maxElements);
-		
-		// Analyse block and choose the two most popular colours in attribute
-		// block
-		for (int y = 0; y + ATTRIBUTE_BLOCK_SIZE <= output.getHeight(); y += ATTRIBUTE_BLOCK_SIZE) {
-			for (int x = 0; x + ATTRIBUTE_BLOCK_SIZE <= output.getWidth() && y + ATTRIBUTE_BLOCK_SIZE <= output.getHeight(); x += ATTRIBUTE_BLOCK_SIZE) {
-				int outRgb[] = output.getRGB(x, y, ATTRIBUTE_BLOCK_SIZE, ATTRIBUTE_BLOCK_SIZE, null, 0, ATTRIBUTE_BLOCK_SIZE);
-				map.clear();	
-				for (int i=0; i<outRgb.length; ++i) {
-					
-					int value = ColourHelper.getClosestSpectrumColour(outRgb[i]); 					
-					int count = 1;
-					if (map.containsKey(value)) {
-						count = map.get(value)+1;				
+	public static BufferedImage colourAttributes(final BufferedImage output, final BufferedImage original, final ColourChoiceStrategy colourChoiceStrategy, final ConversionSettings settings) {
+		final int width = output.getWidth();
+		final int columns = width/ATTRIBUTE_BLOCK_SIZE;
+		ParallelHelper.forRange(0, output.getHeight()/ATTRIBUTE_BLOCK_SIZE, 1, new ParallelHelper.Range() {
+			@Override
+			public void compute(int from, int to) {
+				final int[] band = new int[width*ATTRIBUTE_BLOCK_SIZE];
+				final int[] counts = new int[SpectrumDefaults.SPECTRUM_COLOURS_ALL.length];
+				final int[] ranks = new int[SpectrumDefaults.SPECTRUM_COLOURS_ALL.length];
+				for (int row = from; row < to; ++row) {
+					output.getRGB(0, row*ATTRIBUTE_BLOCK_SIZE, width, ATTRIBUTE_BLOCK_SIZE, band, 0, width);
+					for (int column = 0; column < columns; ++column) {
+						colourAttributeBlock(band, column*ATTRIBUTE_BLOCK_SIZE, width, counts, ranks, colourChoiceStrategy, settings);
 					}
-					map.put(value, count);			
-				}
-				
-				int mostPopularColour = calculateMostPopularColourWithExclusion(null, map);
-				int secondMostPopularColour = calculateMostPopularColourWithExclusion(mostPopularColour, map);
-				final int[] mostPopularComps = ColourHelper.intToRgbComponents(mostPopularColour);
-				final int[] secondMostPopularComps = ColourHelper.intToRgbComponents(secondMostPopularColour);
-									
-				// Enforce attribute favouritism rules on the two spectrum
-				// attribute colours (fixes the problem that colours could be from both the bright
-				// and half bright set).
-				int[] correctedAlphaColours = OptionsObject.getInstance().getAttributeMode().enforceAttributeRule(mostPopularComps, secondMostPopularComps);
-							
-				// Replace all colours in attribute block (which can be any spectrum colours) with the just the popular two
-				for (int i = 0; i < outRgb.length; ++i) {
-					outRgb[i] = colourChoiceStrategy.colour(outRgb[i], correctedAlphaColours);
+					output.setRGB(0, row*ATTRIBUTE_BLOCK_SIZE, width, ATTRIBUTE_BLOCK_SIZE, band, 0, width);
 				}
-				output.setRGB(x, y, ATTRIBUTE_BLOCK_SIZE, ATTRIBUTE_BLOCK_SIZE, outRgb, 0, ATTRIBUTE_BLOCK_SIZE);
 			}
-		}
+		});
 		return output;
 	}
+	
+	/**
+	 * Analyses a single attribute block, choosing the two most popular colours
+	 * and replacing every pixel in the block with one of them.
+	 * 
+	 * @param pixels the rows of pixels containing the block
+	 * @param start the index of the block's top left pixel
+	 * @param scanline the width of the rows
+	 * @param counts tally of pixels per Spectrum colour index
+	 * @param ranks tie break rank per Spectrum colour index
+	 * @param colourChoiceStrategy
+	 * @param settings
+	 */
+	private static void colourAttributeBlock(int[] pixels, int start, int scanline, int[] counts, int[] ranks, ColourChoiceStrategy colourChoiceStrategy, ConversionSettings settings) {
+		final int end = start+ATTRIBUTE_BLOCK_SIZE*scanline;
+		Arrays.fill(counts, 0);
+		int seen = 0;
+		for (int line = start; line < end; line += scanline) {
+			for (int i = line; i < line+ATTRIBUTE_BLOCK_SIZE; ++i) {
+				int index = getClosestIndex(red(pixels[i]), green(pixels[i]), blue(pixels[i]), PaletteLookupTable.SPECTRUM_ALL, settings.getPreferDetail());
+				if (counts[index]++ == 0) {
+					ranks[index] = POPULARITY_RANKS[index] << 8 | seen++;
+				}
+			}
+		}
+		int mostPopular = calculateMostPopularIndexWithExclusion(-1, counts, ranks);
+		int secondMostPopular = calculateMostPopularIndexWithExclusion(mostPopular, counts, ranks);
+		
+		// Single colour block
+		if (secondMostPopular < 0) {
+			secondMostPopular = mostPopular;
+		}
 		
-	public static int calculateMostPopularColourWithExclusion(Integer excludedColour, Map<Integer, Integer> colourCountTally) {
-		Integer mostPopularColour = null;
-		if (excludedColour != null) {
-			mostPopularColour = excludedColour;
-		}		
-		Set<Integer>keySet = colourCountTally.keySet();
-		colourCountTally.remove(excludedColour);
-		int mostFrequent = -1;
-
-		for (int colour : keySet) {
-			int count = colourCountTally.get(colour);
-			if (count >= mostFrequent) {
-				mostPopularColour = colour;
-				mostFrequent = count;
+		// Enforce attribute favouritism rules on the two spectrum
+		// attribute colours (fixes the problem that colours could be from both the bright
+		// and half bright set).
+		int[] correctedAlphaColours = settings.getAttributeMode().enforceAttributeRule(SpectrumDefaults.SPECTRUM_COLOURS_ALL[mostPopular], 
+				SpectrumDefaults.SPECTRUM_COLOURS_ALL[secondMostPopular], settings.getPreferDetail());
+		
+		// Replace all colours in attribute block (which can be any spectrum colours) with the just the popular two
+		for (int line = start; line < end; line += scanline) {
+			for (int i = line; i < line+ATTRIBUTE_BLOCK_SIZE; ++i) {
+				pixels[i] = colourChoiceStrategy.colour(pixels[i], correctedAlphaColours);
+			}
+		}
+	}
+	
+	/**
+	 * Retrieves the index of the colour with the highest count that is not 
+	 * the excluded index, or -1 if there is no other colour
+	 * 
+	 * @param excludedIndex
+	 * @param counts
+	 * @param ranks tie break rank for equal counts (highest wins)
+	 * @return
+	 */
+	private static int calculateMostPopularIndexWithExclusion(int excludedIndex, int[] counts, int[] ranks) {
+		int mostPopular = -1;
+		for (int i = 0; i < counts.length; ++i) {
+			if (i == excludedIndex || counts[i] == 0) {
+				continue;
+			}
+			if (mostPopular < 0 || counts[i] > counts[mostPopular] || (counts[i] == counts[mostPopular] && ranks[i] > ranks[mostPopular])) {
+				mostPopular = i;
 			}
 		}
-		return mostPopularColour;
+		return mostPopular;
 	}
 
 	/**
@@ -395,38 +517,128 @@ public final class ColourHelper {
 	}
 
 	/**
-	 * Changes image saturation by a given amount (0-1 range)
+	 * Changes the contrast, saturation and brightness of an image (applied in
+	 * that order, with the same amounts as changeContrast and changeBrightness)
+	 * in a single pass over its pixels. Rows are split across parallel bands.
+	 * A TYPE_INT_RGB image is changed in place and returned, any other type is
+	 * first copied.
+	 * 
+	 * Contrast and brightness are looked up from tables built by the same
+	 * RescaleOp so are exact. Saturation (-1 to 1 range) is added to the HSB
+	 * saturation of each pixel, computed in fixed point as a scaling of each 
+	 * component's distance from the brightest so hue and HSB brightness are 
+	 * kept. This matches doing it via Color.RGBtoHSB/HSBtoRGB to within 1 
+	 * per component.
 	 * 
 	 * @param img
-	 * @param amount
+	 * @param contrast
+	 * @param saturation
+	 * @param brightness
 	 * @return
 	 */
-	public static BufferedImage changeSaturation(BufferedImage img, float amount) {
-		if (amount == 0) {
+	public static BufferedImage changeContrastSaturationBrightness(BufferedImage img, float contrast, float saturation, float brightness) {
+		if (contrast == 1 && saturation == 0 && brightness == 0) {
 			return img;
 		}
-		for (int y = 0; y < img.getHeight(); ++y) {
-			for (int x = 0; x < img.getWidth(); ++x) {
-				img.setRGB(x, y, changePixelSaturation(img.getRGB(x, y), amount));
+		final BufferedImage output = img.getType() == BufferedImage.TYPE_INT_RGB ? img : ImageHelper.copyImage(img);
+		final AdjustmentTables tables = getAdjustmentTables(contrast, brightness);
+		final int[] pixels = ((DataBufferInt)output.getRaster().getDataBuffer()).getData();
+		final int width = output.getWidth();
+		final int saturationFixed = Math.round(correctRange(saturation, -1, 1)*FIXED_ONE);
+		ParallelHelper.forRange(0, output.getHeight(), ADJUSTMENT_ROWS_PER_TASK, new ParallelHelper.Range() {
+			@Override
+			public void compute(int from, int to) {
+				for (int i = from*width; i < to*width; ++i) {
+					pixels[i] = adjustPixel(pixels[i], tables, saturationFixed);
+				}
+			}
+		});
+		return output;
+	}
+
+	/**
+	 * Applies the contrast table, saturation and brightness table to one pixel
+	 * 
+	 * @param rgb
+	 * @param tables
+	 * @param saturation in 16.16 fixed point
+	 * @return
+	 */
+	private static int adjustPixel(int rgb, AdjustmentTables tables, int saturation) {
+		int red = tables.contrast[rgb >> 16 & 0xFF];
+		int green = tables.contrast[rgb >> 8 & 0xFF];
+		int blue = tables.contrast[rgb & 0xFF];
+		if (saturation != 0) {
+			int max = Math.max(red, Math.max(green, blue));
+			int chroma = max - Math.min(red, Math.min(green, blue));
+			if (chroma == 0) {
+				
+				// Greys have no hue so (as HSB) become red when saturated
+				if (saturation > 0 && max > 0) {
+					green = blue = max - (max*Math.min(saturation, FIXED_ONE) + FIXED_HALF >> FIXED_SHIFT);
+					red = max;
+				}
+			} else {
+				
+				// New HSB saturation times the brightest component
+				int scaled = correctRange(chroma*FIXED_ONE + saturation*max, 0, max*FIXED_ONE);
+				long factor = ((long)scaled + (chroma >> 1))/chroma;
+				red = max - (int)((max - red)*factor + FIXED_HALF >> FIXED_SHIFT);
+				green = max - (int)((max - green)*factor + FIXED_HALF >> FIXED_SHIFT);
+				blue = max - (int)((max - blue)*factor + FIXED_HALF >> FIXED_SHIFT);
 			}
 		}
-		return img;
+		return 0xFF000000 | tables.brightness[red] << 16 | tables.brightness[green] << 8 | tables.brightness[blue];
 	}
 
 	/**
-	 * Changes the saturation of an individual pixel by the given amount (0-1
-	 * range)
+	 * Retrieves the contrast and brightness tables for the given amounts,
+	 * reusing the last ones built if the amounts are unchanged (i.e. for
+	 * every frame of a video)
 	 * 
-	 * @param pixel
-	 * @param amount
+	 * @param contrast
+	 * @param brightness
 	 * @return
 	 */
-	private static int changePixelSaturation(int pixel, float amount) {
-		int[] rgb = intToRgbComponents(pixel);
-		float[] hsb = Color.RGBtoHSB(rgb[0], rgb[1], rgb[2], null);
-		hsb[1] += amount;
-		float saturation = correctRange(hsb[1], 0, 1);
-		return Color.HSBtoRGB(hsb[0], saturation, hsb[2]);
+	private static AdjustmentTables getAdjustmentTables(float contrast, float brightness) {
+		AdjustmentTables tables = adjustmentTables;
+		if (tables == null || tables.contrastAmount != contrast || tables.brightnessAmount != brightness) {
+			tables = new AdjustmentTables(contrast, brightness);
+			adjustmentTables = tables;
+		}
+		return tables;
+	}
+
+	/**
+	 * Component lookup tables for a given contrast and brightness
+	 */
+	private static final class AdjustmentTables {
+		private final float contrastAmount;
+		private final float brightnessAmount;
+		private final int[] contrast;
+		private final int[] brightness;
+		
+		AdjustmentTables(float contrastAmount, float brightnessAmount) {
+			this.contrastAmount = contrastAmount;
+			this.brightnessAmount = brightnessAmount;
+			
+			// Run every component value through the actual operation so
+			// rounding and clamping are exactly as before
+			BufferedImage gradient = new BufferedImage(MAXIMUM_COMPONENT_VALUE+1, 1, BufferedImage.TYPE_INT_RGB);
+			for (int i = 0; i <= MAXIMUM_COMPONENT_VALUE; ++i) {
+				gradient.setRGB(i, 0, i << 16 | i << 8 | i);
+			}
+			contrast = toTable(changeContrast(gradient, contrastAmount));
+			brightness = toTable(changeBrightness(gradient, brightnessAmount));
+		}
+		
+		private static int[] toTable(BufferedImage gradient) {
+			int[] table = new int[gradient.getWidth()];
+			for (int i = 0; i < table.length; ++i) {
+				table[i] = red(gradient.getRGB(i, 0));
+			}
+			return table;
+		}
 	}
 
 	/**
@@ -449,13 +661,35 @@ public final class ColourHelper {
 	}
 
 	/**
-	 * Convert rgb to its components
+	 * Ensures a value is within a given range. If it exceeds or is below it is
+	 * set to the high value or low value respectively
+	 * 
+	 * @param value
+	 * @param low
+	 * @param high
+	 * @return
+	 */
+	static int correctRange(int value, int low, int high) {
+		if (value < low) {
+			return low;
+		}
+		if (value > high) {
+			return high;
+		}
+		return value;
+	}
+
+	/**
+	 * Convert rgb to its components.
+	 * 
+	 * Note this allocates - per pixel code should use red, green
+	 * and blue instead.
 	 * 
 	 * @param rgb
 	 * @return
 	 */
 	public static int[] intToRgbComponents(int rgb) {
-		return new int[] { rgb >> 16 & 0xFF, rgb >> 8 & 0xFF, rgb & 0xFF };
+		return new int[] { red(rgb), green(rgb), blue(rgb) };
 	}
 
 	/**
@@ -469,7 +703,8 @@ public final class ColourHelper {
 	}
 
 	/**
-	 * Convert individual RGB components into a 32 bit ARGB value
+	 * Convert individual RGB components into a 32 bit ARGB value,
+	 * clamping each component to the 0-255 range
 	 * 
 	 * @param red
 	 * @param green
@@ -477,7 +712,7 @@ public final class ColourHelper {
 	 * @return
 	 */
 	public static int intToAlphaRgb(int red, int green, int blue) {
-		return new Color(correctRange(red), correctRange(green), correctRange(blue)).getRGB();
+		return 0xFF000000 | correctRange(red) << 16 | correctRange(green) << 8 | correctRange(blue);
 	}
 
 	/**
@@ -486,8 +721,68 @@ public final class ColourHelper {
 	 * @param channel
 	 * @return
 	 */
-	private static int correctRange(int channel) {
-		return (int) ColourHelper.correctRange(channel, 0, MAXIMUM_COMPONENT_VALUE);
+	public static int correctRange(int channel) {
+		if (channel < 0) {
+			return 0;
+		}
+		if (channel > MAXIMUM_COMPONENT_VALUE) {
+			return MAXIMUM_COMPONENT_VALUE;
+		}
+		return channel;
+	}
+
+	/**
+	 * Extracts the red component of a packed rgb colour
+	 * 
+	 * @param rgb
+	 * @return
+	 */
+	public static int red(int rgb) {
+		return rgb >> 16 & 0xFF;
+	}
+
+	/**
+	 * Extracts the green component of a packed rgb colour
+	 * 
+	 * @param rgb
+	 * @return
+	 */
+	public static int green(int rgb) {
+		return rgb >> 8 & 0xFF;
+	}
+
+	/**
+	 * Extracts the blue component of a packed rgb colour
+	 * 
+	 * @param rgb
+	 * @return
+	 */
+	public static int blue(int rgb) {
+		return rgb & 0xFF;
+	}
+
+	/**
+	 * Manhattan distance between two packed rgb colours
+	 * 
+	 * @param rgb1
+	 * @param rgb2
+	 * @return
+	 */
+	public static int distance(int rgb1, int rgb2) {
+		return Math.abs(red(rgb1) - red(rgb2)) + Math.abs(green(rgb1) - green(rgb2)) + Math.abs(blue(rgb1) - blue(rgb2));
+	}
+
+	/**
+	 * Manhattan distance between the given components and a packed rgb colour
+	 * 
+	 * @param red
+	 * @param green
+	 * @param blue
+	 * @param rgb
+	 * @return
+	 */
+	public static int distance(int red, int green, int blue, int rgb) {
+		return Math.abs(red - red(rgb)) + Math.abs(green - green(rgb)) + Math.abs(blue - blue(rgb));
 	}
 
 	/**
@@ -496,11 +791,12 @@ public final class ColourHelper {
 	 * @param red
 	 * @param green
 	 * @param blue
+	 * @param blackThreshold
 	 * @return
 	 */
-	public static boolean isBlack(int red, int green, int blue) {
+	public static boolean isBlack(int red, int green, int blue, int blackThreshold) {
 		int colourTotal = red + green + blue;
-		return colourTotal < OptionsObject.getInstance().getBlackThreshold();
+		return colourTotal < blackThreshold;
 	}
 
 	/**
@@ -512,11 +808,11 @@ public final class ColourHelper {
 	 * @param rgb
 	 * @param ink
 	 * @param paper
+	 * @param blackThreshold
 	 * @return
 	 */
-	public static int getMonochromeColour(int rgb, int ink, int paper) {
-		int[] comps = intToRgbComponents(rgb);
-		return getMonochromeColour(comps[0], comps[1], comps[2], ink, paper);
+	public static int getMonochromeColour(int rgb, int ink, int paper, int blackThreshold) {
+		return getMonochromeColour(red(rgb), green(rgb), blue(rgb), ink, paper, blackThreshold);
 	}
 
 	/**
@@ -530,11 +826,12 @@ public final class ColourHelper {
 	 * @param blue
 	 * @param ink
 	 * @param paper
+	 * @param blackThreshold
 	 * @return
 	 */
 
-	public static int getMonochromeColour(int red, int green, int blue, int ink, int paper) {
-		if (isBlack(red, green, blue))
+	public static int getMonochromeColour(int red, int green, int blue, int ink, int paper, int blackThreshold) {
+		if (isBlack(red, green, blue, blackThreshold))
 			return ink;
 		return paper;
 	}
@@ -546,12 +843,13 @@ public final class ColourHelper {
 	 * Opposite function to getMonochromeFromBlackAndWhite
 	 * 
 	 * @param original
+	 * @param paper
 	 * @return
 	 */
-	public static int[] getBlackAndWhiteFromMonochrome(int[] original) {
+	public static int[] getBlackAndWhiteFromMonochrome(int[] original, int paper) {
 		int[] copy = Arrays.copyOf(original, original.length);
 		for (int i = 0; i < copy.length; ++i) {
-			if (copy[i] == SpectrumDefaults.SPECTRUM_COLOURS_BRIGHT[OptionsObject.getInstance().getMonochromePaperIndex()]) {
+			if (copy[i] == paper) {
 				copy[i] = Color.WHITE.getRGB();
 			} else {
 				copy[i] = Color.BLACK.getRGB();
@@ -567,21 +865,22 @@ public final class ColourHelper {
 	 * Opposite function to getBlackAndWhiteFromMonochrome
 	 * 
 	 * @param original
+	 * @param ink
+	 * @param paper
 	 * @return
 	 */
-	public static int[] getMonochromeFromBlackAndWhite(int[] original) {
+	public static int[] getMonochromeFromBlackAndWhite(int[] original, int ink, int paper) {
 		int[] copy = Arrays.copyOf(original, original.length);
 		for (int i = 0; i < copy.length; ++i) {
-			copy[i] = getMonochromeFromBlackAndWhite(copy[i]);
+			copy[i] = getMonochromeFromBlackAndWhite(copy[i], ink, paper);
 		}
 		return copy;
 	}
 
-	public static int getMonochromeFromBlackAndWhite(int original) {
-		OptionsObject oo = OptionsObject.getInstance();
+	public static int getMonochromeFromBlackAndWhite(int original, int ink, int paper) {
 		if (original == Color.WHITE.getRGB()) {
-			return SpectrumDefaults.SPECTRUM_COLOURS_BRIGHT[oo.getMonochromePaperIndex()];
+			return paper;
 		}
-		return SpectrumDefaults.SPECTRUM_COLOURS_BRIGHT[oo.getMonochromeInkIndex()];
+		return ink;
 	}
 }
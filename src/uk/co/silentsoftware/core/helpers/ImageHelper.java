@@ -36,7 +36,9 @@ public final class ImageHelper {
 	private ImageHelper(){}
 	
 	/**
-	 * Scale an image to a given width and height 
+	 * Scale an image to a given width and height (-1 for either keeps the
+	 * aspect ratio) placing it at the top left of a Spectrum screen sized 
+	 * image.
 	 * 
 	 * @param img
 	 * @param width
@@ -49,9 +51,8 @@ public final class ImageHelper {
 		if (img.getWidth(null) == width && img.getHeight(null) == height || -1 == width && -1 == height) {
 			return ImageHelper.copyImage(img);
 		}
-		final Image scaled = img.getScaledInstance(width, height, BufferedImage.SCALE_FAST);
 		BufferedImage copy = new BufferedImage(SpectrumDefaults.SCREEN_WIDTH, SpectrumDefaults.SCREEN_HEIGHT, BufferedImage.TYPE_INT_RGB);		
-		copyImage(scaled, copy);
+		ImageScaler.scale(img, width, height, copy);
 		return copy;
 	}
 	
@@ -0,0 +1,260 @@
+/* Image to ZX Spec
+ * Copyright (C) 2014 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package uk.co.silentsoftware.core.helpers;
+
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+/**
+ * Scaler for TYPE_INT_RGB rasters. Shrinking averages the area of source 
+ * pixels each destination pixel covers (so detail is not dropped and 
+ * aliased as with nearest neighbour) while enlarging interpolates 
+ * bilinearly. Each axis is scaled separately and both passes are split
+ * across parallel bands.
+ */
+public final class ImageScaler {
+
+	/**
+	 * Fixed point precision of the tap weights
+	 */
+	private static final int WEIGHT_SHIFT = 14;
+	private static final int WEIGHT_ONE = 1 << WEIGHT_SHIFT;
+	private static final int WEIGHT_HALF = WEIGHT_ONE >> 1;
+	
+	/**
+	 * Minimum number of rows scaled by a single parallel task
+	 */
+	private static final int ROWS_PER_TASK = 16;
+	
+	/**
+	 * Private constructor since we want static use only
+	 */
+	private ImageScaler(){}
+	
+	/**
+	 * Scales the source image to width by height, writing the top left of
+	 * the scaled image into the destination (any part of the scaled image
+	 * beyond the destination is dropped, any part of the destination beyond
+	 * the scaled image is left untouched). As with Image.getScaledInstance
+	 * a width or height of -1 keeps the source's aspect ratio.
+	 * 
+	 * @param source
+	 * @param width
+	 * @param height
+	 * @param destination must be TYPE_INT_RGB
+	 */
+	public static void scale(Image source, int width, int height, BufferedImage destination) {
+		if (destination.getType() != BufferedImage.TYPE_INT_RGB) {
+			throw new IllegalArgumentException("Destination must be TYPE_INT_RGB: "+destination.getType());
+		}
+		BufferedImage rgb = toRgbImage(source);
+		int sourceWidth = rgb.getWidth();
+		int sourceHeight = rgb.getHeight();
+		if (width < 0 && height < 0) {
+			width = sourceWidth;
+			height = sourceHeight;
+		} else if (width < 0) {
+			width = (int)Math.max(1, (long)sourceWidth*height/sourceHeight);
+		} else if (height < 0) {
+			height = (int)Math.max(1, (long)sourceHeight*width/sourceWidth);
+		}
+		scale(((DataBufferInt)rgb.getRaster().getDataBuffer()).getData(), sourceWidth, sourceHeight, width, height,
+				((DataBufferInt)destination.getRaster().getDataBuffer()).getData(), destination.getWidth(), destination.getHeight());
+	}
+	
+	/**
+	 * Scales source pixels (rgb, sourceWidth per row) to width by height, 
+	 * writing the top left of the scaled pixels into the destination (rgb, 
+	 * destinationWidth per row).
+	 * 
+	 * @param source
+	 * @param sourceWidth
+	 * @param sourceHeight
+	 * @param width
+	 * @param height
+	 * @param destination
+	 * @param destinationWidth
+	 * @param destinationHeight
+	 */
+	public static void scale(final int[] source, final int sourceWidth, int sourceHeight, int width, int height, 
+			final int[] destination, final int destinationWidth, int destinationHeight) {
+		final int columns = Math.min(width, destinationWidth);
+		final int rows = Math.min(height, destinationHeight);
+		if (columns <= 0 || rows <= 0) {
+			return;
+		}
+		final Taps horizontal = new Taps(sourceWidth, width, columns);
+		final Taps vertical = new Taps(sourceHeight, height, rows);
+		
+		// Scale the source rows horizontally (only as many as the visible rows need)
+		final int[] scaledRows = new int[vertical.getSourceExtent()*columns];
+		ParallelHelper.forRange(0, vertical.getSourceExtent(), ROWS_PER_TASK, new ParallelHelper.Range() {
+			@Override
+			public void compute(int from, int to) {
+				for (int y = from; y < to; ++y) {
+					for (int x = 0; x < columns; ++x) {
+						scaledRows[y*columns+x] = horizontal.apply(source, y*sourceWidth, 1, x);
+					}
+				}
+			}
+		});
+		
+		// ...then scale those columns vertically into the destination
+		ParallelHelper.forRange(0, rows, ROWS_PER_TASK, new ParallelHelper.Range() {
+			@Override
+			public void compute(int from, int to) {
+				for (int y = from; y < to; ++y) {
+					for (int x = 0; x < columns; ++x) {
+						destination[y*destinationWidth+x] = vertical.apply(scaledRows, x, columns, y);
+					}
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Retrieves the image as TYPE_INT_RGB with its pixels stored one row 
+	 * after another from the start of its buffer, copying it if need be
+	 * 
+	 * @param image
+	 * @return
+	 */
+	private static BufferedImage toRgbImage(Image image) {
+		if (image instanceof BufferedImage) {
+			BufferedImage buffered = (BufferedImage)image;
+			if (buffered.getType() == BufferedImage.TYPE_INT_RGB && buffered.getRaster().getParent() == null) {
+				return buffered;
+			}
+		}
+		return ImageHelper.copyImage(image);
+	}
+	
+	/**
+	 * The source pixels (and their weights) contributing to each 
+	 * scaled pixel along one axis
+	 */
+	private static final class Taps {
+		
+		/**
+		 * First source index for each scaled index
+		 */
+		private final int[] starts;
+		
+		/**
+		 * Offset into weights for each scaled index (plus a final end marker)
+		 */
+		private final int[] offsets;
+		
+		private final int[] weights;
+		
+		/**
+		 * @param sourceLength
+		 * @param scaledLength the length scaled to
+		 * @param count the number of scaled indexes actually needed
+		 */
+		Taps(int sourceLength, int scaledLength, int count) {
+			starts = new int[count];
+			offsets = new int[count+1];
+			double ratio = (double)sourceLength/scaledLength;
+			int[] all = new int[count*((int)Math.ceil(ratio)+2)];
+			int size = 0;
+			for (int i = 0; i < count; ++i) {
+				offsets[i] = size;
+				if (scaledLength < sourceLength) {
+					
+					// Average of the source pixels covered, weighted by how much of each is covered 
+					double from = i*ratio;
+					double to = Math.min(sourceLength, (i+1)*ratio);
+					int first = (int)from;
+					int last = Math.min(sourceLength, (int)Math.ceil(to));
+					starts[i] = first;
+					for (int j = first; j < last; ++j) {
+						all[size++] = (int)Math.round((Math.min(to, j+1)-Math.max(from, j))/(to-from)*WEIGHT_ONE);
+					}
+				} else {
+					
+					// Interpolate between the two source pixels either side of the scaled pixel's centre
+					double centre = Math.max(0, Math.min(sourceLength-1, (i+0.5)*ratio-0.5));
+					int first = (int)centre;
+					starts[i] = first;
+					if (first+1 < sourceLength) {
+						int weight = (int)Math.round((centre-first)*WEIGHT_ONE);
+						all[size++] = WEIGHT_ONE-weight;
+						all[size++] = weight;
+					} else {
+						all[size++] = WEIGHT_ONE;
+					}
+				}
+				normalise(all, offsets[i], size);
+			}
+			offsets[count] = size;
+			weights = new int[size];
+			System.arraycopy(all, 0, weights, 0, size);
+		}
+		
+		/**
+		 * Corrects rounding so a scaled pixel's weights add up to exactly one
+		 */
+		private static void normalise(int[] weights, int from, int to) {
+			int total = 0;
+			int largest = from;
+			for (int i = from; i < to; ++i) {
+				total += weights[i];
+				if (weights[i] > weights[largest]) {
+					largest = i;
+				}
+			}
+			weights[largest] += WEIGHT_ONE-total;
+		}
+		
+		/**
+		 * The number of source indexes the needed scaled indexes read from
+		 * 
+		 * @return
+		 */
+		int getSourceExtent() {
+			int last = starts.length-1;
+			return starts[last]+offsets[last+1]-offsets[last];
+		}
+		
+		/**
+		 * Calculates a scaled pixel from the pixels along this axis
+		 * 
+		 * @param pixels
+		 * @param base index of the first pixel along the axis
+		 * @param stride distance between pixels along the axis
+		 * @param index the scaled index to calculate
+		 * @return
+		 */
+		int apply(int[] pixels, int base, int stride, int index) {
+			int red = WEIGHT_HALF;
+			int green = WEIGHT_HALF;
+			int blue = WEIGHT_HALF;
+			int pixel = base+starts[index]*stride;
+			for (int i = offsets[index]; i < offsets[index+1]; ++i, pixel += stride) {
+				int rgb = pixels[pixel];
+				int weight = weights[i];
+				red += (rgb >> 16 & 0xFF)*weight;
+				green += (rgb >> 8 & 0xFF)*weight;
+				blue += (rgb & 0xFF)*weight;
+			}
+			return (red >> WEIGHT_SHIFT) << 16 | (green >> WEIGHT_SHIFT) << 8 | blue >> WEIGHT_SHIFT;
+		}
+	}
+}
@@ -0,0 +1,127 @@
+/* Image to ZX Spec
+ * Copyright (C) 2014 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package uk.co.silentsoftware.core.helpers;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import uk.co.silentsoftware.config.ScalingObject;
+import uk.co.silentsoftware.config.SpectrumDefaults;
+
+/**
+ * Helper class for loading images to convert
+ */
+public final class LoadHelper {
+
+	/**
+	 * The fewest decoded pixels (along each axis) per scaled pixel, so 
+	 * the final scale still has several pixels to average
+	 */
+	private static final int MINIMUM_OVERSAMPLING = 2;
+	
+	/**
+	 * Private constructor since we want static use only
+	 */
+	private LoadHelper(){}
+	
+	/**
+	 * Reads an image from file decoding only the part of it, and only at
+	 * the resolution, that scaling it with the given scaling (as per 
+	 * ImageHelper.quickScaleImage) will need. The image read still 
+	 * needs that scaling applying. Images with no scaling, or that are 
+	 * not much larger than the scaled size, are read in full.
+	 * 
+	 * As ImageIO.read returns null if there is no reader for the file.
+	 * 
+	 * @param f
+	 * @param scaling
+	 * @return
+	 * @throws IOException
+	 */
+	public static BufferedImage readImage(File f, ScalingObject scaling) throws IOException {
+		if (scaling.getWidth() < 0 && scaling.getHeight() < 0) {
+			return ImageIO.read(f);
+		}
+		try (ImageInputStream in = ImageIO.createImageInputStream(f)) {
+			if (in == null) {
+				return ImageIO.read(f);
+			}
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+			if (!readers.hasNext()) {
+				return null;
+			}
+			ImageReader reader = readers.next();
+			try {
+				reader.setInput(in, true, true);
+				ImageReadParam param = reader.getDefaultReadParam();
+				reduce(param, reader.getWidth(0), reader.getHeight(0), scaling);
+				return reader.read(0, param);
+			} finally {
+				reader.dispose();
+			}
+		}
+	}
+	
+	/**
+	 * Sets the source region and subsampling to read an image of the given 
+	 * size with, for the given scaling
+	 * 
+	 * @param param
+	 * @param width
+	 * @param height
+	 * @param scaling
+	 */
+	private static void reduce(ImageReadParam param, int width, int height, ScalingObject scaling) {
+		int regionWidth = width;
+		int regionHeight = height;
+		int scaledWidth = scaling.getWidth();
+		int scaledHeight = scaling.getHeight();
+		
+		// Scaling keeping aspect ratio may go off screen, that part is cropped so need not be read
+		if (scaledWidth < 0) {
+			scaledWidth = (int)Math.max(1, (long)width*scaledHeight/height);
+			if (scaledWidth > SpectrumDefaults.SCREEN_WIDTH) {
+				regionWidth = (int)Math.min(width, ((long)SpectrumDefaults.SCREEN_WIDTH*height+scaledHeight-1)/scaledHeight);
+				scaledWidth = SpectrumDefaults.SCREEN_WIDTH;
+			}
+		} else if (scaledHeight < 0) {
+			scaledHeight = (int)Math.max(1, (long)height*scaledWidth/width);
+			if (scaledHeight > SpectrumDefaults.SCREEN_HEIGHT) {
+				regionHeight = (int)Math.min(height, ((long)SpectrumDefaults.SCREEN_HEIGHT*width+scaledWidth-1)/scaledWidth);
+				scaledHeight = SpectrumDefaults.SCREEN_HEIGHT;
+			}
+		}
+		if (regionWidth < width || regionHeight < height) {
+			param.setSourceRegion(new Rectangle(0, 0, regionWidth, regionHeight));
+		}
+		
+		// The same along both axes so proportional scaling keeps the same ratio
+		int subsampling = Math.min(regionWidth/(scaledWidth*MINIMUM_OVERSAMPLING), regionHeight/(scaledHeight*MINIMUM_OVERSAMPLING));
+		if (subsampling > 1) {
+			param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+		}
+	}
+}
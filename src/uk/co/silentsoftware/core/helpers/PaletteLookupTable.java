@@ -0,0 +1,322 @@
+/* Image to ZX Spec
+ * Copyright (C) 2014 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package uk.co.silentsoftware.core.helpers;
+
+import uk.co.silentsoftware.config.SpectrumDefaults;
+
+/**
+ * Precomputed nearest colour lookup for one of the fixed Spectrum palettes.
+ *
+ * The RGB cube is quantised into 32x32x32 cells and each cell holds the
+ * (usually tiny) list of palette entries that could be the closest match,
+ * by Manhattan distance, for any colour inside it. A lookup then only has
+ * to refine between those candidates rather than scan the whole palette,
+ * and still returns exactly what the linear search in ColourHelper would.
+ */
+public final class PaletteLookupTable {
+
+	/**
+	 * Number of bits per channel used to index the cell cube
+	 */
+	private static final int CELL_BITS = 5;
+
+	/**
+	 * Shift to convert an 8 bit channel value to a cell coordinate
+	 */
+	private static final int CELL_SHIFT = 8 - CELL_BITS;
+
+	/**
+	 * Number of cells along each channel of the cube
+	 */
+	private static final int CELLS_PER_CHANNEL = 1 << CELL_BITS;
+
+	/**
+	 * Width in channel values of a single cell
+	 */
+	private static final int CELL_SIZE = 1 << CELL_SHIFT;
+
+	private static final int MAXIMUM_COMPONENT_VALUE = 255;
+
+	/**
+	 * All 15 Spectrum colours
+	 */
+	public static final PaletteLookupTable SPECTRUM_ALL = new PaletteLookupTable(SpectrumDefaults.SPECTRUM_COLOURS_ALL);
+
+	/**
+	 * The Spectrum bright colour set
+	 */
+	public static final PaletteLookupTable SPECTRUM_BRIGHT = new PaletteLookupTable(SpectrumDefaults.SPECTRUM_COLOURS_BRIGHT);
+
+	/**
+	 * The Spectrum half bright colour set
+	 */
+	public static final PaletteLookupTable SPECTRUM_HALF_BRIGHT = new PaletteLookupTable(SpectrumDefaults.SPECTRUM_COLOURS_HALF_BRIGHT);
+
+	/**
+	 * The reduced Spectrum half bright colour set
+	 */
+	public static final PaletteLookupTable SPECTRUM_REDUCED_HALF_BRIGHT = new PaletteLookupTable(SpectrumDefaults.SPECTRUM_COLOURS_REDUCED_HALF_BRIGHT);
+
+	/**
+	 * The GigaScreen 102 colour palette
+	 */
+	public static final PaletteLookupTable GIGASCREEN_ALL = new PaletteLookupTable(SpectrumDefaults.GIGASCREEN_COLOURS_ALL);
+
+	/**
+	 * The palette this table indexes
+	 */
+	private final int[] palette;
+
+	private final int[] reds;
+	private final int[] greens;
+	private final int[] blues;
+
+	/**
+	 * Start offset into cellCandidates for each cell (plus a final end marker)
+	 */
+	private final int[] cellOffsets;
+
+	/**
+	 * Palette indexes of the candidates for each cell, in ascending palette order
+	 */
+	private final byte[] cellCandidates;
+
+	/**
+	 * Indexes of the palette colours closest to pure white and pure black (for prefer detail)
+	 */
+	private final int closestToWhiteIndex;
+	private final int closestToBlackIndex;
+
+	/**
+	 * Builds the lookup table for the given palette
+	 *
+	 * @param palette
+	 */
+	public PaletteLookupTable(int[] palette) {
+		if (palette.length == 0 || palette.length > 256) {
+			throw new IllegalArgumentException("Palette must contain between 1 and 256 colours: "+palette.length);
+		}
+		this.palette = palette;
+		reds = new int[palette.length];
+		greens = new int[palette.length];
+		blues = new int[palette.length];
+		for (int i=0; i<palette.length; ++i) {
+			reds[i] = palette[i] >> 16 & 0xFF;
+			greens[i] = palette[i] >> 8 & 0xFF;
+			blues[i] = palette[i] & 0xFF;
+		}
+
+		final int cellCount = CELLS_PER_CHANNEL*CELLS_PER_CHANNEL*CELLS_PER_CHANNEL;
+		cellOffsets = new int[cellCount+1];
+		byte[] candidates = new byte[cellCount*2];
+		int[] minDistances = new int[palette.length];
+		int size = 0;
+		for (int cell=0; cell<cellCount; ++cell) {
+			int redLow = (cell >> (2*CELL_BITS)) << CELL_SHIFT;
+			int greenLow = ((cell >> CELL_BITS) & (CELLS_PER_CHANNEL-1)) << CELL_SHIFT;
+			int blueLow = (cell & (CELLS_PER_CHANNEL-1)) << CELL_SHIFT;
+
+			// Any entry that is the closest for some colour in this cell must be at least
+			// as close (at its nearest point) as the best worst case of every other entry
+			int threshold = Integer.MAX_VALUE;
+			for (int i=0; i<palette.length; ++i) {
+				minDistances[i] = minDistance(reds[i], redLow) + minDistance(greens[i], greenLow) + minDistance(blues[i], blueLow);
+				int max = maxDistance(reds[i], redLow) + maxDistance(greens[i], greenLow) + maxDistance(blues[i], blueLow);
+				if (max < threshold) {
+					threshold = max;
+				}
+			}
+			cellOffsets[cell] = size;
+			for (int i=0; i<palette.length; ++i) {
+				if (minDistances[i] <= threshold) {
+					if (size == candidates.length) {
+						byte[] grown = new byte[candidates.length*2];
+						System.arraycopy(candidates, 0, grown, 0, size);
+						candidates = grown;
+					}
+					candidates[size++] = (byte)i;
+				}
+			}
+		}
+		cellOffsets[cellCount] = size;
+		cellCandidates = new byte[size];
+		System.arraycopy(candidates, 0, cellCandidates, 0, size);
+
+		closestToWhiteIndex = getClosestIndex(MAXIMUM_COMPONENT_VALUE, MAXIMUM_COMPONENT_VALUE, MAXIMUM_COMPONENT_VALUE);
+		closestToBlackIndex = getClosestIndex(0, 0, 0);
+	}
+
+	/**
+	 * Retrieves the lookup table for the given palette if it is one
+	 * of the standard Spectrum palettes, otherwise null.
+	 *
+	 * @param palette
+	 * @return
+	 */
+	public static PaletteLookupTable forPalette(int[] palette) {
+		if (palette == SpectrumDefaults.SPECTRUM_COLOURS_ALL) {
+			return SPECTRUM_ALL;
+		}
+		if (palette == SpectrumDefaults.GIGASCREEN_COLOURS_ALL) {
+			return GIGASCREEN_ALL;
+		}
+		if (palette == SpectrumDefaults.SPECTRUM_COLOURS_BRIGHT) {
+			return SPECTRUM_BRIGHT;
+		}
+		if (palette == SpectrumDefaults.SPECTRUM_COLOURS_HALF_BRIGHT) {
+			return SPECTRUM_HALF_BRIGHT;
+		}
+		if (palette == SpectrumDefaults.SPECTRUM_COLOURS_REDUCED_HALF_BRIGHT) {
+			return SPECTRUM_REDUCED_HALF_BRIGHT;
+		}
+		return null;
+	}
+
+	/**
+	 * Retrieves the index of the palette colour closest to the given
+	 * components. Where several colours are equally close the last
+	 * one in the palette is chosen (as per the linear search).
+	 *
+	 * Components outside 0-255 are accepted; clamping them does not
+	 * change which colour is closest by Manhattan distance.
+	 *
+	 * @param red
+	 * @param green
+	 * @param blue
+	 * @return
+	 */
+	public int getClosestIndex(int red, int green, int blue) {
+		red = clamp(red);
+		green = clamp(green);
+		blue = clamp(blue);
+		int cell = (red >> CELL_SHIFT) << (2*CELL_BITS) | (green >> CELL_SHIFT) << CELL_BITS | blue >> CELL_SHIFT;
+		int start = cellOffsets[cell];
+		int end = cellOffsets[cell+1];
+		if (end - start == 1) {
+			return cellCandidates[start] & 0xFF;
+		}
+		int bestMatch = Integer.MAX_VALUE;
+		int closest = -1;
+		for (int i=start; i<end; ++i) {
+			int index = cellCandidates[i] & 0xFF;
+			int diff = Math.abs(red - reds[index]) + Math.abs(green - greens[index]) + Math.abs(blue - blues[index]);
+			if (diff <= bestMatch) {
+				closest = index;
+				bestMatch = diff;
+			}
+		}
+		return closest;
+	}
+
+	/**
+	 * Retrieves the Manhattan distance from the given components
+	 * to the closest palette colour
+	 *
+	 * @param red
+	 * @param green
+	 * @param blue
+	 * @return
+	 */
+	public int getClosestDistance(int red, int green, int blue) {
+
+		// Distance lost by clamping is the same for every palette entry
+		int overshoot = overshoot(red) + overshoot(green) + overshoot(blue);
+		red = clamp(red);
+		green = clamp(green);
+		blue = clamp(blue);
+		int cell = (red >> CELL_SHIFT) << (2*CELL_BITS) | (green >> CELL_SHIFT) << CELL_BITS | blue >> CELL_SHIFT;
+		int bestMatch = Integer.MAX_VALUE;
+		for (int i=cellOffsets[cell]; i<cellOffsets[cell+1]; ++i) {
+			int index = cellCandidates[i] & 0xFF;
+			int diff = Math.abs(red - reds[index]) + Math.abs(green - greens[index]) + Math.abs(blue - blues[index]);
+			if (diff < bestMatch) {
+				bestMatch = diff;
+			}
+		}
+		return bestMatch + overshoot;
+	}
+
+	/**
+	 * The index of the palette colour closest to white
+	 *
+	 * @return
+	 */
+	public int getClosestToWhiteIndex() {
+		return closestToWhiteIndex;
+	}
+
+	/**
+	 * The index of the palette colour closest to black
+	 *
+	 * @return
+	 */
+	public int getClosestToBlackIndex() {
+		return closestToBlackIndex;
+	}
+
+	/**
+	 * The palette this table was built for
+	 *
+	 * @return
+	 */
+	public int[] getPalette() {
+		return palette;
+	}
+
+	private static int clamp(int channel) {
+		if (channel < 0) {
+			return 0;
+		}
+		if (channel > MAXIMUM_COMPONENT_VALUE) {
+			return MAXIMUM_COMPONENT_VALUE;
+		}
+		return channel;
+	}
+
+	private static int overshoot(int channel) {
+		if (channel < 0) {
+			return -channel;
+		}
+		if (channel > MAXIMUM_COMPONENT_VALUE) {
+			return channel - MAXIMUM_COMPONENT_VALUE;
+		}
+		return 0;
+	}
+
+	/**
+	 * Closest distance from a component to any value in the cell starting at low
+	 */
+	private static int minDistance(int component, int low) {
+		if (component < low) {
+			return low - component;
+		}
+		int high = low + CELL_SIZE - 1;
+		if (component > high) {
+			return component - high;
+		}
+		return 0;
+	}
+
+	/**
+	 * Furthest distance from a component to any value in the cell starting at low
+	 */
+	private static int maxDistance(int component, int low) {
+		int high = low + CELL_SIZE - 1;
+		return Math.max(Math.abs(component - low), Math.abs(component - high));
+	}
+}
@@ -0,0 +1,116 @@
+/* Image to ZX Spec
+ * Copyright (C) 2014 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package uk.co.silentsoftware.core.helpers;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Utility class to split work within a single image (rows, bands,
+ * attribute blocks) across a shared fork join pool. The work engine 
+ * runs whole images on the same pool so the two levels of work share
+ * one set of threads.
+ */
+public final class ParallelHelper {
+
+	/**
+	 * The pool all image and intra image work is run on
+	 */
+	private static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+	private ParallelHelper() {}
+
+	/**
+	 * A unit of work over a range of indexes (e.g. rows). Implementations
+	 * are called concurrently with disjoint ranges so must not share
+	 * mutable state between ranges.
+	 */
+	public interface Range {
+
+		/**
+		 * Processes the indexes from (inclusive) to (exclusive)
+		 *
+		 * @param from
+		 * @param to
+		 */
+		public void compute(int from, int to);
+	}
+
+	/**
+	 * Retrieves the shared pool
+	 *
+	 * @return
+	 */
+	public static ForkJoinPool getPool() {
+		return POOL;
+	}
+
+	/**
+	 * Processes the indexes from (inclusive) to (exclusive), splitting
+	 * the range into parallel tasks of no fewer than grain indexes.
+	 * Returns once the whole range has been processed.
+	 *
+	 * @param from
+	 * @param to
+	 * @param grain
+	 * @param range
+	 */
+	public static void forRange(int from, int to, int grain, Range range) {
+		if (to - from <= grain) {
+			range.compute(from, to);
+			return;
+		}
+		RangeAction action = new RangeAction(from, to, Math.max(1, grain), range);
+		if (ForkJoinTask.inForkJoinPool()) {
+			action.invoke();
+		} else {
+			POOL.invoke(action);
+		}
+	}
+
+	/**
+	 * Recursively halves a range until it is small enough to compute
+	 */
+	private static class RangeAction extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int from;
+		private final int to;
+		private final int grain;
+		private final Range range;
+
+		RangeAction(int from, int to, int grain, Range range) {
+			this.from = from;
+			this.to = to;
+			this.grain = grain;
+			this.range = range;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= grain) {
+				range.compute(from, to);
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new RangeAction(from, middle, grain, range), new RangeAction(middle, to, grain, range));
+		}
+	}
+}
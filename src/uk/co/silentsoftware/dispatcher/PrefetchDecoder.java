@@ -0,0 +1,157 @@
+/* Image to ZX Spec
+ * Copyright (C) 2014 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package uk.co.silentsoftware.dispatcher;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import uk.co.silentsoftware.config.ScalingObject;
+import uk.co.silentsoftware.core.helpers.LoadHelper;
+
+/**
+ * Decodes image files ahead of their conversion on a small pool of
+ * threads so reading the next files overlaps converting the current
+ * ones. Images are handed back in file order and no more than the
+ * prefetch depth are decoded (or being decoded) but not yet taken.
+ * 
+ * Not thread safe - a single thread should take the images.
+ */
+public class PrefetchDecoder {
+
+	private final File[] files;
+	
+	private final ScalingObject scaling;
+	
+	private final int depth;
+	
+	/**
+	 * The decoding threads
+	 */
+	private final ExecutorService exec;
+	
+	/**
+	 * Decodes in file order not yet taken
+	 */
+	private final Queue<Future<BufferedImage>> pending = new ArrayDeque<>();
+	
+	/**
+	 * Index of the next file to start decoding
+	 */
+	private int nextFile = 0;
+	
+	/**
+	 * Starts decoding the first files
+	 * 
+	 * @param files
+	 * @param scaling the scaling the images will be converted with
+	 * @param depth the number of images to decode ahead
+	 */
+	public PrefetchDecoder(File[] files, ScalingObject scaling, int depth) {
+		this.files = files;
+		this.scaling = scaling;
+		this.depth = Math.max(1, depth);
+		exec = Executors.newFixedThreadPool(Math.min(this.depth, Runtime.getRuntime().availableProcessors()), new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "Image decoder");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		fill();
+	}
+	
+	/**
+	 * Whether there are more images to take
+	 * 
+	 * @return
+	 */
+	public boolean hasNext() {
+		return !pending.isEmpty();
+	}
+	
+	/**
+	 * Takes the next image in file order, waiting for it to be decoded.
+	 * As with ImageIO.read the image is null if the file could not be
+	 * decoded as an image.
+	 * 
+	 * @return
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public BufferedImage next() throws IOException, InterruptedException {
+		Future<BufferedImage> future = pending.poll();
+		if (future == null) {
+			throw new NoSuchElementException();
+		}
+		
+		// Keep the decoders busy while this one is finished off
+		fill();
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException)cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException)cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error)cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+	
+	/**
+	 * Stops decoding, discarding any images not taken
+	 */
+	public void close() {
+		for (Future<BufferedImage> future : pending) {
+			future.cancel(true);
+		}
+		pending.clear();
+		exec.shutdownNow();
+	}
+	
+	/**
+	 * Starts decoding files until the prefetch depth is reached
+	 */
+	private void fill() {
+		while (pending.size() < depth && nextFile < files.length) {
+			final File file = files[nextFile++];
+			pending.add(exec.submit(new Callable<BufferedImage>() {
+				@Override
+				public BufferedImage call() throws IOException {
+					return LoadHelper.readImage(file, scaling);
+				}
+			}));
+		}
+	}
+}
@@ -0,0 +1,156 @@
+/* Image to ZX Spec
+ * Copyright (C) 2014 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package uk.co.silentsoftware.dispatcher;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hands back work completed out of order in the order it was submitted.
+ * Each piece of work reserves a sequence number before it is submitted
+ * and is completed (from any thread) against that number; take releases 
+ * results as soon as the next in sequence is available so a slow piece 
+ * of work only holds up those after it for as long as it takes.
+ * No more than the capacity may be reserved but not yet taken, which
+ * bounds both the work in progress and the completed work awaiting
+ * output.
+ * 
+ * A single thread should reserve and a single thread should take.
+ * 
+ * @param <T>
+ */
+public class ReorderBuffer<T> {
+
+	/**
+	 * Completed results by sequence number modulo the capacity
+	 */
+	private final Object[] slots;
+	
+	/**
+	 * The next sequence number to reserve
+	 */
+	private long reserved = 0;
+	
+	/**
+	 * The next sequence number to take
+	 */
+	private long taken = 0;
+	
+	/**
+	 * Whether no more work will be reserved
+	 */
+	private boolean closed = false;
+	
+	/**
+	 * @param capacity the maximum amount of work reserved but not taken
+	 */
+	public ReorderBuffer(int capacity) {
+		slots = new Object[Math.max(1, capacity)];
+	}
+	
+	/**
+	 * Waits until there is room to reserve more work
+	 * 
+	 * @param timeout
+	 * @param unit
+	 * @return whether there is room (false on time out)
+	 * @throws InterruptedException
+	 */
+	public synchronized boolean awaitCapacity(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime()+unit.toNanos(timeout);
+		while (reserved-taken >= slots.length) {
+			long remaining = deadline-System.nanoTime();
+			if (remaining <= 0) {
+				return false;
+			}
+			TimeUnit.NANOSECONDS.timedWait(this, remaining);
+		}
+		return true;
+	}
+	
+	/**
+	 * Reserves the next sequence number. Callers should await capacity 
+	 * first and must complete every sequence number they reserve.
+	 * 
+	 * @return the sequence number to complete the work against
+	 */
+	public synchronized long reserve() {
+		if (closed) {
+			throw new IllegalStateException("Reorder buffer is closed");
+		}
+		if (reserved-taken >= slots.length) {
+			throw new IllegalStateException("Reorder buffer is full");
+		}
+		return reserved++;
+	}
+	
+	/**
+	 * Completes the work with the given sequence number
+	 * 
+	 * @param sequence
+	 * @param result the non null result
+	 */
+	public synchronized void complete(long sequence, T result) {
+		if (result == null) {
+			throw new NullPointerException("Result cannot be null");
+		}
+		slots[(int)(sequence%slots.length)] = result;
+		notifyAll();
+	}
+	
+	/**
+	 * Takes the next result in sequence, waiting for it to complete.
+	 * Its slot is freed for more work.
+	 * 
+	 * @param timeout
+	 * @param unit
+	 * @return the result or null on time out or once finished
+	 * @throws InterruptedException
+	 */
+	@SuppressWarnings("unchecked")
+	public synchronized T take(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime()+unit.toNanos(timeout);
+		int index = (int)(taken%slots.length);
+		while (slots[index] == null) {
+			long remaining = deadline-System.nanoTime();
+			if (isFinished() || remaining <= 0) {
+				return null;
+			}
+			TimeUnit.NANOSECONDS.timedWait(this, remaining);
+		}
+		T result = (T)slots[index];
+		slots[index] = null;
+		++taken;
+		notifyAll();
+		return result;
+	}
+	
+	/**
+	 * Marks that no more work will be reserved
+	 */
+	public synchronized void close() {
+		closed = true;
+		notifyAll();
+	}
+	
+	/**
+	 * @return whether closed and every result has been taken 
+	 */
+	public synchronized boolean isFinished() {
+		return closed && taken == reserved;
+	}
+}
@@ -19,6 +19,7 @@ package uk.co.silentsoftware.dispatcher;
 
 import java.awt.image.BufferedImage;
 
+import uk.co.silentsoftware.config.ConversionSettings;
 import uk.co.silentsoftware.core.converters.image.ResultImage;
 
 /**
@@ -38,6 +39,11 @@ public class WorkContainer {
 	 * The equivalent SCR representation of this image
 	 */
 	private byte[] scrData;
+	
+	/**
+	 * The settings the work was converted with
+	 */
+	private ConversionSettings settings;
 
 	public ResultImage[] getResultImage() {
 		return resultImage;
@@ -63,4 +69,20 @@ public class WorkContainer {
 		this.scrData = scrData;
 	}
 
+	public ConversionSettings getSettings() {
+		return settings;
+	}
+	public void setSettings(ConversionSettings settings) {
+		this.settings = settings;
+	}
+	
+	/**
+	 * Drops the images and SCR data once they have been output 
+	 * so they can be collected
+	 */
+	public void clear() {
+		resultImage = null;
+		preprocessedImageResult = null;
+		scrData = null;
+	}
 }
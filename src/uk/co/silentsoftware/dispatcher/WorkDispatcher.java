@@ -20,35 +20,31 @@ package uk.co.silentsoftware.dispatcher;
 import java.awt.Image;
 import java.awt.image.BufferedImage;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.FutureTask;
 
-import uk.co.silentsoftware.config.OptionsObject;
-import uk.co.silentsoftware.config.ScalingObject;
+import uk.co.silentsoftware.config.ConversionSettings;
 import uk.co.silentsoftware.core.converters.image.DitherStrategy;
 import uk.co.silentsoftware.core.converters.image.ResultImage;
-import uk.co.silentsoftware.core.helpers.ImageHelper;
-import uk.co.silentsoftware.ui.ImageToZxSpec;
+import uk.co.silentsoftware.core.helpers.ParallelHelper;
 
 /**
- * Central class for the work engine that initialises
- * a fixed thread pool and submits work for preprocessing
- * and processing.
+ * Central class for the work engine that submits work for 
+ * preprocessing and processing.
+ * 
+ * Each image is a task on the same work stealing pool the converters 
+ * split their rows and bands across, so many small images (e.g. video
+ * frames) run side by side while the bands of a single large image 
+ * are stolen by otherwise idle threads. The pool is sized to the 
+ * available processors and never needs recreating.
  */
 public class WorkDispatcher
 {
 	/**
-	 * The number of preview threads based on CPU count*4. Note that while they may
-	 * not run on the individual cores it does give a good performance estimate.
+	 * The processing pool (shared with the intra image work)
 	 */
-	public static int THREAD_COUNT = Runtime.getRuntime().availableProcessors()*OptionsObject.getInstance().getThreadsPerCPU();
-
-	/**
-	 * The processing thread
-	 */
-	private static ExecutorService exec = Executors.newFixedThreadPool(THREAD_COUNT);
+	private static final ForkJoinPool exec = ParallelHelper.getPool();
 	
 	/**
 	 * Shut down this engine and threads
@@ -57,59 +53,79 @@ public class WorkDispatcher
 		exec.shutdownNow();
 	}
 	
-	/**
-	 * Reconfigure the engine
-	 * 
-	 * WARNING: Calling this will stop any current processing!!
-	 * 
-	 * @param threads
-	 */
-	public static void setThreadsPerCPU(int threads) {
-		exec.shutdownNow();
-		try{exec.awaitTermination(10, TimeUnit.SECONDS);}
-		catch (InterruptedException e){}
-		THREAD_COUNT = Runtime.getRuntime().availableProcessors()*threads;
-		exec = Executors.newFixedThreadPool(THREAD_COUNT);
-		ImageToZxSpec.enableInput();
-	}
-	
 	/**
 	 * Submit an image to be pre processed and processed by a single thread
+	 * using the given settings (take one snapshot for a whole batch so it
+	 * is converted consistently)
 	 * 
 	 * The resulting Future<WorkContainer> contains the resulting buffered image and
-	 * optional SCR bytes.
+	 * optional SCR bytes (when exporting screens or tapes), both from the same 
+	 * conversion of the image. It reserves the next sequence number in the
+	 * results buffer (which must have capacity) and is completed against it
+	 * when done, whether converted successfully, failed or not submitted.
 	 * 
 	 * @param original
-	 * @param scrRequired
+	 * @param settings
+	 * @param results
 	 * @return
 	 */
-	public static Future<WorkContainer> submitWork(final Image original, final boolean scrRequired) {
-		Future<WorkContainer> future = exec.submit(new Callable<WorkContainer>()
+	public static Future<WorkContainer> submitWork(final Image original, final ConversionSettings settings, final ReorderBuffer<Future<WorkContainer>> results) {
+		Callable<WorkContainer> work = new Callable<WorkContainer>()
         {
             public WorkContainer call()
             {	
-            	OptionsObject oo = OptionsObject.getInstance();
-            	
-				/* This will improve the WIP preview display */
-            	if (oo.getShowWipPreview()) {
-            		Thread.currentThread().setPriority(Thread.MIN_PRIORITY);
-            	}
             	final WorkContainer result = new WorkContainer();
+            	result.setSettings(settings);
             	if (original == null) {
             		return result;
             	}
-            	final WorkProcessor wp = new WorkProcessor();	
-            	BufferedImage preProcessed = wp.preProcessImage(original, oo.getScaling());
+            	final WorkProcessor wp = new WorkProcessor(settings);	
+            	BufferedImage preProcessed = wp.preProcessImage(original, settings.getScaling());
             	ResultImage[] processed = wp.convertImage(preProcessed);
         		result.setPreprocessedImageResult(preProcessed);
             	result.setResultImage(processed);
             	
-            	if (scrRequired) {
-        			result.setScrData(wp.convertScreen(ImageHelper.copyImage(original)));
+            	if (settings.getExportScreen() || settings.getExportTape()) {
+        			result.setScrData(wp.convertScreen(preProcessed, processed));
             	}
                 return result;
             }
-        });
+        };
+        final long sequence = results.reserve();
+        try {
+        	FutureTask<WorkContainer> future = new FutureTask<WorkContainer>(work) {
+        		@Override
+        		protected void done() {
+        			results.complete(sequence, this);
+        		}
+        	};
+        	exec.execute(future);
+        	return future;
+        } catch (Throwable t) {
+        	
+        	// Not submitted (e.g. rejected) so complete the sequence number 
+        	// as failed or the results would never move past it
+        	results.complete(sequence, createFailedFuture(t));
+        	throw t;
+        }
+	}
+	
+	/**
+	 * Creates a future that is already done and fails with the cause
+	 * 
+	 * @param cause
+	 * @return
+	 */
+	private static Future<WorkContainer> createFailedFuture(final Throwable cause) {
+		FutureTask<WorkContainer> future = new FutureTask<WorkContainer>(new Callable<WorkContainer>() {
+			public WorkContainer call() throws Exception {
+				if (cause instanceof Exception) {
+					throw (Exception)cause;
+				}
+				throw (Error)cause;
+			}
+		});
+		future.run();
 		return future;
 	}
 	
@@ -120,21 +136,18 @@ public class WorkDispatcher
 	 * 
 	 * @param original
 	 * @param dither
+	 * @param settings
 	 * @return
 	 */
-	public static Future<WorkContainer> submitPreviewWork(final Image original, final DitherStrategy dither) {
+	public static Future<WorkContainer> submitPreviewWork(final Image original, final DitherStrategy dither, final ConversionSettings settings) {
 		Future<WorkContainer> future = exec.submit(new Callable<WorkContainer>()
         {
             public WorkContainer call()
             {
-            	OptionsObject oo = OptionsObject.getInstance();
-            	ScalingObject so = oo.getZXDefaultScaling();
-            	if (oo.getScaling() != oo.getScalings()[0]) {
-            		so = oo.getScaling();
-            	}
-            	final WorkProcessor wp = new WorkProcessor(dither);
+            	final WorkProcessor wp = new WorkProcessor(dither, settings);
             	final WorkContainer result = new WorkContainer();
-            	BufferedImage preProcessed = wp.preProcessImage(original, so);
+            	result.setSettings(settings);
+            	BufferedImage preProcessed = wp.preProcessImage(original, settings.getPreviewScaling());
             	ResultImage[] processed = wp.convertImage(preProcessed);
     			result.setResultImage(processed);
         		return result;
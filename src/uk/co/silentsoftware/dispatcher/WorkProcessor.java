@@ -22,8 +22,9 @@ import java.awt.image.BufferedImage;
 
 import javax.swing.JOptionPane;
 
-import uk.co.silentsoftware.config.OptionsObject;
+import uk.co.silentsoftware.config.ConversionSettings;
 import uk.co.silentsoftware.config.ScalingObject;
+import uk.co.silentsoftware.config.SpectrumDefaults;
 import uk.co.silentsoftware.core.colourstrategy.GigaScreenPaletteStrategy;
 import uk.co.silentsoftware.core.converters.image.DitherStrategy;
 import uk.co.silentsoftware.core.converters.image.ResultImage;
@@ -52,6 +53,11 @@ public class WorkProcessor
 	 * The image processor to use
 	 */
 	private ImageProcessor imageProcessor;
+	
+	/**
+	 * The settings all conversions by this processor use
+	 */
+	private final ConversionSettings settings;
 
 	/**
 	 * The "SCREEN$" converter
@@ -61,14 +67,16 @@ public class WorkProcessor
 	
 	/**
 	 * Main work processor constructor used for actual results
+	 * 
+	 * @param settings
 	 */
-	public WorkProcessor() {
-		OptionsObject oo = OptionsObject.getInstance();
-		if (oo.getColourMode() instanceof GigaScreenPaletteStrategy){
+	public WorkProcessor(ConversionSettings settings) {
+		this.settings = settings;
+		if (settings.getColourMode() instanceof GigaScreenPaletteStrategy){
 			imageProcessor = new GigaScreenConverterImpl();
-		} else if (oo.getSelectedDitherStrategy() instanceof ErrorDiffusionDitherStrategy) {
+		} else if (settings.getSelectedDitherStrategy() instanceof ErrorDiffusionDitherStrategy) {
 			imageProcessor = new ErrorDiffusionConverterImpl();
-		} else if (oo.getSelectedDitherStrategy() instanceof OrderedDitherStrategy){  
+		} else if (settings.getSelectedDitherStrategy() instanceof OrderedDitherStrategy){  
 			imageProcessor = new OrderedDitherConverterImpl();
 		} else {
 			imageProcessor = new CharacterConverterImpl(false);
@@ -80,10 +88,11 @@ public class WorkProcessor
 	 * dither strategy as opposed to that selected in options
 	 * 
 	 * @param dither
+	 * @param settings
 	 */
-	public WorkProcessor(DitherStrategy dither) {
-		OptionsObject oo = OptionsObject.getInstance();
-		if (oo.getColourMode() instanceof GigaScreenPaletteStrategy && dither != null){
+	public WorkProcessor(DitherStrategy dither, ConversionSettings settings) {
+		this.settings = settings;
+		if (settings.getColourMode() instanceof GigaScreenPaletteStrategy && dither != null){
 			imageProcessor = new GigaScreenConverterImpl(dither);
 		} else if (dither instanceof ErrorDiffusionDitherStrategy) {
 			imageProcessor = new ErrorDiffusionConverterImpl((ErrorDiffusionDitherStrategy)dither, true, null);
@@ -95,17 +104,25 @@ public class WorkProcessor
 	}
 	
 	/**
-	 * Converts the given image to the SCR (SCREEN) format,
-	 * optionally saves the file to disk and wraps any errors
-	 * during conversion and shows them as a UI dialog message.
+	 * Converts the already processed output of convertImage to the
+	 * SCR (SCREEN) format without dithering the image again. Only when
+	 * the pre processed image is not screen sized (i.e. no scaling) is
+	 * a separate screen sized conversion needed. Errors are shown as a
+	 * UI dialog message.
 	 * 
-	 * @param original
-	 * @param isAlreadyImageProcessed
+	 * @param preProcessed the image passed to convertImage
+	 * @param processed the result of convertImage
 	 * @return
 	 */
-	byte[] convertScreen(BufferedImage original) {
+	byte[] convertScreen(BufferedImage preProcessed, ResultImage[] processed) {
+		if (processed == null) {
+			return null;
+		}
 		try {
-			return screenConverter.convert(original, imageProcessor);
+			if (preProcessed.getWidth() != SpectrumDefaults.SCREEN_WIDTH || preProcessed.getHeight() != SpectrumDefaults.SCREEN_HEIGHT) {
+				return screenConverter.convert(preProcessed, imageProcessor, settings);
+			}
+			return screenConverter.convert(processed, imageProcessor, settings);
 		} catch(Exception e) {
 			JOptionPane.showMessageDialog(null, "An error has occurred: "+e.getMessage(), "Guru meditation", JOptionPane.OK_OPTION);  
 		}
@@ -122,7 +139,7 @@ public class WorkProcessor
 	 */
 	public ResultImage[] convertImage(final BufferedImage original) {
 		try {
-			return imageProcessor.convert(original);
+			return imageProcessor.convert(original, settings);
 		} catch(Exception e) {
 			e.printStackTrace();
 			JOptionPane.showMessageDialog(null, "An error has occurred: "+e.getMessage(), "Guru meditation", JOptionPane.OK_OPTION);  
@@ -132,18 +149,14 @@ public class WorkProcessor
 	
 	/**
 	 * Pre processes the given bufferedimage applying the given scaling
-	 * and the specified option set contrast, saturation and brightness
+	 * and the settings' contrast, saturation and brightness
 	 * 
 	 * @param original
 	 * @param scaling
 	 * @return
 	 */
 	public BufferedImage preProcessImage(final Image original, ScalingObject scaling) {
-		OptionsObject oo = OptionsObject.getInstance();
 		BufferedImage origScaled = ImageHelper.quickScaleImage(original, scaling.getWidth(), scaling.getHeight());
-		origScaled = ColourHelper.changeContrast(origScaled, oo.getContrast());
-		origScaled = ColourHelper.changeSaturation(origScaled, oo.getSaturation());
-		origScaled = ColourHelper.changeBrightness(origScaled, oo.getBrightness());
-		return origScaled;
+		return ColourHelper.changeContrastSaturationBrightness(origScaled, settings.getContrast(), settings.getSaturation(), settings.getBrightness());
 	}
 }
@@ -36,14 +36,13 @@ import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 import java.net.MalformedURLException;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.imageio.ImageIO;
 import javax.media.NoPlayerException;
@@ -61,16 +60,21 @@ import javax.swing.JTextField;
 import javax.swing.JToolBar;
 import javax.swing.UIManager;
 
+import uk.co.silentsoftware.config.ConversionSettings;
 import uk.co.silentsoftware.config.OptionsObject;
 import uk.co.silentsoftware.core.colourstrategy.GigaScreenPaletteStrategy;
 import uk.co.silentsoftware.core.converters.image.DitherStrategy;
 import uk.co.silentsoftware.core.converters.image.ResultImage;
 import uk.co.silentsoftware.core.converters.spectrum.ScrConverter;
 import uk.co.silentsoftware.core.converters.spectrum.TapeConverter;
+import uk.co.silentsoftware.core.converters.spectrum.TapeWriter;
 import uk.co.silentsoftware.core.converters.spectrum.TextConverter;
 import uk.co.silentsoftware.core.converters.video.GifConverter;
 import uk.co.silentsoftware.core.helpers.ImageHelper;
+import uk.co.silentsoftware.core.helpers.LoadHelper;
 import uk.co.silentsoftware.core.helpers.SaveHelper;
+import uk.co.silentsoftware.dispatcher.PrefetchDecoder;
+import uk.co.silentsoftware.dispatcher.ReorderBuffer;
 import uk.co.silentsoftware.dispatcher.WorkContainer;
 import uk.co.silentsoftware.dispatcher.WorkDispatcher;
 import uk.co.silentsoftware.ui.listener.AboutListener;
@@ -111,6 +115,12 @@ public class ImageToZxSpec {
 	 */
 	private static final int IMAGE_POLL_TIMEOUT = 5;
 	
+	/**
+	 * Time to wait for a frame in flight to be output before checking 
+	 * for cancellation (in milliseconds)
+	 */
+	private static final int FRAME_SLOT_WAIT = 100;
+	
 	/**
 	 * The total number of frames/images converted in this session
 	 */
@@ -388,13 +398,14 @@ public class ImageToZxSpec {
 			if (inFiles.length > 0) {
 				File f = inFiles[0];
 				Image image;
+				ConversionSettings settings = oo.getConversionSettings();
 				disableInput();
 				if (f.getPath().endsWith(".avi") || f.getPath().endsWith(".mov") || f.getPath().endsWith(".mp4") || f.getPath().endsWith(".mpg")) {
 					BlockingQueue<Image> queue = new LinkedBlockingQueue<Image>();
-					oo.getVideoImportEngine().convertVideoToImages(f, true, queue);
+					oo.getVideoImportEngine().convertVideoToImages(f, true, queue, new AtomicBoolean());
 					image = queue.poll(VIDEO_POLL_TIMEOUT, TimeUnit.SECONDS); 
 				} else {
-					image = ImageIO.read(f);
+					image = LoadHelper.readImage(f, settings.getPreviewScaling());
 				}
 				if (image == null) {
 					// Something went wrong, re-enable the UI
@@ -403,15 +414,15 @@ public class ImageToZxSpec {
 				}
 				Future<WorkContainer> future;
 				for(DitherStrategy dither : oo.getOrderedDithers()) {
-					future = WorkDispatcher.submitPreviewWork(image, dither);
+					future = WorkDispatcher.submitPreviewWork(image, dither, settings);
 					futures.add(future);
 				}			
 				for(DitherStrategy dither : oo.getErrorDithers()) {
-					future = WorkDispatcher.submitPreviewWork(image, dither);
+					future = WorkDispatcher.submitPreviewWork(image, dither, settings);
 					futures.add(future);
 				}
 				
-				future = WorkDispatcher.submitPreviewWork(image, null);
+				future = WorkDispatcher.submitPreviewWork(image, null, settings);
 				futures.add(future);
 				
 			}
@@ -562,6 +573,9 @@ public class ImageToZxSpec {
 	 * A waiter thread is initialised to pick the completed work up and as the
 	 * images are loaded in order the future tasks' results remain correctly 
 	 * ordered when they are collected.
+	 * No more than the frames in flight option's number of frames are queued, 
+	 * converting or awaiting output at once - decoding is held back until the 
+	 * waiter has output a frame so memory use stays flat however long the video.
 	 * 
 	 * @param f
 	 * @throws InterruptedException
@@ -573,45 +587,64 @@ public class ImageToZxSpec {
 	 * @throws ClassNotFoundException
 	 */
 	private static void processVideo(final File f) throws InterruptedException, NoPlayerException, IOException, ExecutionException, InstantiationException, IllegalAccessException, ClassNotFoundException {
-		final BlockingQueue<Image> sharedQueue = new LinkedBlockingQueue<Image>();
+		final int framesInFlight = OptionsObject.getInstance().getFramesInFlight();
+		final BlockingQueue<Image> sharedQueue = new LinkedBlockingQueue<Image>(framesInFlight);
+		
+		// Stops the decoding however this ends (it would otherwise wait on a full queue)
+		final AtomicBoolean stopped = new AtomicBoolean();
 		Thread t = new Thread(new Runnable() {
 			
 			@Override
 			public void run() {
 				try {
-					OptionsObject.getInstance().getVideoImportEngine().convertVideoToImages(f, false, sharedQueue);
+					OptionsObject.getInstance().getVideoImportEngine().convertVideoToImages(f, false, sharedQueue, stopped);
 				} catch(Throwable t) {
 					ImageToZxSpec.setStatusMessage(t.getMessage());
 				}
 			}
 		});
 		t.start();
-		final BlockingQueue<Future<WorkContainer>> futures = new LinkedBlockingQueue<Future<WorkContainer>>();
-		startWaiter(futures, f.getName());
+		final ReorderBuffer<Future<WorkContainer>> results = new ReorderBuffer<Future<WorkContainer>>(framesInFlight);
+		Thread waiter = startWaiter(results, f.getName());
 		
-		// Make sure we get through these as fast as possible as they are using memory while 
-		// being held in the work engine awaiting collection and outputting before a GC can occur.
-		// Due to numerous other processing threads and this being the feeder/producer it must be 
-		// high priority
-		Thread.currentThread().setPriority(Thread.MAX_PRIORITY);
-		Image buf = null;
-		while ((buf = sharedQueue.poll(VIDEO_POLL_TIMEOUT, TimeUnit.SECONDS)) != null && !isCancelled) {
-			try {
-				Future<WorkContainer> future = WorkDispatcher.submitWork(buf, OptionsObject.getInstance().getExportScreen() || OptionsObject.getInstance().getExportTape());
-				futures.add(future);
-			} catch (OutOfMemoryError oome) {
-				setStatusMessage(oome.getMessage());
-				break;
+		// Every frame is converted with the settings as they were when the video started
+		ConversionSettings settings = OptionsObject.getInstance().getConversionSettings();
+		try {
+			Image buf = null;
+			while (awaitFrameSlot(results, waiter) && (buf = sharedQueue.poll(VIDEO_POLL_TIMEOUT, TimeUnit.SECONDS)) != null && !isCancelled) {
+				WorkDispatcher.submitWork(buf, settings, results);
+			}
+		} finally {
+			stopped.set(true);
+			results.close();
+		}
+	}
+	
+	/**
+	 * Waits for one of the frames in flight to be taken by the waiter so 
+	 * another can be submitted. Gives up if the conversion is cancelled or
+	 * the waiter has finished (nothing would free the slot).
+	 * 
+	 * @param results
+	 * @param waiter
+	 * @return whether there is a slot free
+	 * @throws InterruptedException
+	 */
+	private static boolean awaitFrameSlot(ReorderBuffer<Future<WorkContainer>> results, Thread waiter) throws InterruptedException {
+		while (!isCancelled && waiter.isAlive()) {
+			if (results.awaitCapacity(FRAME_SLOT_WAIT, TimeUnit.MILLISECONDS)) {
+				return true;
 			}
-		}	
-		Thread.currentThread().setPriority(Thread.NORM_PRIORITY);
+		}
+		return false;
 	}
 	
 	
 	/**
 	 * Inner core method for the process files method that specifically deals 
-	 * with a single files. The files are loaded as images and these are put
-	 * into the work engine for processing.
+	 * with a single files. The files are loaded as images (decoded a few 
+	 * files ahead on separate threads) and these are put into the work 
+	 * engine for processing, bounded by the frames in flight option as for video.
 	 * A waiter thread is initialised to pick the completed work up and as the
 	 * images are loaded in order the future tasks' results remain correctly 
 	 * ordered when they are collected.
@@ -625,21 +658,23 @@ public class ImageToZxSpec {
 		if (inFiles.length == 0) {
 			return;
 		}
-		BlockingQueue<Future<WorkContainer>> futures = new LinkedBlockingQueue<Future<WorkContainer>>(inFiles.length);
-		startWaiter(futures, null);
-		OptionsObject oo = OptionsObject.getInstance();
-		for(File f : inFiles) {
-			try {
-				BufferedImage image = ImageIO.read(f);
-				Future<WorkContainer> future = WorkDispatcher.submitWork(image, oo.getExportScreen() || oo.getExportTape());
-				futures.add(future);
+		ReorderBuffer<Future<WorkContainer>> results = new ReorderBuffer<Future<WorkContainer>>(OptionsObject.getInstance().getFramesInFlight());
+		Thread waiter = startWaiter(results, null);
+		ConversionSettings settings = OptionsObject.getInstance().getConversionSettings();
+		
+		// Decode the next files while the current ones convert 
+		PrefetchDecoder decoder = new PrefetchDecoder(inFiles, settings.getScaling(), OptionsObject.getInstance().getPrefetchDepth());
+		try {
+			while (decoder.hasNext() && awaitFrameSlot(results, waiter)) {
+				BufferedImage image = decoder.next();
+				WorkDispatcher.submitWork(image, settings, results);
 				if (isCancelled) {
 					break;
 				}
-			} catch(OutOfMemoryError oome) {
-				setStatusMessage(oome.getMessage());
-				break;
 			}
+		} finally {
+			decoder.close();
+			results.close();
 		}
 	}
 	
@@ -648,38 +683,45 @@ public class ImageToZxSpec {
 	/**
 	 * A "waiter" which waits for the work engine (the WorkDispatcher) to return
 	 * a result so it can be displayed in the WIP preview when it is
-	 * ready. The list of futures contains the work dispatcher's work in progress
-	 * Future tasks. When the results are returned as buffered images or scrs the 
+	 * ready. The reorder buffer hands back the work dispatcher's completed 
+	 * Future tasks in submission order as soon as each is done, freeing a 
+	 * slot for more work. When the results are returned as buffered images or scrs the 
 	 * relevant scr, tap, png, jpg etc is created. In the case of video the videoName
-	 * is used for the file name base.
+	 * is used for the file name base. The waiter finishes once the buffer
+	 * is closed and empty.
 	 * 
-	 * @param futures
+	 * @param results
+	 * @param videoName
+	 * @return the waiter thread
 	 */
-	private static void startWaiter(final BlockingQueue<Future<WorkContainer>> futures, final String videoName) {
+	private static Thread startWaiter(final ReorderBuffer<Future<WorkContainer>> results, final String videoName) {
 		// Old school threading for the work results handler
 		Thread t = new Thread() {
 			public void run() {
+				TapeWriter tapeWriter = null;
+				
+				// The last screen on the tape (for delta frames)
+				byte[] previousScr = null;
 				try {
 					OptionsObject oo = OptionsObject.getInstance();
 					File textOutput = new File(outFolder+"/"+DEFAULT_FILE_NAME+".txt");
 					if (oo.getExportText()) {
 						SaveHelper.deleteFile(textOutput);
 					}
-					if (oo.getExportAnimGif()) {
-						gifConverter.createSequence(oo.getGifDisplayTimeMillis());
+					final boolean exportGif = oo.getExportAnimGif();
+					if (exportGif) {
+						gifConverter.createSequence(new File(outFolder+"/"+DEFAULT_FILE_NAME+".gif"), oo.getGifDisplayTimeMillis());
 					}
-					List<byte[]> convertedTap = new ArrayList<byte[]>();
 					specLogo = null;
 					final String processingText=getCaption("main_processed")+" ";
 					setStatusMessage(getCaption("main_working"));
 					Future<WorkContainer> future = null;
 					int frameIndex = 0;
-					int pollTimeout = VIDEO_POLL_TIMEOUT; 
-					if (videoName == null) {
-						pollTimeout = IMAGE_POLL_TIMEOUT;
-					}
 					Thread.currentThread().setPriority(Thread.MAX_PRIORITY);
-					while ((future = futures.poll(pollTimeout, TimeUnit.SECONDS)) != null && !isCancelled) {
+					while (!isCancelled && !results.isFinished()) {
+						if ((future = results.take(FRAME_SLOT_WAIT, TimeUnit.MILLISECONDS)) == null) {
+							continue;
+						}
 						WorkContainer result = future.get();
 						setStatusMessage(processingText+(frameIndex+1));
 						BufferedImage imageResult = ResultImage.getFinalImage(result.getResultImage()).getImage();
@@ -695,19 +737,26 @@ public class ImageToZxSpec {
 							frame.repaint();
 						}
 						
-						if (oo.getExportTape()) {
+						ConversionSettings settings = result.getSettings();
+						if (settings.getExportTape()) {
+							if (tapeWriter == null) {
+								tapeWriter = tapeConverter.createTapeWriter(new File(outFolder+"/"+DEFAULT_FILE_NAME+tapeConverter.getExtension(settings)), settings);
+							}
+							
 							// Gigascreens are 2 screens in 1 and thus we need to split the scr
-							if (oo.getColourMode() instanceof  GigaScreenPaletteStrategy) {
+							if (settings.getColourMode() instanceof  GigaScreenPaletteStrategy) {
 								byte[] scr1 = Arrays.copyOf(result.getScrData(), ScrConverter.SCR_SIZE);
 								byte[] scr2 = Arrays.copyOfRange(result.getScrData(), ScrConverter.SCR_SIZE, 13824);
-								convertedTap.add(tapeConverter.createTapPart(scr1));
-								convertedTap.add(tapeConverter.createTapPart(scr2));
+								tapeWriter.addPart(tapeConverter.createTapPart(scr1, previousScr, settings));
+								tapeWriter.addPart(tapeConverter.createTapPart(scr2, scr1, settings));
+								previousScr = scr2;
 							} else {
-								convertedTap.add(tapeConverter.createTapPart(result.getScrData()));
+								tapeWriter.addPart(tapeConverter.createTapPart(result.getScrData(), previousScr, settings));
+								previousScr = result.getScrData();
 							}
 						}
-						if (oo.getExportAnimGif()) {
-							gifConverter.addFrame(ResultImage.getFinalImage(result.getResultImage()).getImage());
+						if (exportGif) {
+							gifConverter.addFrame(imageResult, settings);
 						}
 						String name = videoName;
 						if (name == null) {
@@ -716,11 +765,11 @@ public class ImageToZxSpec {
 						if (oo.getExportImage()) {
 							SaveHelper.saveImage(imageResult, outFolder, name);
 						}
-						if (oo.getExportScreen()) {
+						if (settings.getExportScreen()) {
 							SaveHelper.saveBytes(result.getScrData(), new File(outFolder+"/"+name+".scr"));
 						}	
 						if (oo.getExportText()) {
-							String text = textConverter.convert(ResultImage.getFinalImage(result.getResultImage()).getImage());
+							String text = textConverter.convert(ResultImage.getFinalImage(result.getResultImage()).getImage(), settings);
 							SaveHelper.saveBytes(text.getBytes(),textOutput, true);
 						}
 						// FPS counter - periodically reset for averages
@@ -728,23 +777,20 @@ public class ImageToZxSpec {
 						
 						// File and frame index counter
 						++frameIndex;
+						
+						// Done with this frame so let its images be collected straight away
+						result.clear();
+					}
+					
+					// Keep the frames already on tape even if cancelled
+					if (tapeWriter != null) {
+						tapeWriter.commit();
 					}
 					if (!isCancelled) {
-						if (oo.getExportTape() && convertedTap.size() > 0) {
-							byte[] result = tapeConverter.createTap(convertedTap);
-							if (result != null && result.length > 0) {
-								SaveHelper.saveBytes(result, new File(outFolder+"/"+DEFAULT_FILE_NAME+".tap"));
-							}
-						}
-						if (oo.getExportAnimGif()) {
+						if (exportGif) {
 							setStatusMessage(getCaption("main_saving_gif"));
-							byte[] result = gifConverter.createGif();	
-							if (result != null && result.length > 0) {
-								SaveHelper.saveBytes(result, new File(outFolder+"/"+DEFAULT_FILE_NAME+".gif"));
-							}
+							gifConverter.endSequence();
 						}
-					} else {
-						futures.clear();
 					}
 					setStatusMessage(DEFAULT_STATUS_MESSAGE);
 					if (frameIndex == 0 && videoName != null) {
@@ -753,12 +799,19 @@ public class ImageToZxSpec {
 				} catch(Exception e){
 					setStatusMessage(e.getMessage());
 				} finally {
+					
+					// Only does anything when the gif or tap was not finished (cancelled or failed)
+					gifConverter.abortSequence();
+					if (tapeWriter != null) {
+						tapeWriter.abort();
+					}
 					enableInput();
 				}
 			} 
 		};
 		t.setDaemon(true);
 		t.start();
+		return t;
 	}
 	
 	/**
@@ -56,6 +56,7 @@ import uk.co.silentsoftware.config.GigaScreenHSBOption;
 import uk.co.silentsoftware.config.OptionsObject;
 import uk.co.silentsoftware.config.PersistenceService;
 import uk.co.silentsoftware.config.ScalingObject;
+import uk.co.silentsoftware.config.TurboSpeed;
 import uk.co.silentsoftware.core.attributestrategy.AttributeStrategy;
 import uk.co.silentsoftware.core.attributestrategy.GigaScreenAttributeStrategy;
 import uk.co.silentsoftware.core.colourstrategy.ColourChoiceStrategy;
@@ -64,7 +65,6 @@ import uk.co.silentsoftware.core.converters.image.errordiffusionstrategy.ErrorDi
 import uk.co.silentsoftware.core.converters.image.orderedditherstrategy.OrderedDitherStrategy;
 import uk.co.silentsoftware.core.converters.video.VLCVideoImportEngine;
 import uk.co.silentsoftware.core.converters.video.VideoImportEngine;
-import uk.co.silentsoftware.dispatcher.WorkDispatcher;
 import uk.co.silentsoftware.ui.listener.DitherChangedListener;
 
 /**
@@ -484,7 +484,7 @@ public class PreferencesDialog extends JFrame  {
 	private JPanel createGeneralOptions() {
 		final OptionsObject oo = OptionsObject.getInstance();
 		JPanel panel = new JPanel();
-		panel.setLayout(new GridLayout(11,2));
+		panel.setLayout(new GridLayout(13,2));
 		JLabel label = new JLabel(getCaption("misc_image_output"), JLabel.CENTER);
 		panel.add(label);
 		final JComboBox<String> formatsBox = new JComboBox<String>(oo.getImageFormats());
@@ -544,21 +544,45 @@ public class PreferencesDialog extends JFrame  {
 			}
 		});
 		panel.add(loadersBox);
-		label = new JLabel(getCaption("misc_threads_per_cpu"), JLabel.CENTER);
+		label = new JLabel(getCaption("misc_turbo_speed"), JLabel.CENTER);
 		panel.add(label);
-		final JComboBox<Integer> cpuThreads = new JComboBox<Integer>();
-		for (int i=1; i<6; i++) {
-			cpuThreads.addItem(i);
+		final JComboBox<TurboSpeed> turboSpeedsBox = new JComboBox<TurboSpeed>(oo.getTurboSpeeds());
+		turboSpeedsBox.setSelectedItem(oo.getTurboSpeed());
+		turboSpeedsBox.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent event) {
+				oo.setTurboSpeed((TurboSpeed)turboSpeedsBox.getSelectedItem());
+				PersistenceService.save(oo, PREFS_FILE);
+			}
+		});
+		panel.add(turboSpeedsBox);
+		label = new JLabel(getCaption("misc_prefetch_depth"), JLabel.CENTER);
+		panel.add(label);
+		final JComboBox<Integer> prefetchDepths = new JComboBox<Integer>();
+		for (int i=1; i<=32; i*=2) {
+			prefetchDepths.addItem(i);
+		}
+		prefetchDepths.setSelectedItem(oo.getPrefetchDepth());
+		prefetchDepths.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent event) {
+				oo.setPrefetchDepth((Integer)prefetchDepths.getSelectedItem());
+				PersistenceService.save(oo, PREFS_FILE);
+			}
+		});
+		panel.add(prefetchDepths);
+		label = new JLabel(getCaption("misc_frames_in_flight"), JLabel.CENTER);
+		panel.add(label);
+		final JComboBox<Integer> framesInFlight = new JComboBox<Integer>();
+		for (int i=4; i<=64; i*=2) {
+			framesInFlight.addItem(i);
 		}
-		cpuThreads.setSelectedItem(oo.getThreadsPerCPU());
-		cpuThreads.addActionListener(new ActionListener() {
+		framesInFlight.setSelectedItem(oo.getFramesInFlight());
+		framesInFlight.addActionListener(new ActionListener() {
 			public void actionPerformed(ActionEvent event) {
-				oo.setThreadsPerCPU((Integer)cpuThreads.getSelectedItem());
-				WorkDispatcher.setThreadsPerCPU(oo.getThreadsPerCPU());
+				oo.setFramesInFlight((Integer)framesInFlight.getSelectedItem());
 				PersistenceService.save(oo, PREFS_FILE);
 			}
 		});
-		panel.add(cpuThreads);
+		panel.add(framesInFlight);
 		label = new JLabel(getCaption("misc_show_fps"), JLabel.CENTER);
 		panel.add(label);
 		final JCheckBox fpsCheckBox = new JCheckBox("", oo.getFpsCounter());
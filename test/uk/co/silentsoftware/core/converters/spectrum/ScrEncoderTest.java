@@ -0,0 +1,147 @@
+/* Image to ZX Spec
+ * Copyright (C) 2014 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package uk.co.silentsoftware.core.converters.spectrum;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static uk.co.silentsoftware.config.SpectrumDefaults.ATTRIBUTE_BLOCK_SIZE;
+import static uk.co.silentsoftware.config.SpectrumDefaults.COLUMNS;
+import static uk.co.silentsoftware.config.SpectrumDefaults.SCREEN_HEIGHT;
+import static uk.co.silentsoftware.config.SpectrumDefaults.SCREEN_WIDTH;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import uk.co.silentsoftware.config.ConversionSettings;
+import uk.co.silentsoftware.config.OptionsObject;
+import uk.co.silentsoftware.core.converters.image.ResultImage;
+import uk.co.silentsoftware.core.converters.image.processors.ErrorDiffusionConverterImpl;
+import uk.co.silentsoftware.core.converters.image.processors.ImageProcessor;
+import uk.co.silentsoftware.core.converters.image.processors.OrderedDitherConverterImpl;
+
+/**
+ * Checks SCRs decode to the colour indexes they were encoded from and
+ * re-encode to the same bytes
+ */
+public class ScrEncoderTest {
+
+	@Test
+	public void testEncodeDecode() {
+		Random random = new Random(1);
+		for (int i=0; i<10; ++i) {
+			byte[] inks = new byte[ScrEncoder.ATTRIBUTE_DATA_SIZE];
+			byte[] attributes = new byte[ScrEncoder.ATTRIBUTE_DATA_SIZE];
+			byte[] papers = new byte[ScrEncoder.ATTRIBUTE_DATA_SIZE];
+			for (int block=0; block<attributes.length; ++block) {
+				int ink = random.nextInt(8);
+				int paper = random.nextInt(8);
+				boolean bright = random.nextBoolean();
+				inks[block] = toIndex(ink, bright);
+				papers[block] = toIndex(paper, bright);
+				attributes[block] = ScrEncoder.toAttribute(ink, paper, bright);
+			}
+			byte[] indexes = new byte[SCREEN_WIDTH*SCREEN_HEIGHT];
+			for (int pixel=0; pixel<indexes.length; ++pixel) {
+				int block = getBlock(pixel);
+				indexes[pixel] = random.nextBoolean() ? inks[block] : papers[block];
+			}
+			byte[] scr = ScrEncoder.encode(indexes, inks, attributes);
+			assertEquals(ScrConverter.SCR_SIZE, scr.length);
+			assertArrayEquals(indexes, ScrEncoder.decode(scr, 0));
+			
+			// Decoding from an offset (e.g. the second GigaScreen screen)
+			byte[] scrs = Arrays.copyOf(scr, 2*ScrConverter.SCR_SIZE);
+			System.arraycopy(scr, 0, scrs, ScrConverter.SCR_SIZE, ScrConverter.SCR_SIZE);
+			assertArrayEquals(indexes, ScrEncoder.decode(scrs, ScrConverter.SCR_SIZE));
+		}
+	}
+	
+	@Test
+	public void testDecodeEncode() {
+		
+		// Any SCR whose blocks have different ink and paper colours 
+		// (without flash) re-encodes byte for byte
+		Random random = new Random(2);
+		for (int i=0; i<10; ++i) {
+			byte[] scr = new byte[ScrConverter.SCR_SIZE];
+			random.nextBytes(scr);
+			byte[] inks = new byte[ScrEncoder.ATTRIBUTE_DATA_SIZE];
+			byte[] attributes = Arrays.copyOfRange(scr, ScrEncoder.PIXEL_DATA_SIZE, scr.length);
+			for (int block=0; block<attributes.length; ++block) {
+				int ink = random.nextInt(8);
+				int paper = (ink+1+random.nextInt(7)) % 8;
+				boolean bright = random.nextBoolean();
+				inks[block] = toIndex(ink, bright);
+				attributes[block] = ScrEncoder.toAttribute(ink, paper, bright);
+			}
+			System.arraycopy(attributes, 0, scr, ScrEncoder.PIXEL_DATA_SIZE, attributes.length);
+			assertArrayEquals(scr, ScrEncoder.encode(ScrEncoder.decode(scr, 0), inks, attributes));
+		}
+	}
+	
+	@Test
+	public void testErrorDiffusedImage() {
+		assertDecodesToImage(new ErrorDiffusionConverterImpl());
+	}
+	
+	@Test
+	public void testOrderedDitheredImage() {
+		assertDecodesToImage(new OrderedDitherConverterImpl());
+	}
+	
+	/**
+	 * Converts an image and checks the SCR written from the result
+	 * decodes to the result's colours
+	 */
+	private static void assertDecodesToImage(ImageProcessor processor) {
+		BufferedImage image = new BufferedImage(SCREEN_WIDTH, SCREEN_HEIGHT, BufferedImage.TYPE_INT_RGB);
+		for (int y=0; y<SCREEN_HEIGHT; ++y) {
+			for (int x=0; x<SCREEN_WIDTH; ++x) {
+				image.setRGB(x, y, x<<16 | (y*255/191)<<8 | (x+y)/2);
+			}
+		}
+		Graphics2D g = image.createGraphics();
+		g.setColor(Color.YELLOW);
+		g.fillOval(60, 40, 90, 90);
+		g.dispose();
+		
+		ConversionSettings settings = OptionsObject.getInstance().getConversionSettings();
+		ResultImage[] result = processor.convert(image, settings);
+		byte[] scr = new ScrConverter().convert(result, processor, settings);
+		BufferedImage converted = ResultImage.getFinalImage(result).getImage();
+		byte[] indexes = ScrEncoder.decode(scr, 0);
+		for (int pixel=0; pixel<indexes.length; ++pixel) {
+			int x = pixel % SCREEN_WIDTH;
+			int y = pixel / SCREEN_WIDTH;
+			assertEquals("Pixel "+x+","+y, converted.getRGB(x, y), ScrEncoder.toRgb(indexes[pixel]));
+		}
+	}
+	
+	private static byte toIndex(int colour, boolean bright) {
+		return (byte)(colour == 0 || !bright ? colour : colour | ScrEncoder.BRIGHT_FLAG);
+	}
+	
+	private static int getBlock(int pixel) {
+		return (pixel/SCREEN_WIDTH/ATTRIBUTE_BLOCK_SIZE)*COLUMNS+(pixel%SCREEN_WIDTH)/ATTRIBUTE_BLOCK_SIZE;
+	}
+}
@@ -0,0 +1,157 @@
+/* Image to ZX Spec
+ * Copyright (C) 2014 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package uk.co.silentsoftware.core.converters.spectrum;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import uk.co.silentsoftware.config.ConversionSettings;
+import uk.co.silentsoftware.config.OptionsObject;
+import uk.co.silentsoftware.core.converters.image.processors.ErrorDiffusionConverterImpl;
+import uk.co.silentsoftware.core.converters.image.processors.ImageProcessor;
+import uk.co.silentsoftware.core.converters.image.processors.OrderedDitherConverterImpl;
+
+/**
+ * Plays the deltas of screen sequences back (as the delta loader would)
+ * and checks each gives the full screen
+ */
+public class ScreenDeltaTest {
+
+	private static final int FRAMES = 12;
+	
+	@Test
+	public void testErrorDiffusedVideo() {
+		assertPlaysBack(convert(createVideo(), new ErrorDiffusionConverterImpl()));
+	}
+	
+	@Test
+	public void testOrderedDitheredVideo() {
+		assertPlaysBack(convert(createVideo(), new OrderedDitherConverterImpl()));
+	}
+	
+	@Test
+	public void testUnchangedScreens() {
+		byte[] scr = createRandomScreen(new Random(1));
+		List<byte[]> screens = Arrays.asList(scr, scr.clone(), scr.clone());
+		assertPlaysBack(screens);
+		
+		// Only the pairs that skip to the end of the screen
+		assertTrue(ScreenDelta.encode(scr, scr.clone()).length < 64);
+	}
+	
+	@Test
+	public void testEveryByteChanged() {
+		Random random = new Random(2);
+		List<byte[]> screens = new ArrayList<>();
+		for (int i=0; i<4; ++i) {
+			screens.add(createRandomScreen(random));
+		}
+		assertPlaysBack(screens);
+	}
+	
+	@Test
+	public void testSparseChanges() {
+		Random random = new Random(3);
+		List<byte[]> screens = new ArrayList<>();
+		byte[] scr = new byte[ScrConverter.SCR_SIZE];
+		screens.add(scr);
+		for (int i=0; i<20; ++i) {
+			scr = scr.clone();
+			
+			// Changes at the very start and end, long unchanged runs and short gaps
+			int changes = random.nextInt(40);
+			for (int j=0; j<changes; ++j) {
+				scr[random.nextInt(scr.length)] ^= 1+random.nextInt(255);
+			}
+			if (i % 3 == 0) {
+				scr[0] ^= 0x55;
+				scr[scr.length-1] ^= 0xaa;
+			}
+			if (i % 4 == 1) {
+				for (int j=1000; j<1600; j+=random.nextInt(4)+1) {
+					scr[j] ^= 0x0f;
+				}
+			}
+			screens.add(scr);
+		}
+		assertPlaysBack(screens);
+	}
+	
+	private static void assertPlaysBack(List<byte[]> screens) {
+		byte[] played = new byte[ScrConverter.SCR_SIZE];
+		byte[] previous = null;
+		for (int i=0; i<screens.size(); ++i) {
+			byte[] screen = screens.get(i);
+			ScreenDelta.apply(played, ScreenDelta.encode(previous, screen));
+			assertArrayEquals("Frame "+i, screen, played);
+			previous = screen;
+		}
+	}
+	
+	/**
+	 * A ball moving over a still background with a scrolling band, 
+	 * so some frames change little and others a lot 
+	 */
+	private static List<BufferedImage> createVideo() {
+		List<BufferedImage> frames = new ArrayList<>();
+		for (int i=0; i<FRAMES; ++i) {
+			BufferedImage frame = new BufferedImage(320, 240, BufferedImage.TYPE_INT_RGB);
+			for (int y=0; y<frame.getHeight(); ++y) {
+				for (int x=0; x<frame.getWidth(); ++x) {
+					frame.setRGB(x, y, (x*255/319)<<16 | (y*255/239)<<8 | 128);
+				}
+			}
+			Graphics2D g = frame.createGraphics();
+			g.setColor(Color.YELLOW);
+			g.fillOval(20+i*22, 60+(i%4)*15, 48, 48);
+			if (i % 3 == 0) {
+				g.setColor(Color.RED);
+				g.fillRect(0, 180+i, 320, 20);
+			}
+			g.dispose();
+			frames.add(frame);
+		}
+		return frames;
+	}
+	
+	private static List<byte[]> convert(List<BufferedImage> frames, ImageProcessor processor) {
+		ConversionSettings settings = OptionsObject.getInstance().getConversionSettings();
+		ScrConverter converter = new ScrConverter();
+		List<byte[]> screens = new ArrayList<>();
+		for (BufferedImage frame : frames) {
+			screens.add(converter.convert(frame, processor, settings));
+		}
+		return screens;
+	}
+	
+	private static byte[] createRandomScreen(Random random) {
+		byte[] scr = new byte[ScrConverter.SCR_SIZE];
+		random.nextBytes(scr);
+		return scr;
+	}
+}
@@ -0,0 +1,109 @@
+/* Image to ZX Spec
+ * Copyright (C) 2014 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package uk.co.silentsoftware.core.converters.spectrum;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks data packed by ScreenPacker unpacks to exactly the original
+ */
+public class ScreenPackerTest {
+
+	@Test
+	public void testSingleByte() {
+		assertRoundTrip(new byte[]{42});
+	}
+	
+	@Test
+	public void testRandom() {
+		Random random = new Random(1);
+		for (int length : new int[]{2, 3, 100, ScrConverter.SCR_SIZE, 20000}) {
+			byte[] data = new byte[length];
+			random.nextBytes(data);
+			assertRoundTrip(data);
+		}
+	}
+	
+	@Test
+	public void testRepetitive() {
+		byte[] blank = new byte[ScrConverter.SCR_SIZE];
+		assertTrue(assertRoundTrip(blank).length < 64);
+		
+		// Runs longer than the longest match
+		assertRoundTrip(new byte[70000]);
+		
+		byte[] pattern = new byte[ScrConverter.SCR_SIZE];
+		for (int i=0; i<pattern.length; ++i) {
+			pattern[i] = (byte)(i % 7 == 0 ? 0xAA : i % 3);
+		}
+		assertTrue(assertRoundTrip(pattern).length < pattern.length/4);
+		
+		// Random runs of random bytes
+		Random random = new Random(2);
+		byte[] runs = new byte[ScrConverter.SCR_SIZE];
+		for (int i=0; i<runs.length;) {
+			byte value = (byte)random.nextInt(4);
+			for (int run=1+random.nextInt(300); run > 0 && i < runs.length; --run) {
+				runs[i++] = value;
+			}
+		}
+		assertRoundTrip(runs);
+	}
+	
+	@Test
+	public void testLongOffsets() {
+		
+		// Random bytes repeating every offset either side of the 
+		// short offset limit and the furthest offset
+		Random random = new Random(3);
+		for (int offset : new int[]{127, 128, 129, 1000, ScreenPacker.MAX_OFFSET-1, ScreenPacker.MAX_OFFSET, ScreenPacker.MAX_OFFSET+1}) {
+			byte[] data = new byte[offset+500];
+			random.nextBytes(data);
+			for (int i=offset; i<data.length; ++i) {
+				data[i] = data[i-offset];
+			}
+			byte[] packed = assertRoundTrip(data);
+			
+			// Only the first repeat is packed as literals
+			if (offset <= ScreenPacker.MAX_OFFSET) {
+				assertTrue("Offset "+offset, packed.length < offset*9/8+16);
+			}
+		}
+		
+		// Matches at every offset
+		byte[] data = new byte[4*ScreenPacker.MAX_OFFSET];
+		random.nextBytes(data);
+		for (int i=ScreenPacker.MAX_OFFSET; i<data.length; i+=16) {
+			int offset = 1+random.nextInt(ScreenPacker.MAX_OFFSET);
+			System.arraycopy(data, i-offset, data, i, Math.min(8, data.length-i));
+		}
+		assertRoundTrip(data);
+	}
+	
+	private static byte[] assertRoundTrip(byte[] data) {
+		byte[] packed = ScreenPacker.pack(data);
+		assertArrayEquals("Length "+data.length, data, ScreenPacker.unpack(packed));
+		return packed;
+	}
+}
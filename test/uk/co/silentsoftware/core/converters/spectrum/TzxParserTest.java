@@ -0,0 +1,146 @@
+/* Image to ZX Spec
+ * Copyright (C) 2014 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package uk.co.silentsoftware.core.converters.spectrum;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import uk.co.silentsoftware.config.BasicLoader;
+import uk.co.silentsoftware.config.BasicLoader.ScreenEncoding;
+import uk.co.silentsoftware.config.ConversionSettings;
+import uk.co.silentsoftware.config.OptionsObject;
+import uk.co.silentsoftware.config.TurboSpeed;
+import uk.co.silentsoftware.core.converters.spectrum.TzxParser.Block;
+
+/**
+ * Writes turbo loader tapes at each speed and checks they parse back
+ * with the loader set up for the speed and the screens intact
+ */
+public class TzxParserTest {
+
+	private static final int SCREENS = 3;
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private final TapeConverter tapeConverter = new TapeConverter();
+	
+	private final TzxParser parser = new TzxParser();
+	
+	@Test
+	public void testTurboSpeeds() throws IOException {
+		for (TurboSpeed speed : OptionsObject.getInstance().getTurboSpeeds()) {
+			byte[][] screens = createScreens();
+			List<Block> blocks = parser.parse(writeTape(speed, screens));
+			
+			// The loader's BASIC and code, each a header and data block
+			assertEquals(speed.toString(), 4+SCREENS, blocks.size());
+			for (int i=0; i<4; ++i) {
+				assertEquals(TzxConverter.STANDARD_BLOCK, blocks.get(i).getId());
+			}
+			byte[] loader = blocks.get(3).getData();
+			int[] timings = TzxConverter.getLoaderTimings(speed);
+			assertEquals(timings[0], loader[3] & 0xff);
+			assertEquals(timings[1], loader[4] & 0xff);
+			
+			for (int i=0; i<SCREENS; ++i) {
+				Block block = blocks.get(4+i);
+				assertEquals(TzxConverter.TURBO_BLOCK, block.getId());
+				assertEquals(speed.getZeroPulse(), block.getZeroPulse());
+				assertEquals(speed.getOnePulse(), block.getOnePulse());
+				assertEquals(speed.getPilotPulses(), block.getPilotPulses());
+				assertEquals(255, block.getData()[0] & 0xff);
+				assertArrayEquals(screens[i], Arrays.copyOfRange(block.getData(), 1, block.getData().length-1));
+			}
+		}
+	}
+	
+	@Test
+	public void testCorruptBlock() throws IOException {
+		byte[] tzx = writeTape(OptionsObject.getInstance().getTurboSpeeds()[1], createScreens());
+		tzx[tzx.length-100] ^= 1;
+		assertInvalid(tzx);
+	}
+	
+	@Test
+	public void testTruncatedFile() throws IOException {
+		byte[] tzx = writeTape(OptionsObject.getInstance().getTurboSpeeds()[1], createScreens());
+		assertInvalid(Arrays.copyOf(tzx, tzx.length-1));
+	}
+	
+	private void assertInvalid(byte[] tzx) {
+		try {
+			parser.parse(tzx);
+			fail("Invalid tzx parsed");
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+	}
+	
+	private byte[] writeTape(TurboSpeed speed, byte[][] screens) throws IOException {
+		ConversionSettings settings = createSettings(speed);
+		File tzx = new File(folder.getRoot(), "test"+tapeConverter.getExtension(settings));
+		TapeWriter writer = tapeConverter.createTapeWriter(tzx, settings);
+		byte[] previous = null;
+		for (byte[] screen : screens) {
+			writer.addPart(tapeConverter.createTapPart(screen, previous, settings));
+			previous = screen;
+		}
+		writer.commit();
+		return Files.readAllBytes(tzx.toPath());
+	}
+	
+	private static ConversionSettings createSettings(TurboSpeed speed) {
+		OptionsObject oo = OptionsObject.getInstance();
+		BasicLoader basicLoader = oo.getBasicLoader();
+		TurboSpeed turboSpeed = oo.getTurboSpeed();
+		try {
+			for (BasicLoader loader : oo.getBasicLoaders()) {
+				if (loader.getScreenEncoding() == ScreenEncoding.TURBO) {
+					oo.setBasicLoader(loader);
+				}
+			}
+			oo.setTurboSpeed(speed);
+			return oo.getConversionSettings();
+		} finally {
+			oo.setBasicLoader(basicLoader);
+			oo.setTurboSpeed(turboSpeed);
+		}
+	}
+	
+	private static byte[][] createScreens() {
+		Random random = new Random(1);
+		byte[][] screens = new byte[SCREENS][ScrConverter.SCR_SIZE];
+		for (byte[] screen : screens) {
+			random.nextBytes(screen);
+		}
+		return screens;
+	}
+}
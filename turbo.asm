@@ -0,0 +1,112 @@
+; Image to ZX Spec - turbo screen loader
+; Copyright (C) 2014 Silent Software (Benjamin Brown)
+; Licensed under the GNU General Public License version 2 or later
+;
+; Loads a screen from a turbo data block (see TzxConverter) as used by
+; turbo.tap: RANDOMIZE USR 65024 loads the next block to 16384
+;
+; The edge timing follows the ROM's LD-BYTES - the pilot and sync are
+; at the standard speed and only the data edge delay and the count
+; telling 0 and 1 bits apart change with the speed (set in the two
+; bytes after the jump when the tape is written)
+;
+; B = edge timing count, C = last EAR level (bit 5) and border colour,
+; DE = destination, H = checksum, L = byte being read
+
+        org  65024
+
+        jr   start
+delay:  defb 22                 ; data edge delay loop count
+limit:  defb 203                ; a bit's count above this is a 1
+start:  di
+        ld   a, 22              ; standard delay for the pilot and sync
+        ld   (edge1+1), a
+        in   a, (254)
+        rra
+        and  32
+        or   2                  ; red border
+        ld   c, a
+leader: ld   h, 0               ; 256 pilot pulse pairs in a row
+pilot:  ld   b, 156
+        call edge2
+        jr   nc, failed
+        ld   a, 198
+        cp   b
+        jr   nc, leader         ; too short to be the pilot
+        inc  h
+        jr   nz, pilot
+sync:   ld   b, 201             ; wait for the short first sync pulse
+        call edge1
+        jr   nc, failed
+        ld   a, b
+        cp   212
+        jr   nc, sync
+        call edge1              ; second sync pulse
+        jr   nc, failed
+        ld   a, c
+        xor  3                  ; blue and yellow border
+        ld   c, a
+        ld   a, (delay)
+        ld   (edge1+1), a
+        ld   h, 0
+        ld   de, 16384
+        call byte               ; flag
+        jr   nc, failed
+        ld   a, l
+        inc  a
+        jr   nz, start          ; not a data block
+next:   call byte
+        jr   nc, failed
+        ld   a, l
+        ld   (de), a
+        inc  de
+        ld   a, d
+        cp   91                 ; end of the screen (23296)
+        jr   c, next
+        call byte               ; checksum
+        jr   nc, failed
+        ld   a, h
+        or   a
+        ld   bc, 0              ; USR gives 0 when loaded
+        jr   z, done
+failed: jr   z, start           ; timed out so wait for the next pilot
+        ld   bc, 1              ; break or bad checksum
+done:   ei
+        ret
+byte:   ld   l, 1               ; marker bit shifts out after 8 bits
+        ld   b, 178             ; (allowing for storing the last byte)
+bit:    call edge2
+        ret  nc
+        ld   a, (limit)
+        cp   b
+        rl   l
+        ld   b, 176
+        jr   nc, bit
+        ld   a, h
+        xor  l
+        ld   h, a
+        scf
+        ret
+edge2:  call edge1              ; time two edges
+        ret  nc
+edge1:  ld   a, 22              ; time one edge (delay set above)
+edelay: dec  a
+        jr   nz, edelay
+        and  a
+sample: inc  b
+        ret  z                  ; timed out
+        ld   a, 127
+        in   a, (254)
+        rra
+        ret  nc                 ; break
+        xor  c
+        and  32
+        jr   z, sample
+        ld   a, c               ; an edge so flip the level and border
+        cpl
+        ld   c, a
+        and  7
+        or   8
+        out  (254), a
+        scf
+        ret